@@ -0,0 +1,333 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+import input.EventQueue;
+import input.ExternalEvent;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Solves when hosts come within and go out of each other's radio range
+ * from the piecewise-linear tracks of a movement step, and offers the
+ * connection changes as external events at those times. This way contacts
+ * start and end at their exact times instead of at the next update
+ * interval boundary, and also contacts shorter than an update interval
+ * are found.
+ * <P>
+ * The interfaces' own connectivity checks aren't used: connections are
+ * created and destroyed only by the events. Activeness schedules,
+ * scanning intervals and energy models aren't modelled, so the world
+ * refuses to use the predictor with them; an interface can connect
+ * whenever it is within range, and the speed of a connection is set when
+ * it is created.
+ */
+public class ContactPredictor implements EventQueue {
+	/** list of hosts; hosts are indexed by their network address */
+	private List<DTNHost> hosts;
+	/** how far from its current location each host was during the step */
+	private double[] reach;
+	/** connection changes of the current step, in time order */
+	private List<ContactEvent> events;
+	private int nextEvent;
+	/** step fractions where either of the hosts of a pair turned */
+	private double[] breakpoints;
+	/** start time and duration of the current step */
+	private double stepStart;
+	private double stepDuration;
+	/** interface whose near interfaces are being checked */
+	private NetworkInterface current;
+	/** checks the pair of the current interface and a near interface */
+	private final Consumer<NetworkInterface> nearChecker =
+		other -> checkPair(this.current, other, false);
+
+	/**
+	 * Constructor. Starts recording the movement tracks of the hosts.
+	 * @param hosts The hosts, indexed by their network address
+	 */
+	public ContactPredictor(List<DTNHost> hosts) {
+		this.hosts = hosts;
+		this.reach = new double[hosts.size()];
+		this.events = new ArrayList<ContactEvent>();
+		this.nextEvent = 0;
+		this.breakpoints = new double[8];
+
+		for (DTNHost host : hosts) {
+			host.getMovementTrack();
+		}
+	}
+
+	/**
+	 * Solves the connection changes of a movement step. Must be called
+	 * after the hosts have been moved.
+	 * @param start Simulation time at the start of the step
+	 * @param duration Duration of the step
+	 */
+	public void predict(double start, double duration) {
+		double maxReach = 0;
+		double maxRange = 0;
+
+		for (DTNHost host : this.hosts) {
+			MovementTrack track = host.getMovementTrack();
+			Coord loc = host.getLocation();
+			double r = 0;
+			for (int i = 0, n = track.size(); i < n; i++) {
+				double f = track.getFraction(i);
+				double dx = track.getX(f) - loc.getX();
+				double dy = track.getY(f) - loc.getY();
+				r = Math.max(r, Math.sqrt(dx*dx + dy*dy));
+			}
+			this.reach[host.getAddress()] = r;
+			maxReach = Math.max(maxReach, r);
+
+			for (NetworkInterface ni : host.getInterfaces()) {
+				ni.updateLocation();
+				maxRange = Math.max(maxRange, ni.getTransmitRange());
+			}
+		}
+
+		this.events.clear();
+		this.nextEvent = 0;
+		this.stepStart = start;
+		this.stepDuration = duration;
+		double nearDistance = maxRange + 2 * maxReach;
+
+		for (DTNHost host : this.hosts) {
+			for (NetworkInterface ni : host.getInterfaces()) {
+				if (ni.optimizer == null) {
+					continue;
+				}
+
+				for (Connection con : ni.getConnections()) {
+					checkPair(ni, con.getOtherInterface(ni), true);
+				}
+
+				if (nearDistance <= ni.optimizer.getNearDistance()) {
+					this.current = ni;
+					ni.optimizer.forEachNearInterface(ni, nearDistance,
+							this.nearChecker);
+				}
+				else { /* hosts moved further than the optimizer covers */
+					for (DTNHost otherHost : this.hosts) {
+						checkAll(ni, otherHost.getInterfaces());
+					}
+				}
+			}
+		}
+
+		Collections.sort(this.events); /* stable for the same times */
+	}
+
+	/**
+	 * Returns how long a movement step can be for its connection changes to
+	 * be solved from the near interfaces of the connectivity optimizers
+	 * (instead of from all interfaces) if no host moves faster than the
+	 * given speed.
+	 * @param maxSpeed The maximum speed of the hosts (m/s)
+	 * @return The maximum step duration (seconds)
+	 */
+	public double getMaxStepDuration(double maxSpeed) {
+		double maxRange = 0;
+		double nearDistance = Double.MAX_VALUE;
+		for (DTNHost host : this.hosts) {
+			for (NetworkInterface ni : host.getInterfaces()) {
+				maxRange = Math.max(maxRange, ni.getTransmitRange());
+				if (ni.optimizer != null) {
+					nearDistance = Math.min(nearDistance,
+							ni.optimizer.getNearDistance());
+				}
+			}
+		}
+
+		if (maxSpeed <= 0 || nearDistance == Double.MAX_VALUE) {
+			return Double.MAX_VALUE;
+		}
+		/* see predict(): maxRange + 2 * maxReach <= nearDistance */
+		return Math.max(0, (nearDistance - maxRange) / (2 * maxSpeed));
+	}
+
+	private void checkAll(NetworkInterface ni,
+			Collection<NetworkInterface> others) {
+		for (NetworkInterface other : others) {
+			if (other.optimizer == ni.optimizer) {
+				checkPair(ni, other, false);
+			}
+		}
+	}
+
+	/**
+	 * Checks a pair of interfaces for connection changes. Every pair is
+	 * checked from the interface of the host with the lower address, and
+	 * connected pairs only as connected.
+	 */
+	private void checkPair(NetworkInterface a, NetworkInterface b,
+			boolean connected) {
+		DTNHost hostA = a.getHost();
+		DTNHost hostB = b.getHost();
+		if (hostA.getAddress() >= hostB.getAddress()) {
+			return;
+		}
+
+		double range = Math.min(a.getTransmitRange(), b.getTransmitRange());
+		if (!connected) {
+			Coord locA = hostA.getLocation();
+			Coord locB = hostB.getLocation();
+			double dx = locA.getX() - locB.getX();
+			double dy = locA.getY() - locB.getY();
+			double maxDistance = range +
+				reach[hostA.getAddress()] + reach[hostB.getAddress()];
+			if (range <= 0 || dx*dx + dy*dy > maxDistance * maxDistance) {
+				return; /* can't have been within range */
+			}
+			if (a.isConnected(b)) {
+				return; /* checked with the connections */
+			}
+		}
+
+		MovementTrack trackA = hostA.getMovementTrack();
+		MovementTrack trackB = hostB.getMovementTrack();
+		int nrofBreakpoints = mergeBreakpoints(trackA, trackB);
+		boolean inside = connected;
+		double start = this.stepStart;
+		double duration = this.stepDuration;
+		double f0 = 0;
+
+		for (int i = 0; i < nrofBreakpoints; i++) {
+			double f1 = this.breakpoints[i];
+			/* relative location at f0 and its change until f1 */
+			double dx = trackA.getX(f0) - trackB.getX(f0);
+			double dy = trackA.getY(f0) - trackB.getY(f0);
+			double wx = trackA.getX(f1) - trackB.getX(f1) - dx;
+			double wy = trackA.getY(f1) - trackB.getY(f1) - dy;
+
+			/* |d + w*u| = range, u being the fraction of [f0, f1] */
+			double qa = wx*wx + wy*wy;
+			double qb = 2 * (dx*wx + dy*wy);
+			double qc = dx*dx + dy*dy - range*range;
+
+			if (inside != (qc <= 0)) {
+				inside = !inside;
+				addEvent(a, b, inside, start + f0 * duration);
+			}
+
+			if (qa > 0) {
+				double disc = qb*qb - 4*qa*qc;
+				if (disc >= 0) {
+					double sqrt = Math.sqrt(disc);
+					double enter = (-qb - sqrt) / (2*qa);
+					double exit = (-qb + sqrt) / (2*qa);
+					if (!inside && enter > 0 && enter <= 1) {
+						inside = true;
+						addEvent(a, b, true,
+								start + (f0 + enter*(f1 - f0)) * duration);
+					}
+					if (inside && exit >= 0 && exit < 1) {
+						inside = false;
+						addEvent(a, b, false,
+								start + (f0 + exit*(f1 - f0)) * duration);
+					}
+				}
+			}
+			f0 = f1;
+		}
+	}
+
+	/**
+	 * Collects the fractions in (0, 1] where either track turns, and 1,
+	 * in increasing order to the breakpoints array.
+	 * @return The number of breakpoints
+	 */
+	private int mergeBreakpoints(MovementTrack a, MovementTrack b) {
+		int n = 0;
+		int i = 1;
+		int j = 1;
+		while (i < a.size() || j < b.size()) {
+			double f;
+			if (j >= b.size() ||
+					(i < a.size() && a.getFraction(i) <= b.getFraction(j))) {
+				f = a.getFraction(i++);
+			}
+			else {
+				f = b.getFraction(j++);
+			}
+			if (f > 0 && f < 1 && (n == 0 || f > this.breakpoints[n - 1])) {
+				if (n + 1 == this.breakpoints.length) {
+					this.breakpoints = Arrays.copyOf(
+							this.breakpoints, 2 * n);
+				}
+				this.breakpoints[n++] = f;
+			}
+		}
+		this.breakpoints[n++] = 1;
+		return n;
+	}
+
+	private void addEvent(NetworkInterface a, NetworkInterface b,
+			boolean up, double time) {
+		this.events.add(new ContactEvent(a, b, up, time));
+	}
+
+	/**
+	 * Returns the next connection change of the current step
+	 */
+	public ExternalEvent nextEvent() {
+		return this.events.get(this.nextEvent++);
+	}
+
+	/**
+	 * Returns the time of the next connection change of the current step,
+	 * or Double.MAX_VALUE if there are no more changes
+	 */
+	public double nextEventsTime() {
+		if (this.nextEvent < this.events.size()) {
+			return this.events.get(this.nextEvent).getTime();
+		}
+		return Double.MAX_VALUE;
+	}
+
+	/**
+	 * Creates or destroys a connection and updates the hosts at both ends.
+	 */
+	private static class ContactEvent extends ExternalEvent {
+		private static final long serialVersionUID = 1L;
+		private NetworkInterface from;
+		private NetworkInterface to;
+		private boolean up;
+
+		public ContactEvent(NetworkInterface from, NetworkInterface to,
+				boolean up, double time) {
+			super(time);
+			this.from = from;
+			this.to = to;
+			this.up = up;
+		}
+
+		@Override
+		public void processEvent(World world) {
+			DTNHost fromHost = this.from.getHost();
+			DTNHost toHost = this.to.getHost();
+
+			if (!this.up) {
+				this.from.destroyConnection(this.to);
+			}
+			else if (fromHost.isRadioActive() && toHost.isRadioActive()) {
+				this.from.createConnection(this.to);
+			}
+			fromHost.update(false);
+			toHost.update(false);
+		}
+
+		@Override
+		public String toString() {
+			return "CONTACT " + (up ? "up" : "down") + " @" + this.time + " " +
+				from.getHost() + "<->" + to.getHost();
+		}
+	}
+}
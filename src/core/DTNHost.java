@@ -12,6 +12,7 @@ import movement.MovementModel;
 import movement.Path;
 import routing.MessageRouter;
 import routing.util.RoutingInfo;
+import util.Tuple;
 
 import static core.Constants.DEBUG;
 
@@ -33,6 +34,12 @@ public class DTNHost implements Comparable<DTNHost> {
 	private String name;
 	private List<MessageListener> msgListeners;
 	private List<MovementListener> movListeners;
+	/** are movement listener notifications held back (concurrent moving) */
+	private boolean deferMovementEvents;
+	/** held back destinations and speeds, in the order they were set */
+	private List<Tuple<Coord, Double>> deferredDestinations;
+	/** track of the last movement step, or null if it isn't recorded */
+	private MovementTrack track;
 	private List<NetworkInterface> net;
 	private ModuleCommunicationBus comBus;
 
@@ -346,6 +353,75 @@ public class DTNHost implements Comparable<DTNHost> {
 		this.router.update();
 	}
 
+	/**
+	 * Returns true if {@link #update(boolean)} would change nothing but the
+	 * interfaces' locations in the connectivity optimizers, provided that no
+	 * other interface is within range: the host has no connections and the
+	 * router can skip its update.
+	 * @return true if the host is idle
+	 */
+	public boolean isIdle() {
+		for (NetworkInterface i : net) {
+			if (i.getConnections().size() > 0) {
+				return false;
+			}
+		}
+		return this.router.canSkipUpdate();
+	}
+
+	/**
+	 * Returns the time until which this host needs no update unless an
+	 * event (e.g., a connection change or the end of a transfer) happens
+	 * before it: when the host starts moving after a pause or when its
+	 * router needs an update ({@link MessageRouter#getNextUpdateTime()}).
+	 * Hosts with transfers whose end time can't be predicted need an update
+	 * on every round. Used by {@link World#NEXT_EVENT_JUMP_S}.
+	 * @return The next time the host needs an update
+	 */
+	public double getNextUpdateTime() {
+		double now = SimClock.getTime();
+		for (NetworkInterface i : net) {
+			for (Connection con : i.getConnections()) {
+				if (con.isTransferring() && !(con instanceof CBRConnection)) {
+					return now;
+				}
+			}
+		}
+
+		double next = this.router.getNextUpdateTime();
+		if (isMovementActive() && this.nextTimeToMove > now) {
+			next = Math.min(next, this.nextTimeToMove);
+		}
+		return next;
+	}
+
+	/**
+	 * Does the part of {@link #update(boolean)} that an idle host needs:
+	 * updates the interfaces' locations in the connectivity optimizers.
+	 * @param simulateConnections Should network layer be updated too
+	 */
+	public void updateIdle(boolean simulateConnections) {
+		if (simulateConnections) {
+			for (NetworkInterface i : net) {
+				i.updateLocation();
+			}
+		}
+	}
+
+	/**
+	 * Returns how much closer this host's interfaces can get to any other
+	 * interface before they are within range
+	 * (see {@link NetworkInterface#getRangeMargin()})
+	 * @return The smallest range margin of the interfaces
+	 */
+	public double getRangeMargin() {
+		double margin = Double.MAX_VALUE;
+		for (NetworkInterface i : net) {
+			margin = Math.min(margin, i.getRangeMargin());
+		}
+		return margin;
+	}
+
 	/**
 	 * Tears down all connections for this host.
 	 */
@@ -376,7 +452,11 @@ public class DTNHost implements Comparable<DTNHost> {
 		double possibleMovement;
 		double distance;
 		double dx, dy;
+		double maxMovement;
 
+		if (this.track != null) {
+			this.track.start(this.location);
+		}
 		if (!isMovementActive() || SimClock.getTime() < this.nextTimeToMove) {
 			return;
 		}
@@ -387,12 +467,17 @@ public class DTNHost implements Comparable<DTNHost> {
 		}
 
 		possibleMovement = timeIncrement * speed;
+		maxMovement = possibleMovement;
 		distance = this.location.distance(this.destination);
 
 		while (possibleMovement >= distance) {
 			// node can move past its next destination
 			this.location.setLocation(this.destination); // snap to destination
 			possibleMovement -= distance;
+			if (this.track != null) {
+				this.track.add(this.location, maxMovement > 0 ?
+						(maxMovement - possibleMovement) / maxMovement : 0);
+			}
 			if (!setNextWaypoint()) { // get a new waypoint
 				this.destination = null; // No more waypoints left, therefore the destination must be null
 				return; // no more waypoints left
@@ -406,6 +491,69 @@ public class DTNHost implements Comparable<DTNHost> {
 		dy = (possibleMovement/distance) * (this.destination.getY() -
 				this.location.getY());
 		this.location.translate(dx, dy);
+		if (this.track != null) {
+			this.track.add(this.location, 1);
+		}
+	}
+
+	/**
+	 * Moves the node like {@link #move(double)} but holds back the movement
+	 * listener notifications until {@link #flushMovementEvents()} is called.
+	 * Used when hosts are moved concurrently.
+	 * @param timeIncrement How long time the node moves
+	 */
+	public void moveDeferringEvents(double timeIncrement) {
+		this.deferMovementEvents = true;
+		move(timeIncrement);
+	}
+
+	/**
+	 * Informs the movement listeners about the destinations held back by
+	 * {@link #moveDeferringEvents(double)}.
+	 */
+	public void flushMovementEvents() {
+		this.deferMovementEvents = false;
+		if (this.deferredDestinations == null) {
+			return;
+		}
+
+		for (Tuple<Coord, Double> d : this.deferredDestinations) {
+			for (MovementListener l : this.movListeners) {
+				l.newDestination(this, d.getKey(), d.getValue());
+			}
+		}
+		this.deferredDestinations.clear();
+	}
+
+	/**
+	 * Returns the track of the last movement step. Tracks are recorded only
+	 * after this method has been called once.
+	 * @return the track of the last movement step
+	 */
+	MovementTrack getMovementTrack() {
+		if (this.track == null) {
+			this.track = new MovementTrack();
+			this.track.start(this.location);
+		}
+		return this.track;
+	}
+
+	/**
+	 * Returns the maximum speed of the host's movement model
+	 * (see {@link MovementModel#getMaxSpeed()})
+	 * @return The maximum speed (m/s)
+	 */
+	public double getMaxSpeed() {
+		return this.movement.getMaxSpeed();
+	}
+
+	/**
+	 * Returns true if this host can be moved concurrently with other hosts
+	 * (see {@link MovementModel#canMoveConcurrently()})
+	 * @return true if this host can be moved concurrently
+	 */
+	public boolean canMoveConcurrently() {
+		return this.movement.canMoveConcurrently();
 	}
 
 	/**
@@ -429,8 +577,18 @@ public class DTNHost implements Comparable<DTNHost> {
 		this.speed = path.getSpeed();
 
 		if (this.movListeners != null) {
-			for (MovementListener l : this.movListeners) {
-				l.newDestination(this, this.destination, this.speed);
+			if (this.deferMovementEvents) {
+				if (this.deferredDestinations == null) {
+					this.deferredDestinations =
+						new ArrayList<Tuple<Coord, Double>>();
+				}
+				this.deferredDestinations.add(
+						new Tuple<Coord, Double>(this.destination, this.speed));
+			}
+			else {
+				for (MovementListener l : this.movListeners) {
+					l.newDestination(this, this.destination, this.speed);
+				}
 			}
 		}
 
@@ -447,13 +605,19 @@ public class DTNHost implements Comparable<DTNHost> {
 	}
 
 	/**
-	 * Start receiving a message from another host
+	 * Start receiving a message from another host. Control messages (see
+	 * {@link MessageRouter#CONTROL_PREFIX}) are given to the router's
+	 * control message methods, also when transferred or aborted.
 	 * @param m The message
 	 * @param from Who the message is from
 	 * @return The value returned by
 	 * {@link MessageRouter#receiveMessage(Message, DTNHost)}
 	 */
 	public int receiveMessage(Message m, DTNHost from) {
+		if (MessageRouter.isControlMessage(m.getId())) {
+			return this.router.receiveControlMessage(m, from);
+		}
+
 		int retVal = this.router.receiveMessage(m, from);
 
 		if (retVal == MessageRouter.RCV_OK) {
@@ -479,6 +643,10 @@ public class DTNHost implements Comparable<DTNHost> {
 	 * @param from From who the message was from
 	 */
 	public void messageTransferred(String id, DTNHost from) {
+		if (MessageRouter.isControlMessage(id)) {
+			this.router.controlMessageTransferred(id, from);
+			return;
+		}
 		this.router.messageTransferred(id, from);
 	}
 
@@ -490,6 +658,10 @@ public class DTNHost implements Comparable<DTNHost> {
 	 * would have been ready; or -1 if the number of bytes is not known
 	 */
 	public void messageAborted(String id, DTNHost from, int bytesRemaining) {
+		if (MessageRouter.isControlMessage(id)) {
+			this.router.controlMessageAborted(id, from);
+			return;
+		}
 		this.router.messageAborted(id, from, bytesRemaining);
 	}
 
@@ -5,9 +5,15 @@
 package core;
 import gui.DTNSimGUI;
 
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import ui.DTNSimTextUI;
 
@@ -20,6 +26,10 @@ public class DTNSim {
 	public static final String BATCH_MODE_FLAG = "-b";
 	/** Delimiter for batch mode index range values (colon) */
 	public static final String RANGE_DELIMETER = ":";
+	/** If this option ({@value}) follows the number of runs in batch mode,
+	 * the runs are performed in parallel in separate processes. The option
+	 * must be followed by the number of runs to perform at the same time. */
+	public static final String PARALLEL_FLAG = "-j";
 
 	/** Name of the static method that all resettable classes must have
 	 * @see #registerForReset(String) */
@@ -37,6 +47,8 @@ public class DTNSim {
 	 * {@link Settings#setRunIndex(int)}). Following arguments are the settings
 	 * files for the simulation run (if any). For GUI mode, the number before
 	 * settings files (if given) is the run index to use for that run.
+	 * In batch mode, the number of runs can be followed by
+	 * {@link #PARALLEL_FLAG} and the number of runs to perform in parallel.
 	 * @param args Command line arguments
 	 */
 	public static void main(String[] args) {
@@ -45,6 +57,7 @@ public class DTNSim {
 		String confFiles[];
 		int firstConfIndex = 0;
 		int guiIndex = 0;
+		int nrofParallel = 1;
 
 		/* set US locale to parse decimals in consistent way */
 		java.util.Locale.setDefault(java.util.Locale.US);
@@ -59,6 +72,11 @@ public class DTNSim {
                     nrofRuns = parseNrofRuns(args[1]);
                     firstConfIndex = 2;
                 }
+				if (args.length > firstConfIndex + 1 &&
+						args[firstConfIndex].equals(PARALLEL_FLAG)) {
+					nrofParallel = parseNrofParallel(args[firstConfIndex + 1]);
+					firstConfIndex += 2;
+				}
 			}
 			else { /* GUI mode */
 				try { /* is there a run index for the GUI mode ? */
@@ -76,7 +94,18 @@ public class DTNSim {
 
 		initSettings(confFiles, firstConfIndex);
 
-		if (batchMode) {
+		if (batchMode && nrofParallel > 1 && nrofRuns[1] - nrofRuns[0] > 1) {
+			long startTime = System.currentTimeMillis();
+			int nrofFailed = runInParallel(nrofRuns, nrofParallel, args,
+					firstConfIndex);
+			double duration = (System.currentTimeMillis() - startTime)/1000.0;
+			print("---\nAll done in " + String.format("%.2f", duration) + "s");
+			if (nrofFailed > 0) {
+				System.err.println(nrofFailed + " run(s) failed");
+				System.exit(-1);
+			}
+		}
+		else if (batchMode) {
 			long startTime = System.currentTimeMillis();
 			for (int i=nrofRuns[0]; i<nrofRuns[1]; i++) {
 				print("Run " + (i+1) + "/" + nrofRuns[1]);
@@ -93,6 +122,103 @@ public class DTNSim {
 		}
 	}
 
+	/**
+	 * Performs batch mode runs in parallel. Every run is performed in a new
+	 * Java process (with the same JVM options and class path) because the
+	 * simulator's static state allows only one run at a time in a process.
+	 * The runs are given to the processes in the order of their indexes.
+	 * @param nrofRuns The first and (last_run_index - 1) in an array
+	 * @param nrofParallel How many runs to perform at the same time
+	 * @param args The command line arguments
+	 * @param firstConfIndex Index of the first config file name in args
+	 * @return Number of runs that failed
+	 */
+	private static int runInParallel(final int[] nrofRuns, int nrofParallel,
+			final String[] args, final int firstConfIndex) {
+		final AtomicInteger nextRun = new AtomicInteger(nrofRuns[0]);
+		final AtomicInteger nrofFailed = new AtomicInteger(0);
+		int nrofThreads = Math.min(nrofParallel, nrofRuns[1] - nrofRuns[0]);
+		Thread[] threads = new Thread[nrofThreads];
+
+		for (int t = 0; t < nrofThreads; t++) {
+			threads[t] = new Thread() {
+				public void run() {
+					int i;
+					while ((i = nextRun.getAndIncrement()) < nrofRuns[1]) {
+						if (!runInProcess(i, nrofRuns[1], args,
+								firstConfIndex)) {
+							nrofFailed.incrementAndGet();
+						}
+					}
+				}
+			};
+			threads[t].start();
+		}
+
+		for (Thread t : threads) {
+			try {
+				t.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				break;
+			}
+		}
+		return nrofFailed.get();
+	}
+
+	/**
+	 * Performs one batch mode run in a new Java process. The output of the
+	 * process is printed prefixed with the run's number.
+	 * @param runIndex Index of the run
+	 * @param lastRun Number of the last run (for printing)
+	 * @param args The command line arguments
+	 * @param firstConfIndex Index of the first config file name in args
+	 * @return true if the run succeeded, false if not
+	 */
+	private static boolean runInProcess(int runIndex, int lastRun,
+			String[] args, int firstConfIndex) {
+		String prefix = "[" + (runIndex + 1) + "] ";
+		List<String> cmd = new ArrayList<String>();
+		cmd.add(System.getProperty("java.home") + File.separator + "bin" +
+				File.separator + "java");
+		cmd.addAll(ManagementFactory.getRuntimeMXBean().getInputArguments());
+		cmd.add("-cp");
+		cmd.add(System.getProperty("java.class.path"));
+		cmd.add(DTNSim.class.getName());
+		cmd.add(BATCH_MODE_FLAG);
+		cmd.add((runIndex + 1) + RANGE_DELIMETER + (runIndex + 1));
+		for (int i = firstConfIndex; i < args.length; i++) {
+			cmd.add(args[i]);
+		}
+
+		print("Run " + (runIndex + 1) + "/" + lastRun + " started");
+		long startTime = System.currentTimeMillis();
+		int exitValue;
+		try {
+			Process p = new ProcessBuilder(cmd).redirectErrorStream(true).
+				start();
+			BufferedReader out = new BufferedReader(
+					new InputStreamReader(p.getInputStream()));
+			String line;
+			while ((line = out.readLine()) != null) {
+				print(prefix + line);
+			}
+			exitValue = p.waitFor();
+		} catch (IOException e) {
+			System.err.println(prefix + "Can't start run: " + e.getMessage());
+			return false;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+
+		double duration = (System.currentTimeMillis() - startTime)/1000.0;
+		print("Run " + (runIndex + 1) + "/" + lastRun + (exitValue == 0 ?
+				" done" : " failed (exit value " + exitValue + ")") + " in " +
+				String.format("%.2f", duration) + "s");
+		return exitValue == 0;
+	}
+
 	/**
 	 * Initializes Settings
 	 * @param confFiles File name paths where to read additional settings
@@ -216,6 +342,26 @@ public class DTNSim {
 		return val;
 	}
 
+	/**
+	 * Parses the number of parallel runs from a command line argument
+	 * @param arg The argument to parse
+	 * @return The number of parallel runs
+	 */
+	private static int parseNrofParallel(String arg) {
+		int val = 0;
+		try {
+			val = Integer.parseInt(arg);
+		} catch (NumberFormatException e) {
+			// handled below
+		}
+		if (val < 1) {
+			System.err.println("Invalid argument '" + arg + "' for" +
+					" number of parallel runs");
+			System.exit(-1);
+		}
+		return val;
+	}
+
 	/**
 	 * Prints text to stdout
 	 * @param txt Text to print
@@ -4,11 +4,10 @@
  */
 package core;
 
-import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
-import java.util.Set;
 
 /**
  * A message that is created at a node or passed between nodes.
@@ -20,10 +19,17 @@ public class Message implements Comparable<Message> {
 	private DTNHost to;
 	/** Identifier of the message */
 	private String id;
+	/** Interned integer key of the identifier */
+	private int key;
+	/** Keys of the identifiers that have been given to messages. The table
+	 * has one entry per distinct message ID created during a run (replicates
+	 * reuse the key of the original) and is cleared by {@link #reset()}
+	 * between the runs. */
+	private static HashMap<String, Integer> keys;
 	/** Size of the message (bytes) */
 	private int size;
-	/** List of nodes this message has passed */
-	private List<DTNHost> path;
+	/** The last node this message has passed (and the path to it) */
+	private PathNode path;
 	/** Next unique identifier to be given */
 	private static int nextUniqueId;
 	/** Unique ID of this message */
@@ -41,10 +47,15 @@ public class Message implements Comparable<Message> {
 	/** if this message is a response message, this is set to the request msg*/
 	private Message requestMsg;
 
-	/** Container for generic message properties. Note that all values
-	 * stored in the properties should be immutable because only a shallow
-	 * copy of the properties is made when replicating messages */
-	private Map<String, Object> properties;
+	/** Values of the generic message properties by their slots (see
+	 * {@link MessageProperty}). Note that all values stored in the
+	 * properties should be immutable because replicates share the values.
+	 * Replicates share the array, too, until one of them writes to it. */
+	private Object[] properties;
+	/** true if the properties array may be shared with another message */
+	private boolean propertiesShared;
+	/** stored in the properties array for a null value */
+	private static final Object NULL_VALUE = new Object();
 
 	/** Application ID of the application that created the message */
 	private String	appID;
@@ -63,11 +74,24 @@ public class Message implements Comparable<Message> {
 	 * @param size Size of the message (in bytes)
 	 */
 	public Message(DTNHost from, DTNHost to, String id, int size) {
+		this(from, to, id, internKey(id), size);
+	}
+
+	/**
+	 * Creates a new Message with an already interned key
+	 * @param from Who the message is (originally) from
+	 * @param to Who the message is (originally) to
+	 * @param id Message identifier
+	 * @param key The key of the identifier (see {@link #getKey()})
+	 * @param size Size of the message (in bytes)
+	 */
+	private Message(DTNHost from, DTNHost to, String id, int key, int size) {
 		this.from = from;
 		this.to = to;
 		this.id = id;
+		this.key = key;
 		this.size = size;
-		this.path = new ArrayList<DTNHost>();
+		this.path = null;
 		this.uniqueId = nextUniqueId;
 
 		this.timeCreated = SimClock.getTime();
@@ -106,6 +130,39 @@ public class Message implements Comparable<Message> {
 		return this.id;
 	}
 
+	/**
+	 * Returns the key of the message ID. Keys are small non-negative
+	 * integers and the same for all messages with the same ID (e.g.
+	 * replicates), so they can be used instead of the IDs in lookups.
+	 * The keys are valid only during the run they were given in.
+	 * @return The key of the message id
+	 */
+	public int getKey() {
+		return this.key;
+	}
+
+	/**
+	 * Returns the key of a message ID (see {@link #getKey()})
+	 * @param id The message ID
+	 * @return The key of the ID, or -1 if no message has had the ID
+	 */
+	public static int getKeyOf(String id) {
+		Integer key = keys.get(id);
+		return key == null ? -1 : key;
+	}
+
+	/**
+	 * Returns the key of a message ID and gives a new key to a new ID
+	 */
+	private static int internKey(String id) {
+		Integer key = keys.get(id);
+		if (key == null) {
+			key = keys.size();
+			keys.put(id, key);
+		}
+		return key;
+	}
+
 	/**
 	 * Returns an ID that is unique per message instance
 	 * (different for replicates too)
@@ -128,15 +185,32 @@ public class Message implements Comparable<Message> {
 	 * @param node The node to add
 	 */
 	public void addNodeOnPath(DTNHost node) {
-		this.path.add(node);
+		this.path = new PathNode(this.path, node);
 	}
 
 	/**
 	 * Returns a list of nodes this message has passed so far
-	 * @return The list as vector
+	 * @return The list (can't be modified)
 	 */
 	public List<DTNHost> getHops() {
-		return this.path;
+		if (this.path == null) {
+			return Collections.emptyList();
+		}
+		return this.path.getHops();
+	}
+
+	/**
+	 * Returns true if this message has passed the given node
+	 * @param node The node
+	 * @return true if the node is on the path of this message
+	 */
+	public boolean isOnPath(DTNHost node) {
+		for (PathNode n = this.path; n != null; n = n.parent) {
+			if (n.node == node) {
+				return true;
+			}
+		}
+		return false;
 	}
 
 	/**
@@ -144,7 +218,7 @@ public class Message implements Comparable<Message> {
 	 * @return the amount of hops this message has passed
 	 */
 	public int getHopCount() {
-		return this.path.size() -1;
+		return (this.path == null ? 0 : this.path.depth) - 1;
 	}
 
 	/**
@@ -256,7 +330,7 @@ public class Message implements Comparable<Message> {
 	 * @param m The message where the data is copied
 	 */
 	protected void copyFrom(Message m) {
-		this.path = new ArrayList<DTNHost>(m.path);
+		this.path = m.path; /* the nodes are immutable and can be shared */
 		this.timeCreated = m.timeCreated;
 		this.responseSize = m.responseSize;
 		this.requestMsg  = m.requestMsg;
@@ -264,10 +338,10 @@ public class Message implements Comparable<Message> {
 		this.appID = m.appID;
 
 		if (m.properties != null) {
-			Set<String> keys = m.properties.keySet();
-			for (String key : keys) {
-				updateProperty(key, m.getProperty(key));
-			}
+			/* copied only when either message writes a property */
+			this.properties = m.properties;
+			this.propertiesShared = true;
+			m.propertiesShared = true;
 		}
 	}
 
@@ -282,13 +356,19 @@ public class Message implements Comparable<Message> {
 	 * @throws SimError if the message already has a value for the given key
 	 */
 	public void addProperty(String key, Object value) throws SimError {
-		if (this.properties != null && this.properties.containsKey(key)) {
-			/* check to prevent accidental name space collisions */
-			throw new SimError("Message " + this + " already contains value " +
-					"for a key " + key);
-		}
+		putProperty(MessageProperty.forName(key), value, true);
+	}
 
-		this.updateProperty(key, value);
+	/**
+	 * Adds a typed property for this message (see
+	 * {@link #addProperty(String, Object)}).
+	 * @param property The property
+	 * @param value The value to store
+	 * @throws SimError if the message already has a value for the property
+	 */
+	public <T> void addProperty(MessageProperty<T> property, T value)
+			throws SimError {
+		putProperty(property, value, true);
 	}
 
 	/**
@@ -298,10 +378,18 @@ public class Message implements Comparable<Message> {
 	 * @return The stored object or null if it isn't found
 	 */
 	public Object getProperty(String key) {
-		if (this.properties == null) {
-			return null;
-		}
-		return this.properties.get(key);
+		return getProperty(MessageProperty.forName(key));
+	}
+
+	/**
+	 * Returns the value of a typed property, or null if the property has no
+	 * value.
+	 * @param property The property
+	 * @return The stored value or null if it isn't found
+	 */
+	public <T> T getProperty(MessageProperty<T> property) {
+		Object value = getSlotValue(property.getSlot());
+		return value == NULL_VALUE ? null : property.cast(value);
 	}
 
 	/**
@@ -312,13 +400,63 @@ public class Message implements Comparable<Message> {
 	 * @param value The new value to store
 	 */
 	public void updateProperty(String key, Object value) throws SimError {
-		if (this.properties == null) {
+		putProperty(MessageProperty.forName(key), value, false);
+	}
+
+	/**
+	 * Updates a value of a typed property (see
+	 * {@link #updateProperty(String, Object)}).
+	 * @param property The property
+	 * @param value The new value to store
+	 */
+	public <T> void updateProperty(MessageProperty<T> property, T value) {
+		putProperty(property, value, false);
+	}
+
+	/**
+	 * Stores a property value. The properties array is copied first if it
+	 * is shared with another message.
+	 * @param property The property
+	 * @param value The value
+	 * @param isNew If true, the message must not have a value yet
+	 * @throws SimError if the value is not of the property's type or
+	 * isNew is true and the message already has a value
+	 */
+	private void putProperty(MessageProperty<?> property, Object value,
+			boolean isNew) throws SimError {
+		int slot = property.getSlot();
+		if (isNew && getSlotValue(slot) != null) {
+			/* check to prevent accidental name space collisions */
+			throw new SimError("Message " + this + " already contains value " +
+					"for a key " + property);
+		}
+		value = property.cast(value);
+
+		if (this.properties == null || slot >= this.properties.length) {
 			/* lazy creation to prevent performance overhead for classes
 			   that don't use the property feature  */
-			this.properties = new HashMap<String, Object>();
+			int size = Math.max(slot + 1, MessageProperty.getNrofProperties());
+			this.properties = (this.properties == null ? new Object[size] :
+				Arrays.copyOf(this.properties, size));
+			this.propertiesShared = false;
+		}
+		else if (this.propertiesShared) {
+			this.properties = this.properties.clone();
+			this.propertiesShared = false;
 		}
 
-		this.properties.put(key, value);
+		this.properties[slot] = (value == null ? NULL_VALUE : value);
+	}
+
+	/**
+	 * Returns the value in a property slot (NULL_VALUE for a null value
+	 * and null for no value)
+	 */
+	private Object getSlotValue(int slot) {
+		if (this.properties == null || slot >= this.properties.length) {
+			return null;
+		}
+		return this.properties[slot];
 	}
 
 	/**
@@ -326,7 +464,7 @@ public class Message implements Comparable<Message> {
 	 * @return A replicate of the message
 	 */
 	public Message replicate() {
-		Message m = new Message(from, to, id, size);
+		Message m = new Message(from, to, id, key, size);
 		m.copyFrom(this);
 		return m;
 	}
@@ -344,6 +482,7 @@ public class Message implements Comparable<Message> {
 	 */
 	public static void reset() {
 		nextUniqueId = 0;
+		keys = new HashMap<String, Integer>();
 	}
 
 	/**
@@ -360,4 +499,35 @@ public class Message implements Comparable<Message> {
 		this.appID = appID;
 	}
 
+
+	/**
+	 * A node on the path of a message. Nodes are never modified, so the
+	 * replicates of a message share the common part of their paths.
+	 */
+	private static final class PathNode {
+		/** the previous node on the path (null for the first) */
+		private final PathNode parent;
+		private final DTNHost node;
+		/** number of nodes on the path up to this one */
+		private final int depth;
+		/** the path as a list, created when first asked */
+		private List<DTNHost> hops;
+
+		private PathNode(PathNode parent, DTNHost node) {
+			this.parent = parent;
+			this.node = node;
+			this.depth = (parent == null ? 0 : parent.depth) + 1;
+		}
+
+		private List<DTNHost> getHops() {
+			if (this.hops == null) {
+				DTNHost[] nodes = new DTNHost[this.depth];
+				for (PathNode n = this; n != null; n = n.parent) {
+					nodes[n.depth - 1] = n.node;
+				}
+				this.hops = Collections.unmodifiableList(Arrays.asList(nodes));
+			}
+			return this.hops;
+		}
+	}
 }
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+import java.util.HashMap;
+
+/**
+ * Typed key of a {@link Message} property. Every property name is
+ * registered once and gets a slot in the property arrays of the messages,
+ * so properties are read and written with the key without hashing the
+ * name or casting the value.
+ * @param <T> Type of the property's values
+ */
+public final class MessageProperty<T> {
+	/** the registered properties by their names */
+	private static HashMap<String, MessageProperty<?>> properties =
+		new HashMap<String, MessageProperty<?>>();
+
+	private final String name;
+	private Class<T> type;
+	private final int slot;
+	/** false if the property was only used by its name so far */
+	private boolean typed;
+
+	private MessageProperty(String name, Class<T> type, int slot,
+			boolean typed) {
+		this.name = name;
+		this.type = type;
+		this.slot = slot;
+		this.typed = typed;
+	}
+
+	/**
+	 * Registers a property or returns the already registered property with
+	 * the same name and type. A property that was only used by its name
+	 * so far gets the given type.
+	 * @param name Name of the property (the key of the String based
+	 * property methods of Message)
+	 * @param type Type of the property's values
+	 * @return The property
+	 * @throws SimError if the name is already registered with another type
+	 */
+	@SuppressWarnings("unchecked")
+	public static synchronized <T> MessageProperty<T> register(String name,
+			Class<T> type) {
+		MessageProperty<T> p = (MessageProperty<T>)properties.get(name);
+		if (p == null) {
+			p = new MessageProperty<T>(name, type, properties.size(), true);
+			properties.put(name, p);
+		}
+		else if (!p.typed) {
+			p.type = type;
+			p.typed = true;
+		}
+		else if (p.type != type) {
+			throw new SimError("Message property " + name + " is already " +
+					"registered with type " + p.type.getName());
+		}
+		return p;
+	}
+
+	/**
+	 * Returns the property with the given name. Unknown names are
+	 * registered for any values until they are registered with a type.
+	 * @param name Name of the property
+	 * @return The property
+	 */
+	static synchronized MessageProperty<?> forName(String name) {
+		MessageProperty<?> p = properties.get(name);
+		if (p == null) {
+			p = new MessageProperty<Object>(name, Object.class,
+					properties.size(), false);
+			properties.put(name, p);
+		}
+		return p;
+	}
+
+	/**
+	 * Returns the number of registered properties
+	 * @return the number of registered properties
+	 */
+	static synchronized int getNrofProperties() {
+		return properties.size();
+	}
+
+	/**
+	 * Returns the name of the property
+	 * @return the name of the property
+	 */
+	public String getName() {
+		return this.name;
+	}
+
+	/**
+	 * Returns the type of the property's values
+	 * @return the type of the property's values
+	 */
+	public Class<T> getType() {
+		return this.type;
+	}
+
+	/**
+	 * Returns the slot of the property in the property arrays
+	 * @return the slot of the property
+	 */
+	int getSlot() {
+		return this.slot;
+	}
+
+	/**
+	 * Checks that a value can be stored to the property
+	 * @param value The value
+	 * @return The value as the type of the property
+	 * @throws SimError if the value is not of the property's type
+	 */
+	T cast(Object value) {
+		if (value != null && !this.type.isInstance(value)) {
+			throw new SimError("Value " + value + " is not a valid value " +
+					"for message property " + this.name + " of type " +
+					this.type.getName());
+		}
+		return this.type.cast(value);
+	}
+
+	@Override
+	public String toString() {
+		return this.name;
+	}
+}
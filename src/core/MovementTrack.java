@@ -0,0 +1,100 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+import java.util.Arrays;
+
+/**
+ * Piecewise-linear record of how a host moved during one movement step.
+ * Every point is stored with the fraction of the step at which the host
+ * was there; between two points the host moved along a straight line at
+ * constant speed and after the last point it didn't move.
+ */
+class MovementTrack {
+	private double[] xs = new double[4];
+	private double[] ys = new double[4];
+	private double[] fractions = new double[4];
+	private int size;
+
+	/**
+	 * Starts a new track (and forgets the old one)
+	 * @param c Where the host was at the start of the step
+	 */
+	void start(Coord c) {
+		this.size = 0;
+		add(c, 0);
+	}
+
+	/**
+	 * Adds a point to the track
+	 * @param c Where the host was
+	 * @param fraction Fraction of the step when the host was there
+	 */
+	void add(Coord c, double fraction) {
+		if (this.size == this.xs.length) {
+			int newSize = this.size * 2;
+			this.xs = Arrays.copyOf(this.xs, newSize);
+			this.ys = Arrays.copyOf(this.ys, newSize);
+			this.fractions = Arrays.copyOf(this.fractions, newSize);
+		}
+		this.xs[size] = c.getX();
+		this.ys[size] = c.getY();
+		this.fractions[size] = fraction;
+		this.size++;
+	}
+
+	/**
+	 * Returns the number of points in the track
+	 * @return the number of points
+	 */
+	int size() {
+		return this.size;
+	}
+
+	/**
+	 * Returns the step fraction of a point
+	 * @param index Index of the point
+	 * @return the fraction of the step when the host was at the point
+	 */
+	double getFraction(int index) {
+		return this.fractions[index];
+	}
+
+	/**
+	 * Returns the x coordinate of the host at the given step fraction
+	 * @param fraction The step fraction
+	 * @return the x coordinate
+	 */
+	double getX(double fraction) {
+		return interpolate(this.xs, fraction);
+	}
+
+	/**
+	 * Returns the y coordinate of the host at the given step fraction
+	 * @param fraction The step fraction
+	 * @return the y coordinate
+	 */
+	double getY(double fraction) {
+		return interpolate(this.ys, fraction);
+	}
+
+	private double interpolate(double[] values, double fraction) {
+		int i = 1;
+		while (i < this.size && this.fractions[i] < fraction) {
+			i++;
+		}
+		if (i == this.size) {
+			return values[size - 1]; /* stopped after the last point */
+		}
+
+		double f0 = this.fractions[i - 1];
+		double f1 = this.fractions[i];
+		if (f1 <= f0) {
+			return values[i];
+		}
+		return values[i - 1] +
+			(values[i] - values[i - 1]) * (fraction - f0) / (f1 - f0);
+	}
+}
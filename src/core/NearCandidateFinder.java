@@ -0,0 +1,225 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+import interfaces.ConnectivityOptimizer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+/**
+ * Finds concurrently, for every interface of the hosts, the interfaces of
+ * the same connectivity optimizer that are within range of it and gives
+ * them to the interface as near candidates
+ * (see {@link NetworkInterface#setNearCandidates(List)}). The interfaces
+ * are put to a grid whose cell size is the largest range, so only the
+ * 3x3 block of cells around an interface needs to be checked.
+ * Used by {@link World#PARALLEL_UPDATES_S}.
+ */
+class NearCandidateFinder {
+	/** how much larger than the largest range the cells are (relative) */
+	private static final double CELL_MARGIN = 1e-6;
+
+	/** the hosts whose interfaces' candidates are found */
+	private List<DTNHost> hosts;
+	/** all interfaces of the hosts, grouped by the connectivity optimizer */
+	private List<Group> groups;
+
+	/**
+	 * Interfaces of one connectivity optimizer and their candidates
+	 */
+	private static class Group {
+		private NetworkInterface[] interfaces;
+		private List<List<NetworkInterface>> candidates;
+		/** locations of the interfaces' hosts */
+		private double[] xs;
+		private double[] ys;
+		/** grid cell of each interface */
+		private int[] cellOf;
+		/** interface indexes sorted by the cell */
+		private int[] byCell;
+		/** index of the first interface of each cell in byCell */
+		private int[] cellStart;
+		private int cols;
+		private int rows;
+
+		private Group(List<NetworkInterface> interfaces) {
+			int n = interfaces.size();
+			this.interfaces = interfaces.toArray(new NetworkInterface[n]);
+			this.candidates = new ArrayList<List<NetworkInterface>>(n);
+			for (int i=0; i<n; i++) {
+				this.candidates.add(new ArrayList<NetworkInterface>());
+			}
+			this.xs = new double[n];
+			this.ys = new double[n];
+			this.cellOf = new int[n];
+			this.byCell = new int[n];
+			this.cellStart = new int[1];
+		}
+
+		/**
+		 * Finds the candidates of every interface of the group and sets
+		 * them to the interfaces
+		 */
+		private void find() {
+			int n = this.interfaces.length;
+			double minX = Double.MAX_VALUE, minY = Double.MAX_VALUE;
+			double maxX = -Double.MAX_VALUE, maxY = -Double.MAX_VALUE;
+			double maxRange = 0;
+
+			for (int i=0; i<n; i++) {
+				Coord c = this.interfaces[i].getHost().getLocation();
+				this.xs[i] = c.getX();
+				this.ys[i] = c.getY();
+				minX = Math.min(minX, xs[i]);
+				minY = Math.min(minY, ys[i]);
+				maxX = Math.max(maxX, xs[i]);
+				maxY = Math.max(maxY, ys[i]);
+				maxRange = Math.max(maxRange,
+						this.interfaces[i].getTransmitRange());
+			}
+			if (maxRange <= 0) {
+				for (int i=0; i<n; i++) {
+					this.candidates.get(i).clear();
+					this.interfaces[i].setNearCandidates(
+							this.candidates.get(i));
+				}
+				return;
+			}
+
+			/* no need for more cells than interfaces */
+			double cellSize = maxRange * (1 + CELL_MARGIN);
+			while (((maxX - minX) / cellSize + 1) *
+					((maxY - minY) / cellSize + 1) > 4.0 * n + 16) {
+				cellSize *= 2;
+			}
+			this.cols = (int)((maxX - minX) / cellSize) + 1;
+			this.rows = (int)((maxY - minY) / cellSize) + 1;
+
+			/* counting sort of the interfaces by the cell */
+			int nrofCells = this.cols * this.rows;
+			if (this.cellStart.length < nrofCells + 1) {
+				this.cellStart = new int[nrofCells + 1];
+			}
+			Arrays.fill(this.cellStart, 0, nrofCells + 1, 0);
+			for (int i=0; i<n; i++) {
+				int col = (int)((this.xs[i] - minX) / cellSize);
+				int row = (int)((this.ys[i] - minY) / cellSize);
+				this.cellOf[i] = row * this.cols + col;
+				this.cellStart[this.cellOf[i] + 1]++;
+			}
+			for (int c=0; c<nrofCells; c++) {
+				this.cellStart[c + 1] += this.cellStart[c];
+			}
+			int[] filled = this.cellStart.clone();
+			for (int i=0; i<n; i++) {
+				this.byCell[filled[this.cellOf[i]]++] = i;
+			}
+
+			IntStream.range(0, n).parallel().forEach(this::findFor);
+
+			for (int i=0; i<n; i++) {
+				this.interfaces[i].setNearCandidates(this.candidates.get(i));
+			}
+		}
+
+		/**
+		 * Finds the interfaces within range of one interface
+		 * @param i Index of the interface
+		 */
+		private void findFor(int i) {
+			NetworkInterface ni = this.interfaces[i];
+			List<NetworkInterface> found = this.candidates.get(i);
+			found.clear();
+
+			int row = this.cellOf[i] / this.cols;
+			int col = this.cellOf[i] % this.cols;
+			for (int r = Math.max(row - 1, 0);
+					r <= Math.min(row + 1, this.rows - 1); r++) {
+				for (int c = Math.max(col - 1, 0);
+						c <= Math.min(col + 1, this.cols - 1); c++) {
+					int cell = r * this.cols + c;
+					for (int k = this.cellStart[cell];
+							k < this.cellStart[cell + 1]; k++) {
+						NetworkInterface other = this.interfaces[byCell[k]];
+						if (other != ni && ni.isWithinRange(other)) {
+							found.add(other);
+						}
+					}
+				}
+			}
+		}
+
+		/**
+		 * Clears the candidates of the interfaces
+		 */
+		private void clear() {
+			for (NetworkInterface ni : this.interfaces) {
+				ni.setNearCandidates(null);
+			}
+		}
+	}
+
+	/**
+	 * Constructor.
+	 * @param hosts The hosts whose interfaces' candidates are found
+	 */
+	public NearCandidateFinder(List<DTNHost> hosts) {
+		this.hosts = hosts;
+		Map<ConnectivityOptimizer, List<NetworkInterface>> byOptimizer =
+			new LinkedHashMap<ConnectivityOptimizer, List<NetworkInterface>>();
+		for (DTNHost host : hosts) {
+			for (NetworkInterface ni : host.getInterfaces()) {
+				if (ni.optimizer == null) {
+					continue; /* never connects */
+				}
+				List<NetworkInterface> list = byOptimizer.get(ni.optimizer);
+				if (list == null) {
+					list = new ArrayList<NetworkInterface>();
+					byOptimizer.put(ni.optimizer, list);
+				}
+				list.add(ni);
+			}
+		}
+
+		this.groups = new ArrayList<Group>();
+		for (List<NetworkInterface> list : byOptimizer.values()) {
+			this.groups.add(new Group(list));
+		}
+	}
+
+	/**
+	 * Finds the near candidates of all interfaces, unless some interface
+	 * isn't steadily scanning ({@link NetworkInterface#isSteadilyScanning()})
+	 * @return true if the candidates were found, false if not
+	 */
+	public boolean find() {
+		for (int i=0, n=this.hosts.size(); i<n; i++) {
+			for (NetworkInterface ni : this.hosts.get(i).getInterfaces()) {
+				if (!ni.isSteadilyScanning()) {
+					return false;
+				}
+			}
+		}
+
+		for (Group g : this.groups) {
+			g.find();
+		}
+		return true;
+	}
+
+	/**
+	 * Clears the near candidates of all interfaces
+	 */
+	public void clear() {
+		for (Group g : this.groups) {
+			g.clear();
+		}
+	}
+}
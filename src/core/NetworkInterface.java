@@ -4,12 +4,14 @@
  */
 package core;
 
-import interfaces.ConnectivityGrid;
 import interfaces.ConnectivityOptimizer;
+import interfaces.SpatialHashGrid;
 
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
 
 import routing.util.EnergyModel;
 
@@ -60,6 +62,17 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 	protected double oldTransmitRange;
 	protected int transmitSpeed;
 	protected ConnectivityOptimizer optimizer = null;
+	/** index of this interface in the optimizer (-1 if not set) */
+	private int optimizerIndex = -1;
+	/** calls {@link #connect(NetworkInterface)}; given to the optimizer
+	 * when iterating the near interfaces */
+	protected final Consumer<NetworkInterface> connector = this::connect;
+	/** smallest range margin found so far by {@link #marginVisitor} */
+	private double rangeMargin;
+	/** updates {@link #rangeMargin} with a near interface's margin; given to
+	 * the optimizer in {@link #getRangeMargin()} */
+	private final Consumer<NetworkInterface> marginVisitor =
+		this::updateRangeMargin;
 	/** scanning interval, or 0.0 if n/a */
 	private double scanInterval;
 	private double lastScanTime;
@@ -70,6 +83,22 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 	private int activenessJitterMax;
 	/** this interface's activeness jitter value */
 	private int activenessJitterValue;
+	/** last energy value seen on the host's comBus (1 if no energy model) */
+	private double energyValue = 1;
+	/** has an energy model published the battery level to the comBus */
+	private boolean energyTracked;
+	/** interfaces within range of this one (see
+	 * {@link #setNearCandidates(List)}), or null if not known */
+	private List<NetworkInterface> nearCandidates;
+	/** value of {@link #stateChanges} when the candidates were set */
+	private int candidatesStateChanges;
+	/** tells the optimizer if it can skip the near interfaces that are not
+	 * candidates; given to the optimizer with the candidates */
+	private final BooleanSupplier candidatesValid =
+		() -> this.candidatesStateChanges == stateChanges;
+	/** number of range, scanning interval and battery depletion changes of
+	 * all interfaces */
+	private static int stateChanges;
 
 	static {
 		DTNSim.registerForReset(NetworkInterface.class.getCanonicalName());
@@ -81,6 +110,7 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 	 */
 	public static void reset() {
 		rng = new Random(0);
+		stateChanges = 0;
 	}
 
 	/**
@@ -153,9 +183,15 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 			comBus.subscribe(RANGE_ID, this);
 			comBus.subscribe(SPEED_ID, this);
 		}
+		/* track the battery level here instead of looking it up from the
+		   comBus on every activeness check */
+		this.energyValue = comBus.getDouble(EnergyModel.ENERGY_VALUE_ID, 1);
+		this.energyTracked =
+			comBus.containsProperty(EnergyModel.ENERGY_VALUE_ID);
+		comBus.subscribe(EnergyModel.ENERGY_VALUE_ID, this);
 
 		if (transmitRange > 0) {
-			optimizer = ConnectivityGrid.ConnectivityGridFactory(
+			optimizer = SpatialHashGrid.SpatialHashGridFactory(
 					this.interfacetype.hashCode(), transmitRange);
 			optimizer.addInterface(this);
 		} else {
@@ -237,9 +273,7 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 
 		active = ah.isActive(this.activenessJitterValue);
 
-		if (active && host.getComBus().getDouble(EnergyModel.ENERGY_VALUE_ID,
-					1) <= 0) {
-			/* TODO: better way to check battery level */
+		if (active && this.energyValue <= 0) {
 			/* no battery -> inactive */
 			active = false;
 		}
@@ -256,6 +290,105 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 		return active;
 	}
 
+	/**
+	 * Returns true if this interface is active and scanning on every update
+	 * round regardless of time, i.e., it has no activeness schedule, no
+	 * scanning interval and its battery level isn't tracked. Checking the
+	 * activeness of such interface never changes its state.
+	 * @return true if the interface is always active and scanning
+	 */
+	public boolean isAlwaysScanning() {
+		return (ah == null || ah.isAlwaysActive()) && scanInterval == 0 &&
+			!energyTracked;
+	}
+
+	/**
+	 * Returns true if this interface is active and scanning and checking its
+	 * activeness doesn't change its state until the range, the scanning
+	 * interval or the battery level of some interface changes (see
+	 * {@link #setNearCandidates(List)}).
+	 * @return true if the interface is steadily active and scanning
+	 */
+	public boolean isSteadilyScanning() {
+		return scanInterval == 0 && (ah == null || (ah.isAlwaysActive() &&
+				this.energyValue > 0 && this.transmitRange > 0));
+	}
+
+	/**
+	 * Sets the interfaces that are within range of this interface on the
+	 * current update round. Until the candidates are cleared (or the range,
+	 * the scanning interval or the battery level of any interface changes)
+	 * {@link #connectToNearInterfaces()} tries to connect only to them,
+	 * which changes nothing if all interfaces are steadily scanning
+	 * ({@link #isSteadilyScanning()}).
+	 * @param candidates The interfaces within range, or null to clear
+	 */
+	public void setNearCandidates(List<NetworkInterface> candidates) {
+		this.nearCandidates = candidates;
+		this.candidatesStateChanges = stateChanges;
+	}
+
+	/**
+	 * Calls {@link #connect(NetworkInterface)} for every near interface
+	 * in the connectivity optimizer, or only for the near candidates
+	 * (see {@link #setNearCandidates(List)}) if they are set.
+	 */
+	protected void connectToNearInterfaces() {
+		if (this.nearCandidates != null) {
+			optimizer.forEachNearInterface(this, this.nearCandidates,
+					candidatesValid, connector);
+		}
+		else {
+			optimizer.forEachNearInterface(this, connector);
+		}
+	}
+
+	/**
+	 * Returns how much closer this interface can get to any other interface
+	 * before they are within range of each other (negative if some interface
+	 * already is within range).
+	 * @return The smallest distance margin to the other interfaces
+	 */
+	public double getRangeMargin() {
+		if (optimizer == null) {
+			return Double.MAX_VALUE; /* never connects */
+		}
+
+		/* interfaces that are not near are at least this far away */
+		this.rangeMargin = optimizer.getNearDistance() - this.transmitRange;
+		optimizer.forEachNearInterface(this, marginVisitor);
+		return this.rangeMargin;
+	}
+
+	/**
+	 * Lowers the range margin being computed in {@link #getRangeMargin()} if
+	 * the given interface is closer to getting within range
+	 * @param i The near interface
+	 */
+	private void updateRangeMargin(NetworkInterface i) {
+		if (i == this) {
+			return;
+		}
+		double smallerRange = Math.min(this.transmitRange,
+				i.getTransmitRange());
+		double m = this.host.getLocation().distance(i.getHost().getLocation())
+			- smallerRange;
+		if (m < this.rangeMargin) {
+			this.rangeMargin = m;
+		}
+	}
+
+	/**
+	 * Updates only this interface's location in the connectivity optimizer.
+	 * This is all {@link #update()} does if there are no connections and no
+	 * other interface is within range.
+	 */
+	public void updateLocation() {
+		if (optimizer != null) {
+			optimizer.updateLocation(this);
+		}
+	}
+
 	/**
 	 * Checks if this interface is currently in the scanning mode
 	 * @return True if the interface is scanning; false if not
@@ -430,12 +563,21 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 	public void moduleValueChanged(String key, Object newValue) {
 		if (key.equals(SCAN_INTERVAL_ID)) {
 			this.scanInterval = (Double)newValue;
+			stateChanges++;
 		}
 		else if (key.equals(SPEED_ID)) {
 			this.transmitSpeed = (Integer)newValue;
 		}
 		else if (key.equals(RANGE_ID)) {
 			this.transmitRange = (Double)newValue;
+			stateChanges++;
+		}
+		else if (key.equals(EnergyModel.ENERGY_VALUE_ID)) {
+			this.energyValue = (Double)newValue;
+			this.energyTracked = true;
+			if (this.energyValue <= 0) {
+				stateChanges++;
+			}
 		}
 		else {
 			throw new SimError("Unexpected combus ID " + key);
@@ -490,6 +632,23 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 		connections.remove(index);
 	}
 
+	/**
+	 * Returns the index the connectivity optimizer has given to this
+	 * interface
+	 * @return the index, or -1 if no index has been set
+	 */
+	public int getOptimizerIndex() {
+		return this.optimizerIndex;
+	}
+
+	/**
+	 * Sets the index of this interface in its connectivity optimizer
+	 * @param index The index (or -1 to clear it)
+	 */
+	public void setOptimizerIndex(int index) {
+		this.optimizerIndex = index;
+	}
+
 	/**
 	 * Returns the DTNHost of this interface
 	 */
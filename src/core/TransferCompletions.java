@@ -0,0 +1,72 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+import input.EventQueue;
+import input.ExternalEvent;
+
+import java.util.List;
+
+/**
+ * Offers the end times of the ongoing constant bit-rate transfers as
+ * (dummy) external events, so that the hosts are updated when a transfer
+ * is done also if the world jumps over update intervals (see
+ * {@link World#NEXT_EVENT_JUMP_S}).
+ */
+class TransferCompletions implements EventQueue {
+	/** list of hosts whose connections are checked */
+	private List<DTNHost> hosts;
+	/** time of the last given event */
+	private double lastTime;
+
+	/**
+	 * Constructor.
+	 * @param hosts The hosts whose transfers are followed
+	 */
+	public TransferCompletions(List<DTNHost> hosts) {
+		this.hosts = hosts;
+		this.lastTime = -Double.MAX_VALUE;
+	}
+
+	/**
+	 * Returns an update event for the next transfer end time
+	 */
+	public ExternalEvent nextEvent() {
+		double time = nextEventsTime();
+		if (time < Double.MAX_VALUE) {
+			this.lastTime = time;
+		}
+		return new ExternalEvent(time);
+	}
+
+	/**
+	 * Returns the next end time of an ongoing transfer, or Double.MAX_VALUE
+	 * if there are no transfers. Times that have already been given are
+	 * skipped (a transfer whose end time was given is finalized by the
+	 * update after the event).
+	 */
+	public double nextEventsTime() {
+		double next = Double.MAX_VALUE;
+
+		for (int i=0, n=this.hosts.size(); i<n; i++) {
+			for (NetworkInterface ni : this.hosts.get(i).getInterfaces()) {
+				List<Connection> connections = ni.getConnections();
+				for (int j=0, m=connections.size(); j<m; j++) {
+					Connection con = connections.get(j);
+					if (!con.isTransferring() ||
+							!(con instanceof CBRConnection)) {
+						continue;
+					}
+					double time = ((CBRConnection)con).getTransferDoneTime();
+					if (time > this.lastTime && time < next) {
+						next = time;
+					}
+				}
+			}
+		}
+
+		return next;
+	}
+}
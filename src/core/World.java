@@ -9,10 +9,13 @@ import input.ExternalEvent;
 import input.ScheduledUpdatesQueue;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Random;
 
+import movement.MovementModel;
+
 /**
  * World contains all the nodes and is responsible for updating their
  * location and connections.
@@ -48,6 +51,112 @@ public class World {
 	 */
 	public static final String SIMULATE_CON_ONCE_S = "simulateConnectionsOnce";
 
+	/**
+	 * Should hosts be moved concurrently -setting id ({@value}). Boolean
+	 * (true/false) variable. Default = false. Requires per-host movement rng
+	 * streams ({@link MovementModel#HOST_RNG_STREAMS_S}); hosts whose
+	 * movement model can't be moved concurrently are still moved one by one.
+	 * Movement listeners are informed in host address order after each
+	 * movement step.
+	 */
+	public static final String PARALLEL_MOVEMENT_S = "parallelMovement";
+
+	/**
+	 * Should the update of idle hosts be skipped -setting id ({@value}).
+	 * Boolean (true/false) variable. Default = false. A host is idle when
+	 * it has no connections, its router has nothing to do without them
+	 * ({@link routing.MessageRouter#canSkipUpdate()}) and no other host can
+	 * have come within range since the host's range margin was last
+	 * computed. For such host only the location in the connectivity
+	 * optimizer is updated, which gives the same results as a full update.
+	 * Skipping is turned off after the first round if any interface has an
+	 * activeness schedule, a scanning interval or an energy model, because
+	 * then checking the activeness of an interface changes its state.
+	 */
+	public static final String SKIP_IDLE_UPDATES_S = "skipIdleUpdates";
+	/**
+	 * Should the contacts be solved from the host movement -setting id
+	 * ({@value}). Boolean (true/false) variable. Default = false. If true,
+	 * connections are created and destroyed at the times the hosts come
+	 * within and go out of range during a movement step instead of at the
+	 * interval boundaries (see {@link ContactPredictor}). The hosts are
+	 * then moved at the start of every update interval, before the
+	 * external events of the interval. Can't be used together with
+	 * {@link #SKIP_IDLE_UPDATES_S}, nor with interfaces that have an
+	 * activeness schedule or a scanning interval or hosts whose router has
+	 * an energy model, because the predicted contacts ignore those.
+	 */
+	public static final String CONTACT_PREDICTION_S = "contactPrediction";
+	/**
+	 * Should the world jump over the update intervals where nothing happens
+	 * -setting id ({@value}). Boolean (true/false) variable. Default = false.
+	 * Requires {@link #CONTACT_PREDICTION_S} if connections are simulated.
+	 * If true, one update round covers as many update intervals as possible
+	 * before the next time any host needs an update
+	 * ({@link DTNHost#getNextUpdateTime()}: e.g., a TTL check, the end of a
+	 * pause in movement, a free connection after the router's state
+	 * changed), but at most {@link #MAX_JUMP_S} seconds. Routers with an
+	 * energy model or applications need an update on every round, so there
+	 * are no jumps with them. The hosts are moved over the whole jump
+	 * at once and the contact changes of the jump are solved from the
+	 * movement. Contact changes, the ends of the transfers
+	 * ({@link CBRConnection#getTransferDoneTime()}), external events and
+	 * scheduled updates inside a jump are processed at their own times, and
+	 * all hosts are updated after each of them.
+	 * <P>
+	 * The jumps are not equivalent to the updates without them, and the
+	 * reports differ from the ones without jumps. A host that reaches the
+	 * end of its path during a jump requests the next path at the start
+	 * of the jump, not at the start of the update interval where the path
+	 * ended. This starts its pause, and all its later movement, up to
+	 * {@link #MAX_JUMP_S} seconds earlier, and shifts the movement random
+	 * number draws. In addition, the update order is shuffled only once per
+	 * jump, the host locations at the events inside a jump are the ones at
+	 * the end of the jump, a host that gets a free connection inside a
+	 * jump tries transfers over it only at the next event or at the end of
+	 * the jump, and the update listeners (e.g., the reports that sample the
+	 * hosts periodically) are informed once per jump. The jumps suit runs
+	 * where statistically similar results are enough, not comparisons of
+	 * individual runs with and without them.
+	 */
+	public static final String NEXT_EVENT_JUMP_S = "nextEventJump";
+	/**
+	 * Maximum length of a jump -setting id ({@value}). Double valued.
+	 * Seconds; rounded down to whole update intervals. The jumps are also
+	 * kept so short that the hosts can't move (at the maximum speeds of
+	 * their movement models) further than the contacts can be solved from
+	 * the near interfaces of the connectivity optimizers (see
+	 * {@link ContactPredictor#getMaxStepDuration(double)}).
+	 * Default = {@value #DEF_MAX_JUMP}.
+	 * @see #NEXT_EVENT_JUMP_S
+	 */
+	public static final String MAX_JUMP_S = "maxJump";
+	/** default maximum length of a jump ({@value}) */
+	public static final double DEF_MAX_JUMP = 10;
+	/**
+	 * Should the interfaces within range of each other be found
+	 * concurrently -setting id ({@value}). Boolean (true/false) variable.
+	 * Default = false. If true, the interfaces within range of every
+	 * interface are found on the common fork/join pool at the start of
+	 * every host update round. The hosts are then updated one by one in
+	 * the update order as usual, but an interface tries to connect only to
+	 * the interfaces found for it instead of going through all near
+	 * interfaces of its connectivity optimizer. This gives the same results
+	 * as without the setting. The interfaces go through all near interfaces
+	 * on the rounds where some interface isn't steadily active and scanning
+	 * ({@link NetworkInterface#isSteadilyScanning()}), and after the range,
+	 * the scanning interval or the battery depletion of any interface
+	 * changes on a round, because then checking the activeness of an
+	 * interface can change its state. The router updates (transfers, TTL
+	 * checks) are always done one by one; hosts are moved concurrently with
+	 * {@link #PARALLEL_MOVEMENT_S}. Can't be used with
+	 * {@link #SKIP_IDLE_UPDATES_S} or {@link #CONTACT_PREDICTION_S}.
+	 */
+	public static final String PARALLEL_UPDATES_S = "parallelUpdates";
+
+	/** distance margin for floating point errors in the range margins */
+	private static final double MARGIN_EPSILON = 1e-9;
+
 	private int sizeX;
 	private int sizeY;
 	private List<EventQueue> eventQueues;
@@ -70,6 +179,37 @@ public class World {
 	
 	private boolean realtimeSimulation;
 	private long simStartRealtime;
+	/** hosts that are moved concurrently, or null if all hosts are moved
+	 * one by one */
+	private List<DTNHost> concurrentMovers;
+
+	/** is skipping the updates of idle hosts on */
+	private boolean skipIdleUpdates;
+	/** have the interfaces been checked for skipping idle updates */
+	private boolean idleUpdatesChecked;
+	/** sum of the largest host displacement of every update round; the
+	 * difference of two values bounds how much any host can have moved */
+	private double displacementSum;
+	/** host locations (by address) at the previous update round */
+	private double[] lastX, lastY;
+	/** range margins of the hosts (NaN if not known) and the
+	 * displacementSum values when they were computed */
+	private double[] rangeMargins, marginDisplacements;
+	/** which hosts got a full update on the current round */
+	private boolean[] updated;
+	/** solver of the connection changes, or null if the interfaces check
+	 * their connectivity themselves */
+	private ContactPredictor contactPredictor;
+	/** end times of the transfers, or null if the world doesn't jump over
+	 * update intervals */
+	private TransferCompletions transferCompletions;
+	/** maximum length of a jump */
+	private double maxJump;
+	/** end time of the simulation (the jumps don't go past it) */
+	private double endTime;
+	/** finder of the interfaces within range of each other, or null if
+	 * the interfaces go through all their near interfaces */
+	private NearCandidateFinder nearCandidateFinder;
 
 	/**
 	 * Constructor.
@@ -107,6 +247,80 @@ public class World {
 		
 		this.realtimeSimulation = s.getBoolean(REALTIME_SIM_S ,false);
 
+		if (s.getBoolean(PARALLEL_MOVEMENT_S, false)) {
+			if (!MovementModel.usesHostRngStreams()) {
+				throw new SettingsError(s.getFullPropertyName(
+						PARALLEL_MOVEMENT_S) + " requires " +
+						MovementModel.MOVEMENT_MODEL_NS + "." +
+						MovementModel.HOST_RNG_STREAMS_S + " = true");
+			}
+			this.concurrentMovers = new ArrayList<DTNHost>();
+			for (DTNHost host : this.hosts) {
+				if (host.canMoveConcurrently()) {
+					this.concurrentMovers.add(host);
+				}
+			}
+		}
+		else {
+			this.concurrentMovers = null;
+		}
+
+		this.skipIdleUpdates = s.getBoolean(SKIP_IDLE_UPDATES_S, false);
+		this.idleUpdatesChecked = false;
+
+		if (s.getBoolean(CONTACT_PREDICTION_S, false) &&
+				this.simulateConnections) {
+			if (this.skipIdleUpdates) {
+				throw new SettingsError(s.getFullPropertyName(
+						CONTACT_PREDICTION_S) + " can't be used with " +
+						s.getFullPropertyName(SKIP_IDLE_UPDATES_S));
+			}
+			checkContactPredictable(s);
+			this.contactPredictor = new ContactPredictor(this.hosts);
+		}
+		else {
+			this.contactPredictor = null;
+		}
+
+		if (s.getBoolean(NEXT_EVENT_JUMP_S, false)) {
+			if (this.contactPredictor == null && this.simulateConnections) {
+				throw new SettingsError(s.getFullPropertyName(
+						NEXT_EVENT_JUMP_S) + " requires " +
+						OPTIMIZATION_SETTINGS_NS + "." + CONTACT_PREDICTION_S +
+						" = true");
+			}
+			this.maxJump = s.getDouble(MAX_JUMP_S, DEF_MAX_JUMP);
+			s.ensurePositiveValue(this.maxJump, MAX_JUMP_S);
+			if (this.contactPredictor != null) {
+				double maxSpeed = 0;
+				for (DTNHost host : this.hosts) {
+					maxSpeed = Math.max(maxSpeed, host.getMaxSpeed());
+				}
+				this.maxJump = Math.min(this.maxJump,
+						this.contactPredictor.getMaxStepDuration(maxSpeed));
+			}
+			this.endTime = new Settings(SimScenario.SCENARIO_NS).getDouble(
+					SimScenario.END_TIME_S);
+			this.transferCompletions = new TransferCompletions(this.hosts);
+		}
+		else {
+			this.transferCompletions = null;
+		}
+
+		if (s.getBoolean(PARALLEL_UPDATES_S, false)) {
+			String other = this.skipIdleUpdates ? SKIP_IDLE_UPDATES_S :
+				(this.contactPredictor != null ? CONTACT_PREDICTION_S : null);
+			if (other != null) {
+				throw new SettingsError(OPTIMIZATION_SETTINGS_NS + "." +
+						PARALLEL_UPDATES_S + " can't be used with " +
+						OPTIMIZATION_SETTINGS_NS + "." + other);
+			}
+			this.nearCandidateFinder = new NearCandidateFinder(this.hosts);
+		}
+		else {
+			this.nearCandidateFinder = null;
+		}
+
 		if(randomizeUpdates) {
 			// creates the update order array that can be shuffled
 			this.updateOrder = new ArrayList<DTNHost>(this.hosts);
@@ -116,6 +330,32 @@ public class World {
 		}
 	}
 
+	/**
+	 * Checks that the contacts of the hosts can be predicted from their
+	 * movement, i.e., no interface has an activeness schedule or a scanning
+	 * interval and no router has an energy model.
+	 * @param s The optimization settings
+	 * @throws SettingsError if some host's contacts can't be predicted
+	 */
+	private void checkContactPredictable(Settings s) {
+		for (DTNHost host : this.hosts) {
+			if (host.getRouter().hasEnergyModel()) {
+				throw new SettingsError(s.getFullPropertyName(
+						CONTACT_PREDICTION_S) + " can't be used with " +
+						"energy models (host " + host + ")");
+			}
+			for (NetworkInterface ni : host.getInterfaces()) {
+				/* battery levels aren't tracked before the first round */
+				if (!ni.isAlwaysScanning()) {
+					throw new SettingsError(s.getFullPropertyName(
+							CONTACT_PREDICTION_S) + " can't be used with " +
+							"activeness schedules or scanning intervals " +
+							"(host " + host + ")");
+				}
+			}
+		}
+	}
+
 	/**
 	 * Moves hosts in the world for the time given time initialize host
 	 * positions properly. SimClock must be set to <CODE>-time</CODE> before
@@ -153,6 +393,16 @@ public class World {
 				earliest = eq.nextEventsTime();
 			}
 		}
+		if (this.contactPredictor != null &&
+				this.contactPredictor.nextEventsTime() < earliest) {
+			nextQueue = this.contactPredictor;
+			earliest = nextQueue.nextEventsTime();
+		}
+		if (this.transferCompletions != null &&
+				this.transferCompletions.nextEventsTime() < earliest) {
+			nextQueue = this.transferCompletions;
+			earliest = nextQueue.nextEventsTime();
+		}
 
 		this.nextEventQueue = nextQueue;
 		this.nextQueueEventTime = earliest;
@@ -161,10 +411,13 @@ public class World {
 	/**
 	 * Update (move, connect, disconnect etc.) all hosts in the world.
 	 * Runs all external events that are due between the time when
-	 * this method is called and after one update interval.
+	 * this method is called and after one update interval (or after one
+	 * jump, see {@link #NEXT_EVENT_JUMP_S}).
 	 */
 	public void update () {
-		double runUntil = SimClock.getTime() + this.updateInterval;
+		double step = (this.transferCompletions != null ? getJumpLength() :
+			this.updateInterval);
+		double runUntil = SimClock.getTime() + step;
 		
 		if (realtimeSimulation) {
 			if (this.simStartRealtime < 0) {
@@ -183,18 +436,29 @@ public class World {
 			}
 		}
 		
+		if (this.contactPredictor != null) {
+			/* the contacts of the interval are solved from the movement */
+			moveHosts(step);
+			this.contactPredictor.predict(SimClock.getTime(), step);
+		}
+
 		setNextEventQueue();
 
 		/* process all events that are due until next interval update */
 		while (this.nextQueueEventTime <= runUntil) {
 			simClock.setTime(this.nextQueueEventTime);
-			ExternalEvent ee = this.nextEventQueue.nextEvent();
+			EventQueue eq = this.nextEventQueue;
+			ExternalEvent ee = eq.nextEvent();
 			ee.processEvent(this);
-			updateHosts(); // update all hosts after every event
+			if (eq != this.contactPredictor) {
+				updateHosts(); // update all hosts after every event
+			} /* contact events update the hosts at both ends */
 			setNextEventQueue();
 		}
 
-		moveHosts(this.updateInterval);
+		if (this.contactPredictor == null) {
+			moveHosts(step);
+		}
 		simClock.setTime(runUntil);
 
 		updateHosts();
@@ -206,18 +470,52 @@ public class World {
 		
 	}
 
+	/**
+	 * Returns the length of the next jump: the whole update intervals
+	 * before the next time any host needs an update, limited by the maximum
+	 * jump length and the end time. At least one update interval.
+	 * @return The length of the jump (seconds)
+	 */
+	private double getJumpLength() {
+		double now = SimClock.getTime();
+		double until = Math.min(now + this.maxJump, this.endTime);
+		for (int i=0, n=hosts.size(); i<n; i++) {
+			if (until < now + 2 * this.updateInterval) {
+				break; /* no jump anyway */
+			}
+			until = Math.min(until, hosts.get(i).getNextUpdateTime());
+		}
+
+		long intervals = (long)((until - now) / this.updateInterval +
+				MARGIN_EPSILON);
+		return Math.max(intervals, 1) * this.updateInterval;
+	}
+
 	/**
 	 * Updates all hosts (calls update for every one of them). If update
 	 * order randomizing is on (updateOrder array is defined), the calls
 	 * are made in random order.
 	 */
 	private void updateHosts() {
+		/* with contact prediction the interfaces don't check connectivity */
+		boolean updateInterfaces = simulateConnections &&
+			this.contactPredictor == null;
+
+		if (this.skipIdleUpdates) {
+			updateHostsSkippingIdle();
+			return;
+		}
+
+		boolean candidatesFound = updateInterfaces &&
+			this.nearCandidateFinder != null &&
+			this.nearCandidateFinder.find();
+
 		if (this.updateOrder == null) { // randomizing is off
 			for (int i=0, n = hosts.size();i < n; i++) {
 				if (this.isCancelled) {
 					break;
 				}
-				hosts.get(i).update(simulateConnections);
+				hosts.get(i).update(updateInterfaces);
 			}
 		}
 		else { // update order randomizing is on
@@ -229,26 +527,166 @@ public class World {
 				if (this.isCancelled) {
 					break;
 				}
-				this.updateOrder.get(i).update(simulateConnections);
+				this.updateOrder.get(i).update(updateInterfaces);
 			}
 		}
 
+		if (candidatesFound) {
+			this.nearCandidateFinder.clear();
+		}
+
 		if (simulateConOnce && simulateConnections) {
 			simulateConnections = false;
+			this.contactPredictor = null;
 		}
 	}
 
+	/**
+	 * Updates all hosts like {@link #updateHosts()} but gives idle hosts
+	 * only the location update (see {@link #SKIP_IDLE_UPDATES_S}).
+	 */
+	private void updateHostsSkippingIdle() {
+		int n = hosts.size();
+		List<DTNHost> order = this.hosts;
+
+		if (this.lastX == null) {
+			this.lastX = new double[n];
+			this.lastY = new double[n];
+			this.rangeMargins = new double[n];
+			this.marginDisplacements = new double[n];
+			this.updated = new boolean[n];
+			Arrays.fill(this.rangeMargins, Double.NaN);
+			for (int i=0; i<n; i++) {
+				Coord c = hosts.get(i).getLocation();
+				this.lastX[i] = c.getX();
+				this.lastY[i] = c.getY();
+			}
+		}
+
+		/* how far did the hosts move since the previous round */
+		double maxDisplacement = 0;
+		for (int i=0; i<n; i++) {
+			Coord c = hosts.get(i).getLocation();
+			double dx = c.getX() - this.lastX[i];
+			double dy = c.getY() - this.lastY[i];
+			double d = Math.sqrt(dx*dx + dy*dy);
+			if (d > maxDisplacement) {
+				maxDisplacement = d;
+			}
+			this.lastX[i] = c.getX();
+			this.lastY[i] = c.getY();
+		}
+		this.displacementSum += maxDisplacement;
+
+		if (this.updateOrder != null) {
+			assert this.updateOrder.size() == this.hosts.size() :
+				"Nrof hosts has changed unexpectedly";
+			Random rng = new Random(SimClock.getIntTime());
+			Collections.shuffle(this.updateOrder, rng);
+			order = this.updateOrder;
+		}
+
+		for (int i=0; i<n; i++) {
+			if (this.isCancelled) {
+				break;
+			}
+			DTNHost host = order.get(i);
+			int a = host.getAddress();
+			if (isIdle(host)) {
+				host.updateIdle(simulateConnections);
+				this.updated[a] = false;
+			}
+			else {
+				host.update(simulateConnections);
+				this.updated[a] = true;
+			}
+		}
+
+		if (!this.idleUpdatesChecked) {
+			/* energy models publish their values on the first round */
+			this.idleUpdatesChecked = true;
+			for (DTNHost host : hosts) {
+				for (NetworkInterface ni : host.getInterfaces()) {
+					if (!ni.isAlwaysScanning()) {
+						this.skipIdleUpdates = false;
+					}
+				}
+			}
+		}
+
+		/* refresh the range margins of the hosts that got a full update
+		   (hosts with connections are within range of someone anyway) */
+		for (int i=0; i<n; i++) {
+			if (this.updated[i]) {
+				DTNHost host = hosts.get(i);
+				this.rangeMargins[i] = host.getConnections().isEmpty() ?
+						host.getRangeMargin() : Double.NaN;
+				this.marginDisplacements[i] = this.displacementSum;
+			}
+		}
+
+		if (simulateConOnce && simulateConnections) {
+			simulateConnections = false;
+		}
+	}
+
+	/**
+	 * Returns true if the host's update can be skipped on this round: the
+	 * host is idle and no interface can have come within range of it since
+	 * its range margin was computed.
+	 * @param host The host to check
+	 * @return true if the host is idle
+	 */
+	private boolean isIdle(DTNHost host) {
+		int a = host.getAddress();
+		double margin = this.rangeMargins[a];
+		if (Double.isNaN(margin)) {
+			return false;
+		}
+		/* both ends of a pair can have moved */
+		double moved = 2 * (this.displacementSum -
+				this.marginDisplacements[a]);
+		return moved + MARGIN_EPSILON < margin && host.isIdle();
+	}
+
 	/**
 	 * Moves all hosts in the world for a given amount of time
 	 * @param timeIncrement The time how long all nodes should move
 	 */
 	private void moveHosts(double timeIncrement) {
+		if (this.concurrentMovers != null) {
+			moveHostsConcurrently(timeIncrement);
+			return;
+		}
+
 		for (int i=0,n = hosts.size(); i<n; i++) {
 			DTNHost host = hosts.get(i);
 			host.move(timeIncrement);
 		}
 	}
 
+	/**
+	 * Moves the hosts that can be moved concurrently on the common
+	 * fork/join pool and then, in address order, informs the movement
+	 * listeners of those and moves the rest of the hosts. The result is the
+	 * same as with moving all hosts one by one.
+	 * @param timeIncrement The time how long all nodes should move
+	 */
+	private void moveHostsConcurrently(final double timeIncrement) {
+		this.concurrentMovers.parallelStream().forEach(
+				h -> h.moveDeferringEvents(timeIncrement));
+
+		for (int i=0,n = hosts.size(); i<n; i++) {
+			DTNHost host = hosts.get(i);
+			if (host.canMoveConcurrently()) {
+				host.flushMovementEvents();
+			}
+			else {
+				host.move(timeIncrement);
+			}
+		}
+	}
+
 	/**
 	 * Asynchronously cancels the currently running simulation
 	 */
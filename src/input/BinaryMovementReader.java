@@ -0,0 +1,441 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package input;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import util.Tuple;
+
+import core.Coord;
+import core.SettingsError;
+
+/**
+ * Reader for binary movement files of ExternalMovement movement model. The
+ * file has the same data as the text files read by
+ * {@link ExternalMovementReader}, but the locations are grouped by time
+ * instance (slice) and the node IDs are replaced with indexes to an ID
+ * table. A time index at the end of the file lets the reader start from
+ * any time without reading the slices before it. The locations of a slice
+ * are read to primitive arrays that are reused for every slice.
+ * <P>
+ * File format (big-endian): magic number and version (ints); minTime,
+ * maxTime, minX, maxX, minY, maxY (doubles); position of the index (long);
+ * the slices, each as int[n] ID indexes, double[n] x coordinates and
+ * double[n] y coordinates; and the index: number of slices (int), time
+ * (double), position (long) and n (int) of every slice, number of IDs
+ * (int) and the IDs (length and UTF-8 bytes of every ID).
+ * </P>
+ * Binary files can be created from text files with {@link #main(String[])}.
+ */
+public class BinaryMovementReader {
+	/** Extension of binary movement files */
+	public static final String BINARY_EXT = ".binmov";
+
+	/** First int of binary movement files */
+	private static final int MAGIC = 0x4F4E454D; // "ONEM"
+	private static final int VERSION = 1;
+	/** size of the header (magic, version, offsets and index position) */
+	private static final int HEADER_SIZE = 4 + 4 + 6 * 8 + 8;
+	/** size of one location in a slice (index, x and y) */
+	private static final int LOCATION_SIZE = 4 + 8 + 8;
+
+	private FileChannel channel;
+	private double minTime;
+	private double maxTime;
+	private double minX;
+	private double maxX;
+	private double minY;
+	private double maxY;
+	private boolean normalize;
+
+	/** time, position and number of locations of the slices */
+	private double[] sliceTimes;
+	private long[] slicePositions;
+	private int[] sliceSizes;
+	private String[] ids;
+
+	private int nextSlice;
+	private double lastTimeStamp = -1;
+	private ByteBuffer buffer;
+	private int[] idIndexes;
+	private double[] xs;
+	private double[] ys;
+
+	/**
+	 * Constructor. Reads the header and the index of the file.
+	 * @param inFilePath Path to the file where the data is read
+	 * @throws SettingsError if the file couldn't be read or is invalid
+	 */
+	public BinaryMovementReader(String inFilePath) {
+		this.normalize = true;
+		try {
+			this.channel = FileChannel.open(new File(inFilePath).toPath(),
+					StandardOpenOption.READ);
+			ByteBuffer header = read(0, HEADER_SIZE);
+			if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+				throw new SettingsError("Invalid binary movement file " +
+						inFilePath);
+			}
+			this.minTime = header.getDouble();
+			this.maxTime = header.getDouble();
+			this.minX = header.getDouble();
+			this.maxX = header.getDouble();
+			this.minY = header.getDouble();
+			this.maxY = header.getDouble();
+			readIndex(header.getLong());
+		} catch (IOException e) {
+			throw new SettingsError("Couldn't read binary movement file " +
+					inFilePath + ": " + e.getMessage());
+		}
+
+		this.nextSlice = 0;
+		this.buffer = ByteBuffer.allocate(0);
+		this.idIndexes = new int[0];
+		this.xs = new double[0];
+		this.ys = new double[0];
+	}
+
+	/**
+	 * Reads the slice index and the ID table
+	 * @param position Position of the index in the file
+	 */
+	private void readIndex(long position) throws IOException {
+		ByteBuffer b = read(position, (int)(this.channel.size() - position));
+		int nrofSlices = b.getInt();
+		this.sliceTimes = new double[nrofSlices];
+		this.slicePositions = new long[nrofSlices];
+		this.sliceSizes = new int[nrofSlices];
+		for (int i = 0; i < nrofSlices; i++) {
+			this.sliceTimes[i] = b.getDouble();
+			this.slicePositions[i] = b.getLong();
+			this.sliceSizes[i] = b.getInt();
+		}
+
+		this.ids = new String[b.getInt()];
+		for (int i = 0; i < this.ids.length; i++) {
+			byte[] bytes = new byte[b.getInt()];
+			b.get(bytes);
+			this.ids[i] = new String(bytes, StandardCharsets.UTF_8);
+		}
+	}
+
+	/**
+	 * Reads bytes from the file
+	 * @param position Where to start reading
+	 * @param length How many bytes to read
+	 * @return A buffer with the bytes (positioned at the start)
+	 */
+	private ByteBuffer read(long position, int length) throws IOException {
+		ByteBuffer b = ByteBuffer.allocate(length);
+		readFully(b, position);
+		return b;
+	}
+
+	private void readFully(ByteBuffer b, long position) throws IOException {
+		while (b.hasRemaining()) {
+			int n = this.channel.read(b, position);
+			if (n < 0) {
+				throw new IOException("Unexpected end of file");
+			}
+			position += n;
+		}
+		b.flip();
+	}
+
+	/**
+	 * Sets normalizing of read values on/off. If on, the time stamps and
+	 * coordinates are decremented by minimum values of the offsets.
+	 * Default is on (normalize).
+	 * @param normalize If true, normalizing is on (false -> off).
+	 */
+	public void setNormalize(boolean normalize) {
+		this.normalize = normalize;
+	}
+
+	/**
+	 * Moves the reader to the first slice whose time stamp is at least the
+	 * given time.
+	 * @param time The time (normalized if normalizing is on)
+	 */
+	public void seek(double time) {
+		double offset = this.normalize ? this.minTime : 0;
+		int low = 0;
+		int high = this.sliceTimes.length;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (this.sliceTimes[mid] - offset < time) {
+				low = mid + 1;
+			}
+			else {
+				high = mid;
+			}
+		}
+		this.nextSlice = low;
+	}
+
+	/**
+	 * Reads the locations of the next time instance. The locations are
+	 * available from {@link #getIdIndexes()}, {@link #getXs()} and
+	 * {@link #getYs()} until the next read.
+	 * @return Number of read locations or 0 if there were no more slices
+	 * @throws SettingsError if reading failed
+	 */
+	public int readNextSlice() {
+		if (this.nextSlice >= this.sliceTimes.length) {
+			return 0;
+		}
+
+		int s = this.nextSlice++;
+		int n = this.sliceSizes[s];
+		if (this.buffer.capacity() < n * LOCATION_SIZE) {
+			this.buffer = ByteBuffer.allocate(n * LOCATION_SIZE);
+			this.idIndexes = new int[n];
+			this.xs = new double[n];
+			this.ys = new double[n];
+		}
+		this.buffer.clear().limit(n * LOCATION_SIZE);
+		try {
+			readFully(this.buffer, this.slicePositions[s]);
+		} catch (IOException e) {
+			throw new SettingsError("Couldn't read binary movement file: " +
+					e.getMessage());
+		}
+		this.buffer.asIntBuffer().get(this.idIndexes, 0, n);
+		this.buffer.position(4 * n);
+		this.buffer.asDoubleBuffer().get(this.xs, 0, n);
+		this.buffer.position(12 * n);
+		this.buffer.asDoubleBuffer().get(this.ys, 0, n);
+
+		this.lastTimeStamp = this.sliceTimes[s];
+		if (this.normalize) {
+			this.lastTimeStamp -= this.minTime;
+			for (int i = 0; i < n; i++) {
+				this.xs[i] -= this.minX;
+				this.ys[i] -= this.minY;
+			}
+		}
+		return n;
+	}
+
+	/**
+	 * Returns the ID indexes of the last read locations
+	 * @return The ID indexes (only the first ones that were read are valid)
+	 * @see #getId(int)
+	 */
+	public int[] getIdIndexes() {
+		return this.idIndexes;
+	}
+
+	/**
+	 * Returns the x coordinates of the last read locations
+	 * @return The x coordinates (only the first ones that were read are
+	 * valid)
+	 */
+	public double[] getXs() {
+		return this.xs;
+	}
+
+	/**
+	 * Returns the y coordinates of the last read locations
+	 * @return The y coordinates (only the first ones that were read are
+	 * valid)
+	 */
+	public double[] getYs() {
+		return this.ys;
+	}
+
+	/**
+	 * Returns the number of different IDs in the file
+	 * @return the number of IDs
+	 */
+	public int getNrofIds() {
+		return this.ids.length;
+	}
+
+	/**
+	 * Returns the ID with the given index
+	 * @param index The index
+	 * @return The ID
+	 */
+	public String getId(int index) {
+		return this.ids[index];
+	}
+
+	/**
+	 * Returns the time stamp of the last read slice
+	 * @return The time stamp
+	 */
+	public double getLastTimeStamp() {
+		return this.lastTimeStamp;
+	}
+
+	/**
+	 * Returns offset maxTime
+	 * @return the maxTime
+	 */
+	public double getMaxTime() {
+		return maxTime;
+	}
+
+	/**
+	 * Returns offset maxX
+	 * @return the maxX
+	 */
+	public double getMaxX() {
+		return maxX;
+	}
+
+	/**
+	 * Returns offset maxY
+	 * @return the maxY
+	 */
+	public double getMaxY() {
+		return maxY;
+	}
+
+	/**
+	 * Returns offset minTime
+	 * @return the minTime
+	 */
+	public double getMinTime() {
+		return minTime;
+	}
+
+	/**
+	 * Returns offset minX
+	 * @return the minX
+	 */
+	public double getMinX() {
+		return minX;
+	}
+
+	/**
+	 * Returns offset minY
+	 * @return the minY
+	 */
+	public double getMinY() {
+		return minY;
+	}
+
+	/**
+	 * Closes the file
+	 */
+	public void close() {
+		try {
+			this.channel.close();
+		} catch (IOException e) {}
+	}
+
+	/**
+	 * Converts a text movement file to a binary movement file
+	 * @param inFilePath Path of the text file
+	 * @param outFilePath Path of the binary file
+	 * @throws IOException if writing the file failed
+	 * @see ExternalMovementReader
+	 */
+	public static void convert(String inFilePath, String outFilePath)
+			throws IOException {
+		ExternalMovementReader reader = new ExternalMovementReader(inFilePath);
+		reader.setNormalize(false);
+		Map<String, Integer> idMap = new HashMap<String, Integer>();
+		List<String> idList = new ArrayList<String>();
+		List<Double> times = new ArrayList<Double>();
+		List<Long> positions = new ArrayList<Long>();
+		List<Integer> sizes = new ArrayList<Integer>();
+		long position = HEADER_SIZE;
+
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+				new FileOutputStream(outFilePath)));
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeDouble(reader.getMinTime());
+			out.writeDouble(reader.getMaxTime());
+			out.writeDouble(reader.getMinX());
+			out.writeDouble(reader.getMaxX());
+			out.writeDouble(reader.getMinY());
+			out.writeDouble(reader.getMaxY());
+			out.writeLong(0); // index position is written at the end
+
+			List<Tuple<String, Coord>> moves;
+			while ((moves = reader.readNextMovements()).size() > 0) {
+				times.add(reader.getLastTimeStamp());
+				positions.add(position);
+				sizes.add(moves.size());
+
+				for (Tuple<String, Coord> t : moves) {
+					Integer index = idMap.get(t.getKey());
+					if (index == null) {
+						index = idList.size();
+						idMap.put(t.getKey(), index);
+						idList.add(t.getKey());
+					}
+					out.writeInt(index);
+				}
+				for (Tuple<String, Coord> t : moves) {
+					out.writeDouble(t.getValue().getX());
+				}
+				for (Tuple<String, Coord> t : moves) {
+					out.writeDouble(t.getValue().getY());
+				}
+				position += (long)moves.size() * LOCATION_SIZE;
+			}
+
+			out.writeInt(times.size());
+			for (int i = 0; i < times.size(); i++) {
+				out.writeDouble(times.get(i));
+				out.writeLong(positions.get(i));
+				out.writeInt(sizes.get(i));
+			}
+			out.writeInt(idList.size());
+			for (String id : idList) {
+				byte[] bytes = id.getBytes(StandardCharsets.UTF_8);
+				out.writeInt(bytes.length);
+				out.write(bytes);
+			}
+		} finally {
+			out.close();
+		}
+
+		RandomAccessFile raf = new RandomAccessFile(outFilePath, "rw");
+		try {
+			raf.seek(HEADER_SIZE - 8);
+			raf.writeLong(position);
+		} finally {
+			raf.close();
+		}
+	}
+
+	/**
+	 * Converts a text movement file to a binary movement file.
+	 * @param args The text file and optionally the binary file (default is
+	 * the text file with the binary extension)
+	 * @throws IOException if the conversion fails
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length < 1 || args.length > 2) {
+			System.out.println("Usage: BinaryMovementReader <input file> " +
+					"[<output file>]");
+			System.exit(1);
+		}
+		String outFile = args.length > 1 ? args[1] :
+			args[0].replaceFirst("\\.[^./]*$", "") + BINARY_EXT;
+		convert(args[0], outFile);
+		System.out.println("Converted " + args[0] + " to " + outFile);
+	}
+}
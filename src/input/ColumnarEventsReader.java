@@ -0,0 +1,387 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package input;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import core.SimError;
+
+/**
+ * <P>
+ * Reads External Events from a columnar binary file. The file is memory
+ * mapped and the events are created directly from the columns, so reading
+ * doesn't deserialize objects or parse text. Can also create columnar
+ * files from a list of external events, or convert other external events
+ * files (see {@link #main(String[])}).
+ * </P><P>
+ * File format (big-endian): magic number, version, number of events (n),
+ * and number of strings (s) as ints; then the columns double[n] time,
+ * int[n] host address, int[n] second host address, int[n] string index
+ * (message or interface ID, -1 for none), int[n] size, int[n] response
+ * size, int[s+1] string offsets, byte[n] event type; and finally the UTF-8
+ * bytes of the strings.
+ * </P>
+ */
+public class ColumnarEventsReader implements ExternalEventsReader {
+	/** Extension of columnar external events file */
+	public static final String COLUMNAR_EXT = ".colee";
+
+	/** First int of columnar external events files */
+	private static final int MAGIC = 0x4F4E4543; // "ONEC"
+	private static final int VERSION = 1;
+	private static final int HEADER_SIZE = 16;
+
+	/* event types */
+	private static final byte TYPE_CREATE = 0;
+	private static final byte TYPE_SEND = 1;
+	private static final byte TYPE_DELIVERED = 2;
+	private static final byte TYPE_ABORT = 3;
+	private static final byte TYPE_DROP = 4;
+	private static final byte TYPE_REMOVE = 5;
+	private static final byte TYPE_CONN_UP = 6;
+	private static final byte TYPE_CONN_DOWN = 7;
+
+	private ByteBuffer buffer;
+	private int nrofEvents;
+	private int nextEvent;
+	/* start offsets of the columns */
+	private int timeCol;
+	private int hostCol;
+	private int host2Col;
+	private int stringCol;
+	private int sizeCol;
+	private int respSizeCol;
+	private int offsetCol;
+	private int typeCol;
+	private int stringData;
+	/** decoded strings by their indexes; decoded when first needed */
+	private String[] strings;
+
+	/**
+	 * Constructor.
+	 * @param eventsFile The file where the events are read
+	 */
+	public ColumnarEventsReader(File eventsFile) {
+		try (FileChannel ch = FileChannel.open(eventsFile.toPath(),
+				StandardOpenOption.READ)) {
+			if (ch.size() > Integer.MAX_VALUE) {
+				throw new SimError("Too large external events file " +
+						eventsFile.getAbsolutePath());
+			}
+			MappedByteBuffer mb = ch.map(FileChannel.MapMode.READ_ONLY, 0,
+					ch.size());
+			this.buffer = mb;
+		} catch (IOException e) {
+			throw new SimError(e);
+		}
+
+		if (this.buffer.capacity() < HEADER_SIZE ||
+				this.buffer.getInt(0) != MAGIC ||
+				this.buffer.getInt(4) != VERSION) {
+			throw new SimError("Invalid columnar input file for external " +
+					"events:" + eventsFile.getAbsolutePath());
+		}
+		this.nrofEvents = this.buffer.getInt(8);
+		int nrofStrings = this.buffer.getInt(12);
+		int n = this.nrofEvents;
+
+		this.timeCol = HEADER_SIZE;
+		this.hostCol = this.timeCol + 8 * n;
+		this.host2Col = this.hostCol + 4 * n;
+		this.stringCol = this.host2Col + 4 * n;
+		this.sizeCol = this.stringCol + 4 * n;
+		this.respSizeCol = this.sizeCol + 4 * n;
+		this.offsetCol = this.respSizeCol + 4 * n;
+		this.typeCol = this.offsetCol + 4 * (nrofStrings + 1);
+		this.stringData = this.typeCol + n;
+		this.strings = new String[nrofStrings];
+		this.nextEvent = 0;
+
+		if (this.stringData > this.buffer.capacity()) {
+			throw new SimError("Truncated columnar input file for external " +
+					"events:" + eventsFile.getAbsolutePath());
+		}
+	}
+
+	/**
+	 * Read events from a columnar file created with storeToColumnarFile
+	 * method
+	 * @param nrof Maximum number of events to read
+	 * @return Events in an ArrayList (empty list if didn't read any)
+	 * @see #storeToColumnarFile(String, List)
+	 */
+	public List<ExternalEvent> readEvents(int nrof) {
+		int n = Math.max(0, Math.min(nrof, this.nrofEvents - this.nextEvent));
+		ArrayList<ExternalEvent> events = new ArrayList<ExternalEvent>(n);
+
+		for (int i = 0; i < n; i++) {
+			events.add(createEvent(this.nextEvent++));
+		}
+		return events;
+	}
+
+	/**
+	 * Creates the event at the given index from the columns
+	 */
+	private ExternalEvent createEvent(int i) {
+		ByteBuffer b = this.buffer;
+		double time = b.getDouble(this.timeCol + 8 * i);
+		int host = b.getInt(this.hostCol + 4 * i);
+		int host2 = b.getInt(this.host2Col + 4 * i);
+		String str = getString(b.getInt(this.stringCol + 4 * i));
+		byte type = b.get(this.typeCol + i);
+
+		switch (type) {
+		case TYPE_CREATE:
+			return new MessageCreateEvent(host, host2, str,
+					b.getInt(this.sizeCol + 4 * i),
+					b.getInt(this.respSizeCol + 4 * i), time);
+		case TYPE_SEND:
+			return new MessageRelayEvent(host, host2, str, time,
+					MessageRelayEvent.SENDING);
+		case TYPE_DELIVERED:
+			return new MessageRelayEvent(host, host2, str, time,
+					MessageRelayEvent.TRANSFERRED);
+		case TYPE_ABORT:
+			return new MessageRelayEvent(host, host2, str, time,
+					MessageRelayEvent.ABORTED);
+		case TYPE_DROP:
+			return new MessageDeleteEvent(host, str, time, true);
+		case TYPE_REMOVE:
+			return new MessageDeleteEvent(host, str, time, false);
+		case TYPE_CONN_UP:
+			return new ConnectionEvent(host, host2, str, true, time);
+		case TYPE_CONN_DOWN:
+			return new ConnectionEvent(host, host2, str, false, time);
+		default:
+			throw new SimError("Unknown event type " + type + " in " +
+					"columnar external events");
+		}
+	}
+
+	/**
+	 * Returns the string with the given index from the string table
+	 * @param index The index or -1 for no string
+	 * @return The string or null for index -1
+	 */
+	private String getString(int index) {
+		if (index < 0) {
+			return null;
+		}
+		if (this.strings[index] == null) {
+			int start = this.buffer.getInt(this.offsetCol + 4 * index);
+			int end = this.buffer.getInt(this.offsetCol + 4 * (index + 1));
+			byte[] bytes = new byte[end - start];
+			ByteBuffer d = this.buffer.duplicate();
+			d.position(this.stringData + start);
+			d.get(bytes);
+			this.strings[index] = new String(bytes, StandardCharsets.UTF_8);
+		}
+		return this.strings[index];
+	}
+
+	/**
+	 * Checks if the given file is a columnar external events file
+	 * @param file The file to check
+	 * @return True if the file is a columnar ee file, false if not
+	 */
+	public static boolean isColumnarEeFile(File file) {
+		if (!file.getName().endsWith(COLUMNAR_EXT)) {
+			return false;
+		}
+
+		try {
+			new ColumnarEventsReader(file).close();
+		}
+		catch (SimError e) {
+			return false; // read failed -> not a valid file
+		}
+
+		return true;
+	}
+
+	/**
+	 * Stores the events to a columnar file. Only the event types that the
+	 * standard external events files can have are supported.
+	 * @param fileName Path to the file where the events are stored
+	 * @param events List of events to store
+	 * @throws IOException if something in storing went wrong
+	 */
+	public static void storeToColumnarFile(String fileName,
+			List<ExternalEvent> events) throws IOException {
+
+		// make sure the file name ends with columnar extension
+		if (!fileName.endsWith(COLUMNAR_EXT)) {
+			fileName += COLUMNAR_EXT;
+		}
+
+		int n = events.size();
+		double[] times = new double[n];
+		int[] hosts = new int[n];
+		int[] hosts2 = new int[n];
+		int[] stringIndexes = new int[n];
+		int[] sizes = new int[n];
+		int[] respSizes = new int[n];
+		byte[] types = new byte[n];
+		Map<String, Integer> stringMap = new HashMap<String, Integer>();
+		List<byte[]> stringBytes = new ArrayList<byte[]>();
+		int nrofStringBytes = 0;
+
+		for (int i = 0; i < n; i++) {
+			ExternalEvent ee = events.get(i);
+			String str;
+			times[i] = ee.getTime();
+
+			if (ee instanceof ConnectionEvent) {
+				ConnectionEvent ce = (ConnectionEvent)ee;
+				types[i] = ce.isUp ? TYPE_CONN_UP : TYPE_CONN_DOWN;
+				hosts[i] = ce.fromAddr;
+				hosts2[i] = ce.toAddr;
+				str = ce.interfaceId;
+			}
+			else if (ee instanceof MessageEvent) {
+				MessageEvent me = (MessageEvent)ee;
+				types[i] = getType(me);
+				hosts[i] = me.fromAddr;
+				hosts2[i] = me.toAddr;
+				str = me.id;
+				if (me instanceof MessageCreateEvent) {
+					sizes[i] = ((MessageCreateEvent)me).getSize();
+					respSizes[i] = ((MessageCreateEvent)me).getResponseSize();
+				}
+			}
+			else {
+				throw new SimError("Can't store event " + ee + " to a " +
+						"columnar external events file");
+			}
+
+			if (str == null) {
+				stringIndexes[i] = -1;
+				continue;
+			}
+			Integer index = stringMap.get(str);
+			if (index == null) {
+				index = stringBytes.size();
+				stringMap.put(str, index);
+				byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+				stringBytes.add(bytes);
+				nrofStringBytes += bytes.length;
+			}
+			stringIndexes[i] = index;
+		}
+
+		int s = stringBytes.size();
+		long fileSize = HEADER_SIZE + 28L * n + 4L * (s + 1) + n +
+			nrofStringBytes;
+		if (fileSize > Integer.MAX_VALUE) {
+			throw new IOException("Too many events for a columnar file");
+		}
+		ByteBuffer out = ByteBuffer.allocate((int)fileSize);
+		out.putInt(MAGIC).putInt(VERSION).putInt(n).putInt(s);
+		for (double t : times) {
+			out.putDouble(t);
+		}
+		for (int[] column : new int[][] {hosts, hosts2, stringIndexes,
+				sizes, respSizes}) {
+			for (int v : column) {
+				out.putInt(v);
+			}
+		}
+		int offset = 0;
+		out.putInt(offset);
+		for (byte[] bytes : stringBytes) {
+			offset += bytes.length;
+			out.putInt(offset);
+		}
+		out.put(types);
+		for (byte[] bytes : stringBytes) {
+			out.put(bytes);
+		}
+		out.flip();
+
+		try (FileChannel ch = FileChannel.open(new File(fileName).toPath(),
+				StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			while (out.hasRemaining()) {
+				ch.write(out);
+			}
+		}
+	}
+
+	/**
+	 * Returns the event type of a message event
+	 */
+	private static byte getType(MessageEvent me) {
+		if (me instanceof MessageCreateEvent) {
+			return TYPE_CREATE;
+		}
+		else if (me instanceof MessageDeleteEvent) {
+			return ((MessageDeleteEvent)me).isDrop() ? TYPE_DROP : TYPE_REMOVE;
+		}
+		else if (me instanceof MessageRelayEvent) {
+			switch (((MessageRelayEvent)me).getStage()) {
+			case MessageRelayEvent.SENDING:
+				return TYPE_SEND;
+			case MessageRelayEvent.TRANSFERRED:
+				return TYPE_DELIVERED;
+			case MessageRelayEvent.ABORTED:
+				return TYPE_ABORT;
+			}
+		}
+		throw new SimError("Can't store event " + me + " to a columnar " +
+				"external events file");
+	}
+
+	public void close() {
+		this.buffer = null; // the mapping is released when collected
+	}
+
+	/**
+	 * Converts a standard (text) or binary external events file to a
+	 * columnar file.
+	 * @param args The input file and optionally the output file (default
+	 * is the input file with the columnar extension)
+	 * @throws IOException if the conversion fails
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length < 1 || args.length > 2) {
+			System.out.println("Usage: ColumnarEventsReader <input file> " +
+					"[<output file>]");
+			System.exit(1);
+		}
+		File inFile = new File(args[0]);
+		String outName = args.length > 1 ? args[1] :
+			args[0].replaceFirst("\\.[^./]*$", "") + COLUMNAR_EXT;
+
+		ExternalEventsReader reader;
+		if (BinaryEventsReader.isBinaryEeFile(inFile)) {
+			reader = new BinaryEventsReader(inFile);
+		}
+		else {
+			reader = new StandardEventsReader(inFile);
+		}
+
+		List<ExternalEvent> events = new ArrayList<ExternalEvent>();
+		List<ExternalEvent> read;
+		while ((read = reader.readEvents(10000)).size() > 0) {
+			events.addAll(read);
+		}
+		reader.close();
+
+		storeToColumnarFile(outName, events);
+		System.out.println("Stored " + events.size() + " events to " +
+				outName);
+	}
+}
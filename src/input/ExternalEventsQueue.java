@@ -21,6 +21,9 @@ public class ExternalEventsQueue implements EventQueue {
 	public static final String PRELOAD_SETTING = "nrofPreload";
 	/** path of external events file -setting id ({@value})*/
 	public static final String PATH_SETTING = "filePath";
+	/** number of preloads to read ahead in a background thread -setting id
+	 * ({@value}). Default is 0 (events are read when they are needed). */
+	public static final String PREFETCH_SETTING = "nrofPrefetch";
 
 	/** default number of preloaded events */
 	public static final int DEFAULT_NROF_PRELOAD = 500;
@@ -29,6 +32,7 @@ public class ExternalEventsQueue implements EventQueue {
 	private ExternalEventsReader reader;
 	private int nextEventIndex;
 	private int nrofPreload;
+	private int nrofPrefetch;
 	private List<ExternalEvent> queue;
 	private boolean allEventsRead = false;
 
@@ -36,19 +40,37 @@ public class ExternalEventsQueue implements EventQueue {
 	 * Creates a new Queue from a file
 	 * @param filePath Path to the file where the events are read from. If
 	 * file ends with extension defined in {@link BinaryEventsReader#BINARY_EXT}
-	 * the file is assumed to be a binary file.
+	 * the file is assumed to be a binary file, and if it ends with
+	 * {@link ColumnarEventsReader#COLUMNAR_EXT}, a columnar file.
 	 * @param nrofPreload How many events to preload
 	 * @see BinaryEventsReader#BINARY_EXT
 	 * @see BinaryEventsReader#storeToBinaryFile(String, List)
+	 * @see ColumnarEventsReader#storeToColumnarFile(String, List)
 	 */
 	public ExternalEventsQueue(String filePath, int nrofPreload) {
+		this(filePath, nrofPreload, 0);
+	}
+
+	/**
+	 * Creates a new Queue from a file and reads the events in a background
+	 * thread
+	 * @param filePath Path to the file where the events are read from
+	 * @param nrofPreload How many events to preload
+	 * @param nrofPrefetch How many preloads to read ahead in the background
+	 * (0 for reading the events only when they are needed)
+	 * @see #ExternalEventsQueue(String, int)
+	 */
+	public ExternalEventsQueue(String filePath, int nrofPreload,
+			int nrofPrefetch) {
 		setNrofPreload(nrofPreload);
+		this.nrofPrefetch = nrofPrefetch;
 		init(filePath);
 	}
 
 	/**
-	 * Create a new Queue based on the given settings: {@link #PRELOAD_SETTING}
-	 * and {@link #PATH_SETTING}. The path setting supports value filling.
+	 * Create a new Queue based on the given settings: {@link #PRELOAD_SETTING},
+	 * {@link #PREFETCH_SETTING} and {@link #PATH_SETTING}. The path setting
+	 * supports value filling.
 	 * @param s The settings
 	 */
 	public ExternalEventsQueue(Settings s) {
@@ -58,6 +80,7 @@ public class ExternalEventsQueue implements EventQueue {
 		else {
 			setNrofPreload(DEFAULT_NROF_PRELOAD);
 		}
+		this.nrofPrefetch = s.getInt(PREFETCH_SETTING, 0);
         String eeFilePath = s.valueFillString(s.getSetting(PATH_SETTING));
         init(eeFilePath);
     }
@@ -77,13 +100,21 @@ public class ExternalEventsQueue implements EventQueue {
 	private void init(String eeFilePath) {
 		this.eventsFile = new File(eeFilePath);
 
-		if (BinaryEventsReader.isBinaryEeFile(eventsFile)) {
+		if (ColumnarEventsReader.isColumnarEeFile(eventsFile)) {
+			this.reader = new ColumnarEventsReader(eventsFile);
+		}
+		else if (BinaryEventsReader.isBinaryEeFile(eventsFile)) {
 			this.reader = new BinaryEventsReader(eventsFile);
 		}
 		else {
 			this.reader = new StandardEventsReader(eventsFile);
 		}
 
+		if (this.nrofPrefetch > 0) {
+			this.reader = new PrefetchingEventsReader(this.reader,
+					this.nrofPreload, this.nrofPrefetch);
+		}
+
 		this.queue = readEvents(nrofPreload);
 		this.nextEventIndex = 0;
 	}
@@ -49,6 +49,10 @@ public class ExternalMovementReader {
 	private double minY;
 	private double maxY;
 	private boolean normalize;
+	/** time stamp of the movements read from the file last */
+	private double readTimeStamp = -1;
+	/** reads the time instances in background (null if not used) */
+	private Prefetcher<Tuple<Double, List<Tuple<String, Coord>>>> prefetcher;
 
 
 	/**
@@ -99,12 +103,56 @@ public class ExternalMovementReader {
 		this.normalize = normalize;
 	}
 
+	/**
+	 * Starts reading the movements in a background thread. Normalizing
+	 * must be set before this.
+	 * @param nrofInstances How many time instances are read ahead
+	 */
+	public void startPrefetching(int nrofInstances) {
+		this.prefetcher = new Prefetcher<Tuple<Double,
+				List<Tuple<String, Coord>>>>(nrofInstances) {
+			protected Tuple<Double, List<Tuple<String, Coord>>> read() {
+				List<Tuple<String, Coord>> moves = readFromFile();
+				if (moves.size() == 0) {
+					return null;
+				}
+				return new Tuple<Double, List<Tuple<String, Coord>>>(
+						readTimeStamp, moves);
+			}
+
+			protected void finish() {
+				scanner.close();
+			}
+		};
+		this.prefetcher.start("ExternalMovementPrefetcher");
+	}
+
 	/**
 	 * Reads all new id-coordinate tuples that belong to the same time instance
 	 * @return A list of tuples or empty list if there were no more moves
 	 * @throws SettingError if an invalid line was read
 	 */
 	public List<Tuple<String, Coord>> readNextMovements() {
+		if (this.prefetcher == null) {
+			List<Tuple<String, Coord>> moves = readFromFile();
+			lastTimeStamp = readTimeStamp;
+			return moves;
+		}
+
+		Tuple<Double, List<Tuple<String, Coord>>> instance =
+			this.prefetcher.take();
+		if (instance == null) {
+			return new ArrayList<Tuple<String, Coord>>();
+		}
+		lastTimeStamp = instance.getKey();
+		return instance.getValue();
+	}
+
+	/**
+	 * Reads the tuples of the next time instance from the file
+	 * @return A list of tuples or empty list if there were no more moves
+	 */
+	private List<Tuple<String, Coord>> readFromFile() {
 		ArrayList<Tuple<String, Coord>> moves =
 			new ArrayList<Tuple<String, Coord>>();
 
@@ -124,9 +172,9 @@ public class ExternalMovementReader {
 			y -= minY;
 		}
 
-		lastTimeStamp = time;
+		readTimeStamp = time;
 
-		while (scanner.hasNextLine() && lastTimeStamp == time) {
+		while (scanner.hasNextLine() && readTimeStamp == time) {
 			lastLine = scanner.nextLine();
 
 			if (lastLine.trim().length() == 0 ||
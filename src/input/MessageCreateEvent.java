@@ -32,6 +32,23 @@ public class MessageCreateEvent extends MessageEvent {
 		this.responseSize = responseSize;
 	}
 
+	/**
+	 * Returns the size of the message
+	 * @return the size of the message
+	 */
+	int getSize() {
+		return this.size;
+	}
+
+	/**
+	 * Returns the size of the requested response
+	 * @return the size of the requested response or 0 if no response is
+	 * requested
+	 */
+	int getResponseSize() {
+		return this.responseSize;
+	}
+
 
 	/**
 	 * Creates the message this event represents.
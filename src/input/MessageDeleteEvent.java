@@ -31,6 +31,14 @@ public class MessageDeleteEvent extends MessageEvent {
 		this.drop = drop;
 	}
 
+	/**
+	 * Returns true if the delete is caused by a drop
+	 * @return true for a drop, false for a "normal" remove
+	 */
+	boolean isDrop() {
+		return this.drop;
+	}
+
 	/**
 	 * Deletes the message
 	 */
@@ -38,6 +38,14 @@ public class MessageRelayEvent extends MessageEvent {
 		this.stage = stage;
 	}
 
+	/**
+	 * Returns the stage of the event
+	 * @return the stage of the event (SENDING, TRANSFERRED, or ABORTED)
+	 */
+	int getStage() {
+		return this.stage;
+	}
+
 	/**
 	 * Relays the message
 	 */
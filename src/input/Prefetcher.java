@@ -0,0 +1,166 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package input;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import core.DTNSim;
+import core.SimError;
+
+/**
+ * Reads items (e.g., batches of events) in a background thread ahead of
+ * their use. The read items are handed over in the same order through a
+ * bounded queue, so the reading thread stays at most the queue's capacity
+ * ahead and the consumer blocks only if the reading thread falls behind.
+ * Exceptions and errors thrown by {@link #read()} are rethrown to the
+ * consumer after the items that were read before them.
+ * @param <T> Type of the read items
+ */
+public abstract class Prefetcher<T> implements Runnable {
+	/** marker for the end of the items */
+	private static final Object END = new Object();
+	/** prefetchers whose threads may still be running */
+	private static List<Prefetcher<?>> running;
+
+	private final BlockingQueue<Object> queue;
+	private Thread thread;
+	private volatile boolean stopped;
+	/** has the consumer taken the end marker (or exception) */
+	private boolean ended;
+
+	static {
+		DTNSim.registerForReset(Prefetcher.class.getCanonicalName());
+		reset();
+	}
+
+	/**
+	 * Constructor.
+	 * @param capacity How many items can be read ahead
+	 */
+	public Prefetcher(int capacity) {
+		this.queue = new ArrayBlockingQueue<Object>(Math.max(1, capacity));
+		this.stopped = false;
+		this.ended = false;
+	}
+
+	/**
+	 * Starts reading the items in a new (daemon) thread
+	 * @param name Name of the thread
+	 */
+	public void start(String name) {
+		this.thread = new Thread(this, name);
+		this.thread.setDaemon(true);
+		synchronized (Prefetcher.class) {
+			running.add(this);
+		}
+		this.thread.start();
+	}
+
+	/**
+	 * Reads the next item. Called from the background thread.
+	 * @return The item or null if there are no more items
+	 */
+	protected abstract T read();
+
+	/**
+	 * Releases the resources used for reading. Called from the background
+	 * thread when it stops.
+	 */
+	protected abstract void finish();
+
+	public void run() {
+		try {
+			T item;
+			do {
+				item = read();
+				this.queue.put(item == null ? END : item);
+			} while (item != null && !this.stopped);
+		} catch (RuntimeException | Error e) {
+			try {
+				this.queue.put(new Failure(e));
+			} catch (InterruptedException ie) {
+				// stopped; nobody takes the failure
+			}
+		} catch (InterruptedException e) {
+			// stopped
+		} finally {
+			finish();
+			synchronized (Prefetcher.class) {
+				running.remove(this);
+			}
+		}
+	}
+
+	/**
+	 * Returns the next item. Blocks until the item is read.
+	 * @return The item or null if there are no more items
+	 * @throws RuntimeException or Error if reading the item failed
+	 */
+	@SuppressWarnings("unchecked")
+	public T take() {
+		if (this.ended) {
+			return null;
+		}
+
+		Object o;
+		try {
+			o = this.queue.take();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new SimError("Interrupted while waiting for input", e);
+		}
+
+		if (o == END) {
+			this.ended = true;
+			return null;
+		}
+		else if (o instanceof Failure) {
+			this.ended = true;
+			Throwable t = ((Failure)o).exception;
+			if (t instanceof Error) {
+				throw (Error)t;
+			}
+			throw (RuntimeException)t;
+		}
+		return (T)o;
+	}
+
+	/**
+	 * Stops the reading thread. No more items can be taken after this.
+	 */
+	public void stop() {
+		this.ended = true;
+		this.stopped = true;
+		if (this.thread != null) {
+			this.thread.interrupt();
+		}
+	}
+
+	/**
+	 * Stops all the reading threads that are still running
+	 */
+	public static synchronized void reset() {
+		if (running != null) {
+			for (Prefetcher<?> p : new ArrayList<Prefetcher<?>>(running)) {
+				p.stop();
+			}
+		}
+		running = new ArrayList<Prefetcher<?>>();
+	}
+
+	/**
+	 * Exception or error thrown by the reading thread
+	 */
+	private static class Failure {
+		private final Throwable exception;
+
+		public Failure(Throwable exception) {
+			this.exception = exception;
+		}
+	}
+}
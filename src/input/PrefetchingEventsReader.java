@@ -0,0 +1,84 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package input;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * External events reader that reads the events of another reader in a
+ * background thread. The events are read in batches and the given number
+ * of batches are kept ready ahead of their use.
+ */
+public class PrefetchingEventsReader implements ExternalEventsReader {
+	private Prefetcher<List<ExternalEvent>> prefetcher;
+	/** the batch the events are currently given from */
+	private List<ExternalEvent> batch;
+	private int batchIndex;
+
+	/**
+	 * Constructor. Starts reading the events.
+	 * @param reader The reader where the events are read from
+	 * @param batchSize How many events are read in one batch
+	 * @param nrofBatches How many batches are read ahead
+	 */
+	public PrefetchingEventsReader(final ExternalEventsReader reader,
+			final int batchSize, int nrofBatches) {
+		this.prefetcher = new Prefetcher<List<ExternalEvent>>(nrofBatches) {
+			protected List<ExternalEvent> read() {
+				List<ExternalEvent> events = reader.readEvents(batchSize);
+				return events.size() > 0 ? events : null;
+			}
+
+			protected void finish() {
+				reader.close();
+			}
+		};
+		this.batch = new ArrayList<ExternalEvent>(0);
+		this.batchIndex = 0;
+		this.prefetcher.start("ExternalEventsPrefetcher");
+	}
+
+	public List<ExternalEvent> readEvents(int nrof) {
+		if (this.batchIndex == 0 && this.batch.size() == 0) {
+			/* nothing left from the previous batch */
+			List<ExternalEvent> next = this.prefetcher.take();
+			if (next == null) {
+				return new ArrayList<ExternalEvent>(0);
+			}
+			if (next.size() <= nrof) {
+				return next;
+			}
+			this.batch = next;
+		}
+
+		List<ExternalEvent> events = new ArrayList<ExternalEvent>();
+		while (events.size() < nrof) {
+			if (this.batchIndex == this.batch.size()) {
+				this.batch = this.prefetcher.take();
+				this.batchIndex = 0;
+				if (this.batch == null) {
+					this.batch = new ArrayList<ExternalEvent>(0);
+					break;
+				}
+			}
+			int n = Math.min(nrof - events.size(),
+					this.batch.size() - this.batchIndex);
+			events.addAll(this.batch.subList(this.batchIndex,
+					this.batchIndex + n));
+			this.batchIndex += n;
+		}
+		if (this.batchIndex == this.batch.size()) {
+			this.batch = new ArrayList<ExternalEvent>(0);
+			this.batchIndex = 0;
+		}
+
+		return events;
+	}
+
+	public void close() {
+		this.prefetcher.stop();
+	}
+}
@@ -4,17 +4,20 @@
  */
 package input;
 
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.Reader;
 import java.lang.Integer;
 import java.lang.NumberFormatException;
+import java.text.DecimalFormatSymbols;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Locale;
+import java.util.NoSuchElementException;
 import java.util.Scanner;
-import java.util.regex.Pattern;
 
 import core.SimError;
 
@@ -66,184 +69,485 @@ public class StandardEventsReader implements ExternalEventsReader {
 	/** Message identifier to use to refer to all messages ({@value}) */
 	public static final String ALL_MESSAGES_ID = "*";
 
-	//private Scanner scanner;
-	private BufferedReader reader;
+	/** Size of the character buffer (grows if a line doesn't fit in it) */
+	private static final int BUFFER_SIZE = 64 * 1024;
+	/** Mantissas below this are exactly representable as doubles */
+	private static final long MAX_EXACT_MANTISSA = 1L << 53;
+	/** Powers of ten that are exactly representable as doubles */
+	private static final double[] EXACT_POWERS_OF_TEN = {1e0, 1e1, 1e2,
+		1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14,
+		1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+	/** Data units of sizes and their multipliers */
+	private static final String[] SIZE_UNITS = {"k", "M", "G", "kiB", "MiB",
+		"GiB"};
+	private static final int[] SIZE_MULTIPLIERS = {1000, 1000000, 1000000000,
+		1024, 1048576, 1073741824};
+
+	private Reader reader;
+	/** characters read from the file; the unprocessed ones are between
+	 * pos and limit */
+	private char[] buffer;
+	private int pos;
+	private int limit;
+	private boolean eof;
+	/** true if the previous line ended with '\r' (skip '\n' after it) */
+	private boolean skipLF;
+	/** the current line is buffer[lineStart, lineEnd) */
+	private int lineStart;
+	private int lineEnd;
+	/** the current token is buffer[tokenStart, tokenEnd) */
+	private int tokenStart;
+	private int tokenEnd;
+	/** can numbers with '.' as the decimal separator be parsed directly */
+	private final boolean dotDecimals;
 
 	public StandardEventsReader(File eventsFile){
 		try {
-			//this.scanner = new Scanner(eventsFile);
-			this.reader = new BufferedReader(new FileReader(eventsFile));
+			this.reader = new FileReader(eventsFile);
 		} catch (FileNotFoundException e) {
 			throw new SimError(e.getMessage(),e);
 		}
+		this.buffer = new char[BUFFER_SIZE];
+		this.pos = 0;
+		this.limit = 0;
+		this.eof = false;
+		this.skipLF = false;
+		/* Scanner (used for other number formats) parses with the default
+		 * locale */
+		this.dotDecimals = DecimalFormatSymbols.getInstance(
+				Locale.getDefault(Locale.Category.FORMAT)).
+				getDecimalSeparator() == '.';
 	}
 
 
+	/**
+	 * Reads events from the file. The lines are tokenized and parsed
+	 * directly from the character buffer; only message and interface IDs
+	 * are created as Strings. The accepted syntax is the same as with
+	 * java.util.Scanner: numbers that are not in the plain formats
+	 * (e.g., with signs, exponents or grouping) are parsed using a Scanner.
+	 */
 	public List<ExternalEvent> readEvents(int nrof) {
 		ArrayList<ExternalEvent> events = new ArrayList<ExternalEvent>(nrof);
 		int eventsRead = 0;
-		// skip empty and comment lines
-		Pattern skipPattern = Pattern.compile("(#.*)|(^\\s*$)");
 
-		String line;
-		try {
-			line = this.reader.readLine();
-		} catch (IOException e1) {
-			throw new SimError("Reading from external event file failed.");
-		}
-		while (eventsRead < nrof && line != null) {
-			Scanner lineScan = new Scanner(line);
-			if (skipPattern.matcher(line).matches()) {
-				// skip empty and comment lines
-				try {
-					line = this.reader.readLine();
-				} catch (IOException e) {
-					lineScan.close();
-					throw new SimError("Reading from external event file " +
-							"failed.");
+		while (eventsRead < nrof) {
+			try {
+				if (!nextLine()) {
+					break; // end of file
 				}
+			} catch (IOException e) {
+				throw new SimError("Reading from external event file failed.");
+			}
+			if (isSkippedLine()) {
+				// skip empty and comment lines
 				continue;
 			}
-			
-			double time;
-			String action;
-			String msgId;
-			int hostAddr;
-			int host2Addr;
 
 			try {
-				time = lineScan.nextDouble();
-				action = lineScan.next();
-
-				if (action.equals(DROP)) {
-					msgId = lineScan.next();
-					hostAddr = getHostAddress(lineScan.next());
-					events.add(new MessageDeleteEvent(hostAddr, msgId,
-							time, true));
+				events.add(parseEvent());
+				eventsRead++;
+			} catch (Exception e) {
+				throw new SimError("Can't parse external event " +
+						(eventsRead+1) + " from '" + new String(this.buffer,
+						this.lineStart, this.lineEnd - this.lineStart) + "'",
+						e);
+			}
+		}
+
+		return events;
+	}
+
+	/**
+	 * Parses an event from the current line
+	 * @return The event
+	 * @throws Exception if the line is not a valid event
+	 */
+	private ExternalEvent parseEvent() throws Exception {
+		double time;
+		String msgId;
+		int hostAddr;
+		int host2Addr;
+
+		this.tokenEnd = this.lineStart;
+		nextToken();
+		time = parseDouble();
+		nextToken();
+
+		if (tokenEquals(DROP)) {
+			msgId = nextString();
+			nextToken();
+			hostAddr = getHostAddress();
+			return new MessageDeleteEvent(hostAddr, msgId, time, true);
+		}
+		else if (tokenEquals(REMOVE)) {
+			msgId = nextString();
+			nextToken();
+			hostAddr = getHostAddress();
+			return new MessageDeleteEvent(hostAddr, msgId, time, false);
+		}
+		else if (tokenEquals(CONNECTION)) {
+			boolean isUp;
+			nextToken();
+			hostAddr = getHostAddress();
+			nextToken();
+			host2Addr = getHostAddress();
+			nextToken();
+
+			if (tokenEqualsIgnoreCase(CONNECTION_UP)) {
+				isUp = true;
+			}
+			else if (tokenEqualsIgnoreCase(CONNECTION_DOWN)) {
+				isUp = false;
+			}
+			else {
+				throw new SimError("Unknown up/down value '" +
+						tokenString() + "'");
+			}
+
+			String interfaceId = null;
+			if (hasNextToken()) {
+				interfaceId = nextString();
+			}
+
+			return new ConnectionEvent(hostAddr, host2Addr, interfaceId,
+					isUp, time);
+		}
+
+		int stage = -1;
+		if (tokenEquals(SEND)) {
+			stage = MessageRelayEvent.SENDING;
+		}
+		else if (tokenEquals(DELIVERED)) {
+			stage = MessageRelayEvent.TRANSFERRED;
+		}
+		else if (tokenEquals(ABORT)) {
+			stage = MessageRelayEvent.ABORTED;
+		}
+		boolean isCreate = tokenEquals(CREATE);
+		String action = (stage < 0 && !isCreate ? tokenString() : null);
+
+		msgId = nextString();
+		nextToken();
+		hostAddr = getHostAddress();
+		nextToken();
+		host2Addr = getHostAddress();
+
+		if (isCreate) {
+			int size = 0;
+			if (hasNextToken()) {
+				nextToken();
+				size = parseSize();
+			}
+			else {
+				throw new Exception("Invalid number of columns for CREATE event");
+			}
+
+			int respSize = 0;
+			if (hasNextToken()) {
+				nextToken();
+				respSize = parseSize();
+			}
+			return new MessageCreateEvent(hostAddr, host2Addr, msgId, size,
+					respSize, time);
+		}
+		else if (stage < 0) {
+			throw new SimError("Unknown action '" + action +
+					"' in external events");
+		}
+		return new MessageRelayEvent(hostAddr, host2Addr, msgId, time, stage);
+	}
+
+	/**
+	 * Moves to the next line of the file. Lines end with '\n', '\r', or
+	 * "\r\n" (like with {@link java.io.BufferedReader#readLine()}).
+	 * @return true if there was a line, false at the end of the file
+	 * @throws IOException if reading the file fails
+	 */
+	private boolean nextLine() throws IOException {
+		int i = this.pos;
+		while (true) {
+			if (i == this.limit) {
+				if (this.eof) {
+					if (this.pos == this.limit) {
+						return false;
+					}
+					this.lineStart = this.pos; // last line without line end
+					this.lineEnd = this.limit;
+					this.pos = this.limit;
+					return true;
 				}
-				else if (action.equals(REMOVE)) {
-					msgId = lineScan.next();
-					hostAddr = getHostAddress(lineScan.next());
-					events.add(new MessageDeleteEvent(hostAddr, msgId,
-							time, false));
+				i -= this.pos;
+				fill();
+				i += this.pos;
+				continue;
+			}
+
+			char c = this.buffer[i];
+			if (this.skipLF) {
+				this.skipLF = false;
+				if (c == '\n') {
+					this.pos++;
+					i++;
+					continue;
 				}
-				else if (action.equals(CONNECTION)) {
-					String connEventType;
-					boolean isUp;
-					hostAddr = getHostAddress(lineScan.next());
-					host2Addr = getHostAddress(lineScan.next());
-					connEventType = lineScan.next();
-
-					String interfaceId = null;
-					if (lineScan.hasNext()) {
-						interfaceId = lineScan.next();
-					}
+			}
+			if (c == '\n' || c == '\r') {
+				this.lineStart = this.pos;
+				this.lineEnd = i;
+				this.pos = i + 1;
+				this.skipLF = (c == '\r');
+				return true;
+			}
+			i++;
+		}
+	}
 
-					if (connEventType.equalsIgnoreCase(CONNECTION_UP)) {
-						isUp = true;
-					}
-					else if (connEventType.equalsIgnoreCase(CONNECTION_DOWN)) {
-						isUp = false;
-					}
-					else {
-						throw new SimError("Unknown up/down value '" +
-								connEventType + "'");
-					}
+	/**
+	 * Moves the unprocessed characters to the beginning of the buffer
+	 * (growing the buffer if they fill it) and reads more characters
+	 * @throws IOException if reading the file fails
+	 */
+	private void fill() throws IOException {
+		int n = this.limit - this.pos;
+		if (n == this.buffer.length) {
+			this.buffer = Arrays.copyOf(this.buffer, 2 * n);
+		}
+		System.arraycopy(this.buffer, this.pos, this.buffer, 0, n);
+		this.pos = 0;
+		this.limit = n;
 
-					ConnectionEvent ce = new ConnectionEvent(hostAddr,
-							host2Addr, interfaceId, isUp, time);
+		int read = this.reader.read(this.buffer, n, this.buffer.length - n);
+		if (read < 0) {
+			this.eof = true;
+		}
+		else {
+			this.limit += read;
+		}
+	}
 
-					events.add(ce);
+	/**
+	 * Returns true if the current line is a comment line (starts with '#')
+	 * or has only whitespace. Matches the same lines as the regular
+	 * expression <CODE>(#.*)|(^\s*$)</CODE>.
+	 */
+	private boolean isSkippedLine() {
+		if (this.lineStart < this.lineEnd &&
+				this.buffer[this.lineStart] == '#') {
+			for (int i = this.lineStart + 1; i < this.lineEnd; i++) {
+				char c = this.buffer[i];
+				if (c == '\u0085' || c == '\u2028' || c == '\u2029') {
+					return false; // line terminators don't match "."
 				}
-				else {
-					msgId = lineScan.next();
-					hostAddr = getHostAddress(lineScan.next());
-
-					host2Addr = getHostAddress(lineScan.next());
-
-					if (action.equals(CREATE)){
-						int size = 0;
-
-						if (lineScan.hasNextInt()){
-							size = lineScan.nextInt();
-						}
-						else if (lineScan.hasNext()){
-							size = convertToInteger(lineScan.next());
-						}else{
-							throw new Exception("Invalid number of columns for CREATE event");
-						}
-
-						int respSize = 0;
-						if (lineScan.hasNextInt()) {
-							respSize = lineScan.nextInt();
-						}
-						else if(lineScan.hasNext()) {
-							respSize = convertToInteger(lineScan.next());
-						}
-						events.add(new MessageCreateEvent(hostAddr, host2Addr,
-								msgId, size, respSize, time));
+			}
+			return true;
+		}
+
+		for (int i = this.lineStart; i < this.lineEnd; i++) {
+			char c = this.buffer[i];
+			if (c != ' ' && c != '\t' && c != '\u000B' && c != '\f') {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns true if the current line has more tokens. Tokens are
+	 * separated by whitespace like with {@link Scanner}.
+	 */
+	private boolean hasNextToken() {
+		int i = this.tokenEnd;
+		while (i < this.lineEnd && Character.isWhitespace(this.buffer[i])) {
+			i++;
+		}
+		this.tokenEnd = i;
+		return i < this.lineEnd;
+	}
+
+	/**
+	 * Moves to the next token of the current line
+	 * @throws NoSuchElementException if the line has no more tokens
+	 */
+	private void nextToken() {
+		if (!hasNextToken()) {
+			throw new NoSuchElementException();
+		}
+		int i = this.tokenEnd;
+		this.tokenStart = i;
+		while (i < this.lineEnd && !Character.isWhitespace(this.buffer[i])) {
+			i++;
+		}
+		this.tokenEnd = i;
+	}
+
+	/**
+	 * Moves to the next token and returns it as a String
+	 */
+	private String nextString() {
+		nextToken();
+		return tokenString();
+	}
+
+	private String tokenString() {
+		return new String(this.buffer, this.tokenStart,
+				this.tokenEnd - this.tokenStart);
+	}
+
+	private boolean tokenEquals(String s) {
+		return this.tokenEnd - this.tokenStart == s.length() &&
+			tokenMatches(this.tokenStart, s, false);
+	}
+
+	private boolean tokenEqualsIgnoreCase(String s) {
+		return this.tokenEnd - this.tokenStart == s.length() &&
+			tokenMatches(this.tokenStart, s, true);
+	}
+
+	/**
+	 * Returns true if the characters of the current token starting from
+	 * the given index are the characters of the given string (as with
+	 * {@link String#regionMatches(boolean, int, String, int, int)})
+	 */
+	private boolean tokenMatches(int start, String s, boolean ignoreCase) {
+		for (int i = 0; i < s.length(); i++) {
+			char c1 = this.buffer[start + i];
+			char c2 = s.charAt(i);
+			if (c1 == c2) {
+				continue;
+			}
+			if (!ignoreCase) {
+				return false;
+			}
+			char u1 = Character.toUpperCase(c1);
+			char u2 = Character.toUpperCase(c2);
+			if (u1 != u2 &&
+					Character.toLowerCase(u1) != Character.toLowerCase(u2)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Parses the current token as a double. Plain decimal numbers whose
+	 * digits fit in the exact range of doubles are parsed directly.
+	 */
+	private double parseDouble() {
+		if (this.dotDecimals) {
+			long mantissa = 0;
+			int fractionDigits = -1; // no decimal separator
+			int i;
+			for (i = this.tokenStart; i < this.tokenEnd; i++) {
+				char c = this.buffer[i];
+				if (c >= '0' && c <= '9') {
+					mantissa = mantissa * 10 + (c - '0');
+					if (mantissa >= MAX_EXACT_MANTISSA) {
+						break;
 					}
-					else {
-						int stage = -1;
-						if (action.equals(SEND)) {
-							stage = MessageRelayEvent.SENDING;
-						}
-						else if (action.equals(DELIVERED)) {
-							stage = MessageRelayEvent.TRANSFERRED;
-						}
-						else if (action.equals(ABORT)) {
-							stage = MessageRelayEvent.ABORTED;
-						}
-						else {
-							throw new SimError("Unknown action '" + action +
-								"' in external events");
-						}
-						events.add(new MessageRelayEvent(hostAddr, host2Addr,
-								msgId, time, stage));
+					if (fractionDigits >= 0) {
+						fractionDigits++;
 					}
 				}
-				// discard the newline in the end
-				if (lineScan.hasNextLine()) {
-					lineScan.nextLine(); // TODO: test
+				else if (c != '.' || fractionDigits >= 0 ||
+						i == this.tokenStart) {
+					break;
 				}
-				eventsRead++;
-				if (eventsRead < nrof) {
-					line = this.reader.readLine();
+				else {
+					fractionDigits = 0;
 				}
-			} catch (Exception e) {
-				e.printStackTrace();
-				throw new SimError("Can't parse external event " +
-						(eventsRead+1) + " from '" + line + "'", e);
 			}
-			finally {
-				lineScan.close();
+			if (i == this.tokenEnd && fractionDigits != 0 &&
+					fractionDigits < EXACT_POWERS_OF_TEN.length) {
+				/* one division of exact values is correctly rounded */
+				return fractionDigits > 0 ?
+					mantissa / EXACT_POWERS_OF_TEN[fractionDigits] : mantissa;
 			}
 		}
 
-		return events;
+		Scanner s = new Scanner(tokenString());
+		try {
+			return s.nextDouble();
+		} finally {
+			s.close();
+		}
 	}
 
 	/**
-	 * Parses a host address from a hostId string (the numeric part after
-	 * optional non-numeric part).
-	 * @param hostId The id to parse the address from
+	 * Parses the current token as a size: an integer or an integer
+	 * followed by a data unit (e.g., "100k")
+	 */
+	private int parseSize() {
+		long value = 0;
+		int i;
+		for (i = this.tokenStart; i < this.tokenEnd; i++) {
+			char c = this.buffer[i];
+			if (c < '0' || c > '9') {
+				break;
+			}
+			value = value * 10 + (c - '0');
+			if (value > Integer.MAX_VALUE) {
+				i = -1;
+				break;
+			}
+		}
+		if (i > this.tokenStart) {
+			int number = (int)value;
+			if (i == this.tokenEnd) {
+				return number;
+			}
+			for (int u = 0; u < SIZE_UNITS.length; u++) {
+				if (this.tokenEnd - i == SIZE_UNITS[u].length() &&
+						tokenMatches(i, SIZE_UNITS[u], false)) {
+					return number * SIZE_MULTIPLIERS[u];
+				}
+			}
+		}
+
+		String str = tokenString();
+		Scanner s = new Scanner(str);
+		try {
+			if (s.hasNextInt()) {
+				return s.nextInt();
+			}
+		} finally {
+			s.close();
+		}
+		return convertToInteger(str);
+	}
+
+	/**
+	 * Parses a host address from the current token, which is a hostId
+	 * string (the numeric part after optional non-numeric part).
 	 * @return The address
 	 * @throws SimError if no address could be parsed from the id
 	 */
-	private int getHostAddress(String hostId) {
-		String addressPart = "";
-		if (hostId.matches("^\\d+$")) {
-			addressPart = hostId; // host id is only the address
+	private int getHostAddress() {
+		int digitsStart = this.tokenEnd;
+		while (digitsStart > this.tokenStart &&
+				this.buffer[digitsStart - 1] >= '0' &&
+				this.buffer[digitsStart - 1] <= '9') {
+			digitsStart--;
 		}
-		else if (hostId.matches("^\\D+\\d+$")) {
-			String [] parts = hostId.split("\\D");
-			addressPart = parts[parts.length-1]; // last occurence is the addr
+		boolean valid = digitsStart < this.tokenEnd;
+		for (int i = this.tokenStart; valid && i < digitsStart; i++) {
+			char c = this.buffer[i];
+			valid = (c < '0' || c > '9'); // numeric part must be the last
 		}
-		else {
-			throw new SimError("Invalid host ID '" + hostId + "'");
+		if (!valid) {
+			throw new SimError("Invalid host ID '" + tokenString() + "'");
 		}
 
-		return Integer.parseInt(addressPart);
+		int address = 0;
+		for (int i = digitsStart; i < this.tokenEnd; i++) {
+			int digit = this.buffer[i] - '0';
+			if (address > (Integer.MAX_VALUE - digit) / 10) {
+				throw new NumberFormatException("Too large host address in '" +
+						tokenString() + "'");
+			}
+			address = address * 10 + digit;
+		}
+		return address;
 	}
 
 	public void close() {
@@ -92,6 +92,30 @@ public class ConnectivityGrid extends ConnectivityOptimizer {
 		}
 	}
 
+	/**
+	 * Returns the width of the world in the grids
+	 * @return the width of the world
+	 */
+	static int getWorldSizeX() {
+		return worldSizeX;
+	}
+
+	/**
+	 * Returns the height of the world in the grids
+	 * @return the height of the world
+	 */
+	static int getWorldSizeY() {
+		return worldSizeY;
+	}
+
+	/**
+	 * Returns the cell size multiplier (see {@link #CELL_SIZE_MULT_S})
+	 * @return the cell size multiplier
+	 */
+	static int getCellSizeMultiplier() {
+		return cellSizeMultiplier;
+	}
+
 	/**
 	 * Creates a new overlay connectivity grid
 	 * @param cellSize Cell's edge's length (must be larger than the largest
@@ -250,6 +274,16 @@ public class ConnectivityGrid extends ConnectivityOptimizer {
 		return niList;
 	}
 
+	/**
+	 * Returns the cell size: an interface outside the 3x3 block of cells
+	 * around another one is at least one full cell away from it.
+	 * @return The cell size
+	 */
+	@Override
+	public double getNearDistance() {
+		return this.cellSize;
+	}
+
 
 	/**
 	 * Returns a string representation of the ConnectivityCells object
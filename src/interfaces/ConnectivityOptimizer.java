@@ -5,6 +5,8 @@
 package interfaces;
 
 import java.util.Collection;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
 
 import core.NetworkInterface;
 
@@ -40,6 +42,71 @@ abstract public class ConnectivityOptimizer {
 	abstract public Collection<NetworkInterface> getNearInterfaces(
 			NetworkInterface ni);
 
+	/**
+	 * Calls the visitor for every interface that
+	 * {@link #getNearInterfaces(NetworkInterface)} would return, in the same
+	 * order. This implementation iterates the returned collection;
+	 * optimizers that can do it without creating objects should override
+	 * this.
+	 * @param ni network interface that needs to be connected
+	 * @param visitor Visitor to call for every near interface
+	 */
+	public void forEachNearInterface(NetworkInterface ni,
+			Consumer<NetworkInterface> visitor) {
+		for (NetworkInterface other : getNearInterfaces(ni)) {
+			visitor.accept(other);
+		}
+	}
+
+	/**
+	 * Calls the visitor like
+	 * {@link #forEachNearInterface(NetworkInterface, Consumer)} but only for
+	 * the interfaces whose host is within the given distance from the
+	 * host of the interface.
+	 * @param ni network interface that needs to be connected
+	 * @param distance The maximum distance
+	 * @param visitor Visitor to call for every near interface
+	 */
+	public void forEachNearInterface(NetworkInterface ni, double distance,
+			Consumer<NetworkInterface> visitor) {
+		for (NetworkInterface other : getNearInterfaces(ni)) {
+			if (ni.getLocation().distance(other.getLocation()) <= distance) {
+				visitor.accept(other);
+			}
+		}
+	}
+
+	/**
+	 * Calls the visitor like
+	 * {@link #forEachNearInterface(NetworkInterface, Consumer)}, in the same
+	 * order, but skips the interfaces that are not among the given
+	 * candidates as long as the given condition holds. The condition is
+	 * expected to change only in the visitor calls.
+	 * @param ni network interface that needs to be connected
+	 * @param candidates The interfaces that must not be skipped
+	 * @param skipOthers Condition for skipping the other interfaces
+	 * @param visitor Visitor to call for the near interfaces
+	 */
+	public void forEachNearInterface(NetworkInterface ni,
+			Collection<NetworkInterface> candidates, BooleanSupplier skipOthers,
+			Consumer<NetworkInterface> visitor) {
+		forEachNearInterface(ni, other -> {
+			if (!skipOthers.getAsBoolean() || candidates.contains(other)) {
+				visitor.accept(other);
+			}
+		});
+	}
+
+	/**
+	 * Returns the distance within which all interfaces are guaranteed to be
+	 * returned by {@link #getNearInterfaces(NetworkInterface)}. This
+	 * implementation returns 0 (no guarantee).
+	 * @return The guaranteed neighbourhood distance
+	 */
+	public double getNearDistance() {
+		return 0;
+	}
+
 	/**
 	 * Finds all other interfaces that are registered to the
 	 * ConnectivityOptimizer
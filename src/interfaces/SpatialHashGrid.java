@@ -0,0 +1,457 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package interfaces;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+import core.Coord;
+import core.DTNSim;
+import core.NetworkInterface;
+
+/**
+ * <P>
+ * Overlay grid of the world like {@link ConnectivityGrid}, but the
+ * interfaces and the cells are kept in primitive arrays instead of a hash
+ * map and per cell lists. Every interface has an index in the grid and its
+ * location and cell are stored by that index. The interfaces of a cell
+ * form a linked list (of indexes) in the order they were put to the cell,
+ * so interfaces are found in the same order as from a ConnectivityGrid.
+ * </P>
+ * <P>
+ * Near interfaces can be iterated with
+ * {@link #forEachNearInterface(NetworkInterface, Consumer)} without
+ * creating any objects. Cell size is set with the same
+ * {@link ConnectivityGrid#CELL_SIZE_MULT_S} setting as for the
+ * ConnectivityGrid, and the same limitations apply: negative coordinates
+ * are not supported.
+ * </P>
+ */
+public class SpatialHashGrid extends ConnectivityOptimizer {
+	/** value of the index links when there is no next or previous */
+	private static final int NONE = -1;
+	/** how large arrays are initially chosen */
+	private static final int INITIAL_CAPACITY = 16;
+
+	private int cellSize;
+	private int rows;
+	private int cols;
+
+	/** interfaces by their index (null for removed ones) */
+	private NetworkInterface[] interfaces;
+	/** locations of the interfaces at the last update */
+	private double[] xs;
+	private double[] ys;
+	/** cell of each interface */
+	private int[] cellOf;
+	/** next and previous interface in the same cell */
+	private int[] next;
+	private int[] prev;
+	/** number of each interface's latest append to a cell; grows in the
+	 * order of the cells' lists */
+	private long[] appendNr;
+	/** number of appends so far */
+	private long appends;
+	/** indexes of the candidates being visited (reused) */
+	private int[] order;
+	/** number of used interface indexes */
+	private int size;
+	/** first and last interface of each cell */
+	private int[] first;
+	private int[] last;
+
+	static HashMap<Integer, SpatialHashGrid> gridobjects;
+
+	static {
+		DTNSim.registerForReset(SpatialHashGrid.class.getCanonicalName());
+		reset();
+	}
+
+	public static void reset() {
+		gridobjects = new HashMap<Integer, SpatialHashGrid>();
+	}
+
+	/**
+	 * Creates a new grid
+	 * @param cellSize Cell's edge's length (must be larger than the largest
+	 * 	radio coverage's diameter)
+	 */
+	private SpatialHashGrid(int cellSize) {
+		this.cellSize = cellSize;
+		this.rows = ConnectivityGrid.getWorldSizeY()/cellSize + 1;
+		this.cols = ConnectivityGrid.getWorldSizeX()/cellSize + 1;
+
+		// leave empty cells on both sides to make neighbor search easier
+		int nrofCells = (rows + 2) * (cols + 2);
+		this.first = new int[nrofCells];
+		this.last = new int[nrofCells];
+		Arrays.fill(this.first, NONE);
+		Arrays.fill(this.last, NONE);
+
+		this.interfaces = new NetworkInterface[INITIAL_CAPACITY];
+		this.xs = new double[INITIAL_CAPACITY];
+		this.ys = new double[INITIAL_CAPACITY];
+		this.cellOf = new int[INITIAL_CAPACITY];
+		this.next = new int[INITIAL_CAPACITY];
+		this.prev = new int[INITIAL_CAPACITY];
+		this.appendNr = new long[INITIAL_CAPACITY];
+		this.order = new int[INITIAL_CAPACITY];
+		this.size = 0;
+	}
+
+	/**
+	 * Returns a grid object based on a hash value
+	 * @param key A hash value that separates different interfaces from each
+	 * other
+	 * @param maxRange Maximum range used by the radio technology using this
+	 *  grid.
+	 * @return The grid object for a specific interface
+	 */
+	public static SpatialHashGrid SpatialHashGridFactory(int key,
+			double maxRange) {
+		SpatialHashGrid grid = gridobjects.get(key);
+		if (grid == null) {
+			grid = new SpatialHashGrid((int)Math.ceil(maxRange *
+					ConnectivityGrid.getCellSizeMultiplier()));
+			gridobjects.put(key, grid);
+		}
+		return grid;
+	}
+
+	/**
+	 * Adds a network interface to the grid (unless it is already present)
+	 * @param ni The new network interface
+	 */
+	public void addInterface(NetworkInterface ni) {
+		if (contains(ni)) {
+			return;
+		}
+		if (this.size == this.interfaces.length) {
+			int newCapacity = this.size * 2;
+			this.interfaces = Arrays.copyOf(this.interfaces, newCapacity);
+			this.xs = Arrays.copyOf(this.xs, newCapacity);
+			this.ys = Arrays.copyOf(this.ys, newCapacity);
+			this.cellOf = Arrays.copyOf(this.cellOf, newCapacity);
+			this.next = Arrays.copyOf(this.next, newCapacity);
+			this.prev = Arrays.copyOf(this.prev, newCapacity);
+			this.appendNr = Arrays.copyOf(this.appendNr, newCapacity);
+		}
+
+		int index = this.size++;
+		Coord loc = ni.getLocation();
+		this.interfaces[index] = ni;
+		this.xs[index] = loc.getX();
+		this.ys[index] = loc.getY();
+		ni.setOptimizerIndex(index);
+		append(index, cellIndex(this.xs[index], this.ys[index]));
+	}
+
+	/**
+	 * Adds interfaces to the grid
+	 * @param interfaces Collection of interfaces to add
+	 */
+	public void addInterfaces(Collection<NetworkInterface> interfaces) {
+		for (NetworkInterface n : interfaces) {
+			addInterface(n);
+		}
+	}
+
+	/**
+	 * Removes a network interface from the grid
+	 * @param ni The interface to be removed
+	 */
+	public void removeInterface(NetworkInterface ni) {
+		if (!contains(ni)) {
+			return;
+		}
+		int index = ni.getOptimizerIndex();
+		unlink(index);
+		this.interfaces[index] = null;
+		ni.setOptimizerIndex(NONE);
+	}
+
+	/**
+	 * Updates the stored location of the interface and moves it to another
+	 * cell if necessary
+	 * @param ni The interface to update
+	 */
+	public void updateLocation(NetworkInterface ni) {
+		int index = ni.getOptimizerIndex();
+		assert contains(ni) : "Interface " + ni + " is not in " + this;
+		Coord loc = ni.getLocation();
+		this.xs[index] = loc.getX();
+		this.ys[index] = loc.getY();
+
+		int cell = cellIndex(this.xs[index], this.ys[index]);
+		if (cell != this.cellOf[index]) {
+			unlink(index);
+			append(index, cell);
+		}
+	}
+
+	/**
+	 * Returns all interfaces that are "near" (i.e., in neighboring grid
+	 * cells) and use the same technology and channel as the given interface
+	 * @param ni The interface whose neighboring interfaces are returned
+	 * @return List of near interfaces
+	 */
+	public Collection<NetworkInterface> getNearInterfaces(
+			NetworkInterface ni) {
+		List<NetworkInterface> niList = new ArrayList<NetworkInterface>();
+		forEachNearInterface(ni, niList::add);
+		return niList;
+	}
+
+	/**
+	 * Calls the visitor for every interface in the cell of the given
+	 * interface's current location and in the neighboring cells
+	 * (including the interface itself). Creates no objects.
+	 */
+	@Override
+	public void forEachNearInterface(NetworkInterface ni,
+			Consumer<NetworkInterface> visitor) {
+		if (!contains(ni)) {
+			return;
+		}
+
+		Coord loc = ni.getLocation();
+		int center = cellIndex(loc.getX(), loc.getY());
+		int stride = this.cols + 2;
+		for (int row = center - stride; row <= center + stride;
+				row += stride) {
+			for (int cell = row - 1; cell <= row + 1; cell++) {
+				for (int i = this.first[cell]; i != NONE; i = this.next[i]) {
+					visitor.accept(this.interfaces[i]);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Calls the visitor for every near interface (see
+	 * {@link #forEachNearInterface(NetworkInterface, Consumer)}) whose
+	 * stored location is within the given distance. Creates no objects.
+	 */
+	@Override
+	public void forEachNearInterface(NetworkInterface ni, double distance,
+			Consumer<NetworkInterface> visitor) {
+		if (!contains(ni)) {
+			return;
+		}
+
+		Coord loc = ni.getLocation();
+		double x = loc.getX();
+		double y = loc.getY();
+		double maxSquared = distance * distance;
+		int center = cellIndex(x, y);
+		int stride = this.cols + 2;
+		for (int row = center - stride; row <= center + stride;
+				row += stride) {
+			for (int cell = row - 1; cell <= row + 1; cell++) {
+				for (int i = this.first[cell]; i != NONE; i = this.next[i]) {
+					double dx = this.xs[i] - x;
+					double dy = this.ys[i] - y;
+					if (dx*dx + dy*dy <= maxSquared) {
+						visitor.accept(this.interfaces[i]);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Visits the candidates that are in the 3x3 block of cells in the order
+	 * of the cells and the cells' lists, i.e., like
+	 * {@link #forEachNearInterface(NetworkInterface, Consumer)} would visit
+	 * them, without going through the rest of the block. If the condition
+	 * doesn't hold any more after a visit, the rest of the block is visited
+	 * in full. The condition is expected to change only in the visits.
+	 */
+	@Override
+	public void forEachNearInterface(NetworkInterface ni,
+			Collection<NetworkInterface> candidates, BooleanSupplier skipOthers,
+			Consumer<NetworkInterface> visitor) {
+		if (!contains(ni)) {
+			return;
+		}
+
+		Coord loc = ni.getLocation();
+		int center = cellIndex(loc.getX(), loc.getY());
+		if (this.order.length < candidates.size()) {
+			this.order = new int[candidates.size() * 2];
+		}
+
+		/* insertion sort of the candidates (there are only a few) */
+		int count = 0;
+		for (NetworkInterface c : candidates) {
+			int index = c.getOptimizerIndex();
+			if (!contains(c) || blockPosition(center, this.cellOf[index]) < 0) {
+				continue;
+			}
+			int j = count++;
+			while (j > 0 && isVisitedBefore(center, index, this.order[j-1])) {
+				this.order[j] = this.order[j-1];
+				j--;
+			}
+			this.order[j] = index;
+		}
+
+		int lastVisited = NONE;
+		for (int k = 0; k < count && skipOthers.getAsBoolean(); k++) {
+			lastVisited = this.order[k];
+			visitor.accept(this.interfaces[lastVisited]);
+		}
+		if (!skipOthers.getAsBoolean()) {
+			forEachNearInterfaceAfter(center, lastVisited, visitor);
+		}
+	}
+
+	/**
+	 * Visits the interfaces of the 3x3 block of cells around the center
+	 * cell that are visited after the given interface
+	 * @param center Index of the center cell
+	 * @param after Index of the interface (or NONE to visit all)
+	 * @param visitor Visitor to call for the interfaces
+	 */
+	private void forEachNearInterfaceAfter(int center, int after,
+			Consumer<NetworkInterface> visitor) {
+		int stride = this.cols + 2;
+		for (int row = center - stride; row <= center + stride;
+				row += stride) {
+			for (int cell = row - 1; cell <= row + 1; cell++) {
+				for (int i = this.first[cell]; i != NONE; i = this.next[i]) {
+					if (after == NONE || isVisitedBefore(center, after, i)) {
+						visitor.accept(this.interfaces[i]);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns true if the first interface comes before the second one
+	 * when the 3x3 block of cells around the center cell is iterated
+	 */
+	private boolean isVisitedBefore(int center, int first, int second) {
+		int p1 = blockPosition(center, this.cellOf[first]);
+		int p2 = blockPosition(center, this.cellOf[second]);
+		return p1 < p2 ||
+			(p1 == p2 && this.appendNr[first] < this.appendNr[second]);
+	}
+
+	/**
+	 * Returns the position (0-8, row by row) of a cell in the 3x3 block of
+	 * cells around the center cell, or -1 if the cell isn't in the block
+	 */
+	private int blockPosition(int center, int cell) {
+		int stride = this.cols + 2;
+		int dRow = cell / stride - center / stride;
+		int dCol = cell % stride - center % stride;
+		if (dRow < -1 || dRow > 1 || dCol < -1 || dCol > 1) {
+			return -1;
+		}
+		return (dRow + 1) * 3 + dCol + 1;
+	}
+
+	/**
+	 * Returns the cell size: an interface outside the 3x3 block of cells
+	 * around another one is at least one full cell away from it.
+	 * @return The cell size
+	 */
+	@Override
+	public double getNearDistance() {
+		return this.cellSize;
+	}
+
+	/**
+	 * Returns all interfaces that use the same technology and channel, in
+	 * the order they were added
+	 */
+	public Collection<NetworkInterface> getAllInterfaces() {
+		List<NetworkInterface> all = new ArrayList<NetworkInterface>(size);
+		for (int i = 0; i < this.size; i++) {
+			if (this.interfaces[i] != null) {
+				all.add(this.interfaces[i]);
+			}
+		}
+		return all;
+	}
+
+	/**
+	 * Returns true if the interface is in this grid
+	 */
+	private boolean contains(NetworkInterface ni) {
+		int index = ni.getOptimizerIndex();
+		return index >= 0 && index < this.size &&
+			this.interfaces[index] == ni;
+	}
+
+	/**
+	 * Returns the index of the cell having the specific coordinates
+	 */
+	private int cellIndex(double x, double y) {
+		// +1 due empty cells on both sides of the matrix
+		int row = (int)(y/cellSize) + 1;
+		int col = (int)(x/cellSize) + 1;
+
+		assert row > 0 && row <= rows && col > 0 && col <= cols : "Location (" +
+			x + "," + y + ") is out of world's bounds";
+
+		return row * (this.cols + 2) + col;
+	}
+
+	/**
+	 * Puts an interface last in a cell
+	 */
+	private void append(int index, int cell) {
+		int tail = this.last[cell];
+		this.cellOf[index] = cell;
+		this.appendNr[index] = this.appends++;
+		this.prev[index] = tail;
+		this.next[index] = NONE;
+		if (tail == NONE) {
+			this.first[cell] = index;
+		}
+		else {
+			this.next[tail] = index;
+		}
+		this.last[cell] = index;
+	}
+
+	/**
+	 * Removes an interface from its cell
+	 */
+	private void unlink(int index) {
+		int cell = this.cellOf[index];
+		int p = this.prev[index];
+		int n = this.next[index];
+		if (p == NONE) {
+			this.first[cell] = n;
+		}
+		else {
+			this.next[p] = n;
+		}
+		if (n == NONE) {
+			this.last[cell] = p;
+		}
+		else {
+			this.prev[n] = p;
+		}
+	}
+
+	/**
+	 * Returns a string representation of the grid
+	 * @return a string representation of the grid
+	 */
+	public String toString() {
+		return getClass().getSimpleName() + " of size " +
+			this.cols + "x" + this.rows + ", cell size=" + this.cellSize;
+	}
+}
@@ -0,0 +1,17 @@
+package kem;
+
+import java.security.SecureRandom;
+
+/**
+ * Randomness from a {@link SecureRandom}, sampled in bulk: one buffer of
+ * random bytes per coefficient array.
+ */
+public class BulkRandomSource extends RandomSource {
+
+    private final SecureRandom random = new SecureRandom();
+
+    @Override
+    public void nextBytes(byte[] bytes) {
+        random.nextBytes(bytes);
+    }
+}
@@ -13,16 +13,22 @@ public class Kem {
 
 
     public static KeyPair keygen() {
+        return keygen(Rng.getDefault());
+    }
+
+    public static KeyPair keygen(RandomSource rng) {
+        Scratch s = Scratch.get();
         Poly a = new Poly();
-        Rng.randomInt(a.getCoeffs());
+        rng.randomInt(a.getCoeffs());
 
         Poly r1, r2;
-        r1 = new Poly();
+        r1 = s.t0;
         r2 = new Poly();
-        Rng.sampleNoise(r1.getCoeffs());
-        Rng.sampleNoise(r2.getCoeffs());
+        rng.sampleNoise(r1.getCoeffs());
+        rng.sampleNoise(r2.getCoeffs());
 
-        Poly p = Poly.sub(r1, a.mult(r2));
+        Poly p = Poly.multInto(a, r2, new Poly());
+        Poly.subInto(r1, p, p);
 
         KemPublicKey pk = new KemPublicKey(a, p);
         KemPrivateKey sk = new KemPrivateKey(r2);
@@ -30,20 +36,27 @@ public class Kem {
     }
 
     public static CipherText encapsulate(KemPublicKey pk, int[] m) {
+        return encapsulate(pk, m, Rng.getDefault());
+    }
+
+    public static CipherText encapsulate(KemPublicKey pk, int[] m, RandomSource rng) {
+        Scratch s = Scratch.get();
         Poly a = pk.getA();
         Poly p = pk.getP();
 
-        Poly mhat = new Poly(m);
+        Poly mhat = Poly.encodeInto(m, s.t0);
         Poly e1, e2, e3;
-        e1 = new Poly();
-        e2 = new Poly();
-        e3 = new Poly();
-        Rng.sampleNoise(e1.getCoeffs());
-        Rng.sampleNoise(e2.getCoeffs());
-        Rng.sampleNoise(e3.getCoeffs());
+        e1 = s.t1;
+        e2 = s.t2;
+        e3 = s.t3;
+        rng.sampleNoise(e1.getCoeffs());
+        rng.sampleNoise(e2.getCoeffs());
+        rng.sampleNoise(e3.getCoeffs());
 
-        Poly c1 = Poly.add(Poly.mult(a, e1), e2);
-        Poly c2 = Poly.add(Poly.mult(p, e1), e3.add(mhat));
+        Poly c1 = Poly.multInto(a, e1, new Poly());
+        Poly.addInto(c1, e2, c1);
+        Poly c2 = Poly.multInto(p, e1, new Poly());
+        Poly.addInto(c2, Poly.addInto(e3, mhat, e3), c2);
 
         return new CipherText(c1, c2);
         
@@ -53,7 +66,8 @@ public class Kem {
         Poly c1 = ct.getC1();
         Poly c2 = ct.getC2();
 
-        Poly mhat1 = Poly.mult(c1, r2).add(c2);
+        Poly mhat1 = Poly.multInto(c1, r2, Scratch.get().t0);
+        Poly.addInto(mhat1, c2, mhat1);
 
         return Utils.recon(mhat1);
     }
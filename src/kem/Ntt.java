@@ -0,0 +1,133 @@
+package kem;
+
+/**
+ * Number theoretic transform over Z_Q[x]/(x^N + 1) for the KEM ring
+ * (N = 256, Q = 12289). All coefficients are kept in canonical form [0, Q)
+ * so that products computed through the transform are identical to the
+ * schoolbook ones.
+ */
+public class Ntt {
+
+    public static final int MONT_BITS = 16;
+    public static final int MONT_MASK = (1 << MONT_BITS) - 1;
+    /** -Q^(-1) mod 2^16 */
+    public static final int QINV = computeQinv();
+
+    /** psi^brv(k) * 2^16 mod Q, psi being a primitive 2N-th root of unity */
+    static final int[] zetas = new int[Kem.N];
+    /** psi^(-brv(k)) * 2^16 mod Q */
+    static final int[] zetasInv = new int[Kem.N];
+    /** N^(-1) * 2^32 mod Q, undoes the 2^(-16) of the pointwise product too */
+    static final int F;
+
+    static {
+        int psi = pow(primitiveRoot(), (Kem.Q - 1) / (2 * Kem.N));
+        int psiInv = pow(psi, Kem.Q - 2);
+        int r = (1 << MONT_BITS) % Kem.Q;
+        int bits = Integer.numberOfTrailingZeros(Kem.N);
+
+        for (int k = 1; k < Kem.N; k++) {
+            int brv = Integer.reverse(k) >>> (32 - bits);
+            zetas[k] = (int) ((long) pow(psi, brv) * r % Kem.Q);
+            zetasInv[k] = (int) ((long) pow(psiInv, brv) * r % Kem.Q);
+        }
+        int nInv = pow(Kem.N, Kem.Q - 2);
+        F = (int) ((long) nInv * r % Kem.Q * r % Kem.Q);
+    }
+
+    /**
+     * Forward transform in place (Cooley-Tukey, bit-reversed output).
+     * @param r Coefficients in [0, Q)
+     */
+    public static void ntt(int[] r) {
+        int k = 0;
+        for (int len = Kem.N / 2; len > 0; len >>= 1) {
+            for (int start = 0; start < Kem.N; start += 2 * len) {
+                int zeta = zetas[++k];
+                for (int j = start; j < start + len; j++) {
+                    int t = montgomeryReduce(zeta * r[j + len]);
+                    r[j + len] = csubq(r[j] - t + Kem.Q);
+                    r[j] = csubq(r[j] + t);
+                }
+            }
+        }
+    }
+
+    /**
+     * Inverse transform in place (Gentleman-Sande), including the 1/N
+     * scaling and removal of one Montgomery factor left by
+     * {@link #pointwise(int[], int[], int[])}.
+     * @param r Transformed coefficients in [0, Q)
+     */
+    public static void invntt(int[] r) {
+        for (int len = 1; len < Kem.N; len <<= 1) {
+            for (int start = 0; start < Kem.N; start += 2 * len) {
+                int zeta = zetasInv[Kem.N / (2 * len) + start / (2 * len)];
+                for (int j = start; j < start + len; j++) {
+                    int t = r[j];
+                    r[j] = csubq(t + r[j + len]);
+                    r[j + len] = montgomeryReduce(zeta * (t - r[j + len] + Kem.Q));
+                }
+            }
+        }
+
+        for (int j = 0; j < Kem.N; j++) {
+            r[j] = montgomeryReduce(F * r[j]);
+        }
+    }
+
+    /**
+     * Pointwise product of two transformed polynomials; the result carries
+     * an extra 2^(-16) factor that {@link #invntt(int[])} removes.
+     */
+    public static void pointwise(int[] a, int[] b, int[] result) {
+        for (int i = 0; i < Kem.N; i++) {
+            result[i] = montgomeryReduce(a[i] * b[i]);
+        }
+    }
+
+    /**
+     * Montgomery reduction for 0 <= a < Q * 2^16.
+     * @return a * 2^(-16) mod Q in [0, Q)
+     */
+    public static int montgomeryReduce(int a) {
+        int u = (a * QINV) & MONT_MASK;
+        return csubq((a + u * Kem.Q) >>> MONT_BITS);
+    }
+
+    private static int csubq(int a) {
+        a -= Kem.Q;
+        return a + ((a >> 31) & Kem.Q);
+    }
+
+    private static int computeQinv() {
+        int inv = 1;
+        for (int i = 0; i < 4; i++) {
+            inv *= 2 - Kem.Q * inv; // Newton iteration, doubles correct bits
+        }
+        return (-inv) & MONT_MASK;
+    }
+
+    private static int primitiveRoot() {
+        int phi = Kem.Q - 1; // 2^12 * 3
+        for (int g = 2; g < Kem.Q; g++) {
+            if (pow(g, phi / 2) != 1 && pow(g, phi / 3) != 1) {
+                return g;
+            }
+        }
+        throw new IllegalStateException("No primitive root mod " + Kem.Q);
+    }
+
+    private static int pow(int base, int exp) {
+        long result = 1;
+        long b = base % Kem.Q;
+        while (exp > 0) {
+            if ((exp & 1) != 0) {
+                result = result * b % Kem.Q;
+            }
+            b = b * b % Kem.Q;
+            exp >>= 1;
+        }
+        return (int) result;
+    }
+}
@@ -1,5 +1,6 @@
 package kem;
 
+import java.util.Arrays;
 
 public class Poly {
 
@@ -12,9 +13,7 @@ public class Poly {
 
     public Poly(int[] coeffs) {
         this.coeffs = new int[Kem.N];
-        for (int i = 0; i < Kem.N; i++) {
-            this.coeffs[i] = coeffs[i] == 1 ? Kem.Q2 : 0;
-        }
+        encodeInto(coeffs, this);
     }
 
 
@@ -27,49 +26,101 @@ public class Poly {
     }
 
 
-    // Add two polynomials
-    public static Poly add(Poly a, Poly b) {
-        Poly result = new Poly();
+    // Encode a binary message into dest, 1 -> Q/2 and 0 -> 0
+    public static Poly encodeInto(int[] m, Poly dest) {
         for (int i = 0; i < Kem.N; i++) {
-            result.coeffs[i] = reduce(a.coeffs[i] + b.coeffs[i]);
+            dest.coeffs[i] = m[i] == 1 ? Kem.Q2 : 0;
         }
-        return result;
+        return dest;
+    }
+
+
+    // Add two polynomials
+    public static Poly add(Poly a, Poly b) {
+        return addInto(a, b, new Poly());
     }
 
     public Poly add(Poly b) {
         return add(this, b);
     }
 
+    // Add two polynomials into dest, which may be a or b
+    public static Poly addInto(Poly a, Poly b, Poly dest) {
+        for (int i = 0; i < Kem.N; i++) {
+            dest.coeffs[i] = reduce(a.coeffs[i] + b.coeffs[i]);
+        }
+        return dest;
+    }
+
 
     // Subtract two polynomials
     public static Poly sub(Poly a, Poly b) {
-        Poly result = new Poly();
-        for (int i = 0; i < Kem.N; i++) {
-            result.coeffs[i] = reduce(a.coeffs[i] - b.coeffs[i]);
-        }
-        return result;
+        return subInto(a, b, new Poly());
     }
     public Poly sub(Poly b) {
         return sub(this, b);
     }
 
+    // Subtract two polynomials into dest, which may be a or b
+    public static Poly subInto(Poly a, Poly b, Poly dest) {
+        for (int i = 0; i < Kem.N; i++) {
+            dest.coeffs[i] = reduce(a.coeffs[i] - b.coeffs[i]);
+        }
+        return dest;
+    }
+
 
-    // Multiply two polynomials
+    // Multiply two polynomials. Only whether a coefficient of b is non-zero
+    // matters, b is a noise polynomial with coefficients in {0, 1}.
     public static Poly mult(Poly a, Poly b) {
-        Poly result = new Poly();
+        return multInto(a, b, new Poly());
+    }
+    
+    public Poly mult(Poly b) {
+        return mult(this, b);
+    }
+
+    // Multiply two polynomials into dest, which may be a or b
+    public static Poly multInto(Poly a, Poly b, Poly dest) {
+        Scratch s = Scratch.get();
+        int[] ahat = s.ahat;
+        int[] bhat = s.bhat;
+        System.arraycopy(a.coeffs, 0, ahat, 0, Kem.N);
+        for (int i = 0; i < Kem.N; i++) {
+            bhat[i] = b.coeffs[i] == 0 ? 0 : 1;
+        }
+
+        if (!isReduced(a)) {
+            multSchoolbook(ahat, bhat, dest.coeffs);
+            return dest;
+        }
+        Ntt.ntt(ahat);
+        Ntt.ntt(bhat);
+        Ntt.pointwise(ahat, bhat, dest.coeffs);
+        Ntt.invntt(dest.coeffs);
+        return dest;
+    }
+
+    // Reference O(N^2) multiplication, used when a is not reduced
+    private static void multSchoolbook(int[] a, int[] b, int[] result) {
+        Arrays.fill(result, 0);
         for (int i = 0; i < Kem.N; i++) {
-            if (b.coeffs[i] == 0) continue;
+            if (b[i] == 0) continue;
             for (int j = 0; j < Kem.N; j++) {
                 int k = (i + j) >= Kem.N ? (i + j - Kem.N) : (i + j);
                 int sign = ((i + j) >= Kem.N) ? -1 : 1;
-                result.coeffs[k] = reduce(result.coeffs[k] + sign * a.coeffs[j]);
+                result[k] = reduce(result[k] + sign * a[j]);
             }
         }
-        return result;
     }
-    
-    public Poly mult(Poly b) {
-        return mult(this, b);
+
+    private static boolean isReduced(Poly a) {
+        for (int i = 0; i < Kem.N; i++) {
+            if (a.coeffs[i] < 0 || a.coeffs[i] >= Kem.Q) {
+                return false;
+            }
+        }
+        return true;
     }
 
     public static int reduce(int x) {
@@ -0,0 +1,61 @@
+package kem;
+
+/**
+ * Source of randomness for the KEM. The default sampling draws whole
+ * buffers of random bytes and unpacks the coefficients from them instead
+ * of drawing one value per coefficient. Instances keep a work buffer and
+ * are not thread safe; use one source per host.
+ */
+public abstract class RandomSource {
+
+    /** Rejection sampling candidates are 14 bits, 2^14 > Q */
+    private static final int CANDIDATE_MASK = (1 << 14) - 1;
+
+    private final byte[] buf = new byte[2 * Kem.N];
+    private final byte[] noiseBuf = new byte[Kem.N / 8];
+
+    /**
+     * Fills the whole array with random bytes.
+     */
+    public abstract void nextBytes(byte[] bytes);
+
+    /**
+     * Fills coeffs with uniformly random values in [0, Q).
+     */
+    public void randomInt(int[] coeffs) {
+        int ctr = 0;
+        while (ctr < coeffs.length) {
+            nextBytes(buf);
+            for (int pos = 0; pos + 1 < buf.length && ctr < coeffs.length; pos += 2) {
+                int t = ((buf[pos] & 0xFF) | ((buf[pos + 1] & 0xFF) << 8)) & CANDIDATE_MASK;
+                if (t < Kem.Q) {
+                    coeffs[ctr++] = t;
+                }
+            }
+        }
+    }
+
+    /**
+     * Fills coeffs with uniformly random values in {0, 1}, eight
+     * coefficients per random byte.
+     */
+    public void sampleNoise(int[] coeffs) {
+        int ctr = 0;
+        while (ctr < coeffs.length) {
+            nextBytes(noiseBuf);
+            for (int i = 0; i < 8 * noiseBuf.length && ctr < coeffs.length; i++) {
+                coeffs[ctr++] = (noiseBuf[i >> 3] >> (i & 7)) & 1;
+            }
+        }
+    }
+
+    /**
+     * Returns a new array of random bytes, e.g. for seeding key generation
+     * of other primitives.
+     */
+    public byte[] nextSeed(int length) {
+        byte[] seed = new byte[length];
+        nextBytes(seed);
+        return seed;
+    }
+}
@@ -1,24 +1,50 @@
 package kem;
 
-import java.security.SecureRandom;
-
 
 public class Rng {
-    
+
+    /** Mode for one {@link SecureRandomSource} value per coefficient */
+    public static final String MODE_SECURE = "secure";
+    /** Mode for {@link BulkRandomSource} buffers of SecureRandom bytes */
+    public static final String MODE_BULK = "bulk";
+    /** Mode for deterministic, seeded {@link ShakeRandomSource} streams */
+    public static final String MODE_SEEDED = "seeded";
+
+    private static final RandomSource defaultSource = new SecureRandomSource();
+
     public static void randomInt(int[] coeffs) {
-        SecureRandom random = new SecureRandom();
-        for (int i = 0; i < coeffs.length; i++) {
-            coeffs[i] = random.nextInt(Kem.Q);
-        }
+        defaultSource.randomInt(coeffs);
     }
 
     public static void sampleNoise(int[] coeffs) {
-        SecureRandom random = new SecureRandom();
-        for (int i = 0; i < coeffs.length; i++) {
-            coeffs[i] = random.nextInt(2);
-        }
+        defaultSource.sampleNoise(coeffs);
     }
 
+    /**
+     * Returns the shared, thread safe SecureRandom based source.
+     */
+    public static RandomSource getDefault() {
+        return defaultSource;
+    }
 
+    /**
+     * Creates a randomness source.
+     * @param mode One of {@link #MODE_SECURE}, {@link #MODE_BULK} or
+     * {@link #MODE_SEEDED}
+     * @param seed Seed of the seeded mode
+     * @param stream Stream number of the seeded mode, sources with different
+     * stream numbers are independent
+     * @throws IllegalArgumentException for an unknown mode
+     */
+    public static RandomSource create(String mode, long seed, int stream) {
+        if (MODE_SECURE.equals(mode)) {
+            return new SecureRandomSource();
+        } else if (MODE_BULK.equals(mode)) {
+            return new BulkRandomSource();
+        } else if (MODE_SEEDED.equals(mode)) {
+            return new ShakeRandomSource(seed, stream);
+        }
+        throw new IllegalArgumentException("Unknown randomness mode: " + mode);
+    }
 
 }
@@ -0,0 +1,27 @@
+package kem;
+
+/**
+ * Per-thread temporaries for the KEM so that steady state key exchange
+ * does not allocate intermediate polynomials.
+ */
+final class Scratch {
+
+    private static final ThreadLocal<Scratch> LOCAL = ThreadLocal.withInitial(Scratch::new);
+
+    /** NTT work arrays of {@link Poly#multInto(Poly, Poly, Poly)} */
+    final int[] ahat = new int[Kem.N];
+    final int[] bhat = new int[Kem.N];
+
+    /** Temporaries for {@link Kem}; never passed outside of it */
+    final Poly t0 = new Poly();
+    final Poly t1 = new Poly();
+    final Poly t2 = new Poly();
+    final Poly t3 = new Poly();
+
+    private Scratch() {
+    }
+
+    static Scratch get() {
+        return LOCAL.get();
+    }
+}
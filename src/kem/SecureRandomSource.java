@@ -0,0 +1,31 @@
+package kem;
+
+import java.security.SecureRandom;
+
+/**
+ * Randomness from a single, reused {@link SecureRandom} drawing one value
+ * per coefficient. Thread safe.
+ */
+public class SecureRandomSource extends RandomSource {
+
+    private final SecureRandom random = new SecureRandom();
+
+    @Override
+    public void nextBytes(byte[] bytes) {
+        random.nextBytes(bytes);
+    }
+
+    @Override
+    public void randomInt(int[] coeffs) {
+        for (int i = 0; i < coeffs.length; i++) {
+            coeffs[i] = random.nextInt(Kem.Q);
+        }
+    }
+
+    @Override
+    public void sampleNoise(int[] coeffs) {
+        for (int i = 0; i < coeffs.length; i++) {
+            coeffs[i] = random.nextInt(2);
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package kem;
+
+import org.bouncycastle.crypto.digests.SHAKEDigest;
+
+/**
+ * Deterministic randomness: a SHAKE128 stream keyed with a seed and a
+ * stream number (e.g. the host address) so that runs with the same seed
+ * draw exactly the same values.
+ */
+public class ShakeRandomSource extends RandomSource {
+
+    private final SHAKEDigest shake = new SHAKEDigest(128);
+
+    public ShakeRandomSource(long seed, int stream) {
+        byte[] in = new byte[12];
+        for (int i = 0; i < 8; i++) {
+            in[i] = (byte) (seed >>> (8 * i));
+        }
+        for (int i = 0; i < 4; i++) {
+            in[8 + i] = (byte) (stream >>> (8 * i));
+        }
+        shake.update(in, 0, in.length);
+    }
+
+    @Override
+    public void nextBytes(byte[] bytes) {
+        shake.doOutput(bytes, 0, bytes.length);
+    }
+}
@@ -4,8 +4,10 @@
  */
 package movement;
 
+import input.BinaryMovementReader;
 import input.ExternalMovementReader;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
@@ -29,18 +31,33 @@ public class ExternalMovement extends MovementModel {
 	public static final String MOVEMENT_FILE_S = "file";
 	/** number of preloaded intervals per preload run -setting id ({@value})*/
 	public static final String NROF_PRELOAD_S = "nrofPreload";
+	/** number of time instances to read ahead in a background thread
+	 * -setting id ({@value}). Default is 0 (no background reading). */
+	public static final String NROF_PREFETCH_S = "nrofPrefetch";
+	/** time of the location data where the simulation starts -setting id
+	 * ({@value}). Default is 0 (the beginning of the data). */
+	public static final String START_TIME_S = "startTime";
 
 	/** default initial location for excess nodes */
 	private static final Coord DEF_INIT_LOC = new Coord(0,0);
 	private static ExternalMovementReader reader;
+	/** reader for binary location data (null if the data is text) */
+	private static BinaryMovementReader binaryReader;
 	private static String inputFileName;
 
 	/** mapping of external id to movement model */
 	private static Map<String, ExternalMovement> idMapping;
+	/** movement models by the ID indexes of binary location data */
+	private static ExternalMovement[] idModels;
 	/** initial locations for nodes */
 	private static List<Tuple<String, Coord>> initLocations;
 	/** time of the very first location data */
 	private static double initTime;
+	/** time of the location data that is simulation time 0 */
+	private static double startTime;
+	/** size of the area of the location data */
+	private static int maxX;
+	private static int maxY;
 	/** sampling interval (seconds) of the location data */
 	private static double samplingInterval;
 	/** last read time stamp after preloading */
@@ -82,10 +99,36 @@ public class ExternalMovement extends MovementModel {
 			Settings s = new Settings(EXTERNAL_MOVEMENT_NS);
 			idMapping = new HashMap<String, ExternalMovement>();
 			inputFileName = s.getSetting(MOVEMENT_FILE_S);
-			reader = new ExternalMovementReader(inputFileName);
+			startTime = s.getDouble(START_TIME_S, 0);
+			idModels = null;
+
+			if (inputFileName.endsWith(BinaryMovementReader.BINARY_EXT)) {
+				reader = null;
+				binaryReader = new BinaryMovementReader(inputFileName);
+				binaryReader.seek(startTime);
+				initLocations = readBinaryLocations();
+				initTime = binaryReader.getLastTimeStamp() - startTime;
+				maxX = (int)(binaryReader.getMaxX() -
+						binaryReader.getMinX()) + 1;
+				maxY = (int)(binaryReader.getMaxY() -
+						binaryReader.getMinY()) + 1;
+			}
+			else {
+				binaryReader = null;
+				reader = new ExternalMovementReader(inputFileName);
+				if (s.getInt(NROF_PREFETCH_S, 0) > 0) {
+					reader.startPrefetching(s.getInt(NROF_PREFETCH_S));
+				}
 
-			initLocations = reader.readNextMovements();
-			initTime = reader.getLastTimeStamp();
+				initLocations = reader.readNextMovements();
+				while (initLocations.size() > 0 &&
+						reader.getLastTimeStamp() < startTime) {
+					initLocations = reader.readNextMovements();
+				}
+				initTime = reader.getLastTimeStamp() - startTime;
+				maxX = (int)(reader.getMaxX() - reader.getMinX()) + 1;
+				maxY = (int)(reader.getMaxY() - reader.getMinY()) + 1;
+			}
 			samplingInterval = -1;
 			lastPreloadTime = -1;
 
@@ -224,12 +267,12 @@ public class ExternalMovement extends MovementModel {
 
 	@Override
 	public int getMaxX() {
-		return (int)(reader.getMaxX() - reader.getMinX()) + 1;
+		return maxX;
 	}
 
 	@Override
 	public int getMaxY() {
-		return (int)(reader.getMaxY() - reader.getMinY()) + 1;
+		return maxY;
 	}
 
 
@@ -244,8 +287,12 @@ public class ExternalMovement extends MovementModel {
 	 * were read.
 	 */
 	private static double readMorePaths() {
+		if (binaryReader != null) {
+			return readMoreBinaryPaths();
+		}
+
 		List<Tuple<String, Coord>> list = reader.readNextMovements();
-		double time = reader.getLastTimeStamp();
+		double time = reader.getLastTimeStamp() - startTime;
 
 		if (samplingInterval == -1) {
 			samplingInterval = time - initTime;
@@ -267,11 +314,70 @@ public class ExternalMovement extends MovementModel {
 		}
 	}
 
+	/**
+	 * Reads paths for the next time instance from the binary reader
+	 * @return The time stamp of the reading or Double.NaN if no movements
+	 * were read.
+	 */
+	private static double readMoreBinaryPaths() {
+		int n = binaryReader.readNextSlice();
+		double time = binaryReader.getLastTimeStamp() - startTime;
+
+		if (samplingInterval == -1) {
+			samplingInterval = time - initTime;
+		}
+
+		if (idModels == null) {
+			idModels = new ExternalMovement[binaryReader.getNrofIds()];
+			for (int i = 0; i < idModels.length; i++) {
+				idModels[i] = idMapping.get(binaryReader.getId(i));
+			}
+		}
+
+		int[] ids = binaryReader.getIdIndexes();
+		double[] xs = binaryReader.getXs();
+		double[] ys = binaryReader.getYs();
+		for (int i = 0; i < n; i++) {
+			ExternalMovement em = idModels[ids[i]];
+			if (em != null) { // skip IDs that have no node
+				em.addLocation(new Coord(xs[i], ys[i]), time);
+			}
+		}
+
+		if (n > 0) {
+			return time;
+		}
+		else {
+			return Double.NaN;
+		}
+	}
+
+	/**
+	 * Reads the locations of the first time instance from the binary reader
+	 * @return ID-location tuples of the time instance
+	 */
+	private static List<Tuple<String, Coord>> readBinaryLocations() {
+		int n = binaryReader.readNextSlice();
+		List<Tuple<String, Coord>> list =
+			new ArrayList<Tuple<String, Coord>>(n);
+		for (int i = 0; i < n; i++) {
+			list.add(new Tuple<String, Coord>(binaryReader.getId(
+					binaryReader.getIdIndexes()[i]), new Coord(
+					binaryReader.getXs()[i], binaryReader.getYs()[i])));
+		}
+		return list;
+	}
+
 	/**
 	 * Reset state so that next instance will have a fresh state
 	 */
 	public static void reset() {
 		idMapping = null;
+		idModels = null;
+		if (binaryReader != null) {
+			binaryReader.close();
+			binaryReader = null;
+		}
 	}
 
 }
@@ -172,6 +172,11 @@ public class LinearMovement extends MovementModel {
 	}
 
 
+	@Override
+	public boolean isParallelSafe() {
+		return true;
+	}
+
 	@Override
 	public LinearMovement replicate() {
 		return new LinearMovement(this);
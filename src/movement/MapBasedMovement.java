@@ -249,6 +249,15 @@ public class MapBasedMovement extends MovementModel implements SwitchableMovemen
 		return n;
 	}
 
+	/**
+	 * Returns true for plain map based movement. Subclasses that keep
+	 * shared state must not inherit this, so the check is by class.
+	 */
+	@Override
+	public boolean isParallelSafe() {
+		return getClass() == MapBasedMovement.class;
+	}
+
 	/**
 	 * Returns the SimMap this movement model uses
 	 * @return The SimMap this movement model uses
@@ -44,9 +44,23 @@ public abstract class MovementModel {
 	public static final String WORLD_SIZE = "worldSize";
 	/** movement models' rng seed -setting id ({@value})*/
 	public static final String RNG_SEED = "rngSeed";
+	/** per-host rng streams -setting id ({@value}). Boolean (default =
+	 * false). If true, every host's movement model draws from its own
+	 * random number generator, seeded from {@link #RNG_SEED} and the host's
+	 * address, instead of the one shared by all movement models. This is
+	 * required for moving hosts concurrently. */
+	public static final String HOST_RNG_STREAMS_S = "hostRngStreams";
 
 	/** common rng for all movement models in the simulation */
-	protected static Random rng;
+	private static Random sharedRng;
+	/** seed of the common rng (and base seed of per-host streams) */
+	private static long rngSeed;
+	/** are per-host rng streams in use */
+	private static boolean hostRngStreams;
+
+	/** rng of this movement model; the common rng unless per-host streams
+	 * are in use */
+	protected Random rng = sharedRng;
 
 	/** DTNHost to which this movement model is attached */
 	protected DTNHost host;
@@ -221,6 +235,66 @@ public abstract class MovementModel {
 	 */
 	public void setHost(DTNHost host) {
 		this.host = host;
+		if (hostRngStreams) {
+			this.rng = new Random(streamSeed(rngSeed, host.getAddress()));
+		}
+	}
+
+	/**
+	 * Returns true if hosts using this model can be moved concurrently with
+	 * other hosts, i.e., if {@link #getPath()}, {@link #nextPathAvailable()}
+	 * and {@link #isActive()} only touch this model's own state, its own
+	 * {@link #rng} and shared data that is never modified. This
+	 * implementation returns false; models that qualify override it.
+	 * @return true if the model can be moved concurrently
+	 */
+	public boolean isParallelSafe() {
+		return false;
+	}
+
+	/**
+	 * Returns true if the host of this model can be moved concurrently with
+	 * other hosts: the model must be {@link #isParallelSafe() parallel safe},
+	 * it must draw from a per-host rng stream and its activeness must not
+	 * depend on the group's shared active times queue.
+	 * @return true if the host can be moved concurrently
+	 */
+	public final boolean canMoveConcurrently() {
+		return hostRngStreams && isParallelSafe() &&
+			(ah == null || !ah.hasActiveTimes());
+	}
+
+	/**
+	 * Returns true if per-host rng streams are in use
+	 * (see {@link #HOST_RNG_STREAMS_S})
+	 * @return true if per-host rng streams are in use
+	 */
+	public static boolean usesHostRngStreams() {
+		return hostRngStreams;
+	}
+
+	/**
+	 * Derives the seed of a host's rng stream from the common seed and the
+	 * host's address (SplitMix64 finalizer, so neighbouring addresses get
+	 * unrelated streams).
+	 * @param seed The common seed
+	 * @param address Address of the host
+	 * @return Seed for the host's stream
+	 */
+	private static long streamSeed(long seed, int address) {
+		long z = seed + (address + 1) * 0x9E3779B97F4A7C15L;
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+
+	/**
+	 * Returns the maximum speed of the speed setting. Models that don't
+	 * use the setting may move faster.
+	 * @return The maximum speed (m/s)
+	 */
+	public double getMaxSpeed() {
+		return this.maxSpeed;
 	}
 
 	/**
@@ -277,12 +351,13 @@ public abstract class MovementModel {
 	public static void reset() {
 		Settings s = new Settings(MOVEMENT_MODEL_NS);
 		if (s.contains(RNG_SEED)) {
-			int seed = s.getInt(RNG_SEED);
-			rng = new Random(seed);
+			rngSeed = s.getInt(RNG_SEED);
 		}
 		else {
-			rng = new Random(0);
+			rngSeed = 0;
 		}
+		sharedRng = new Random(rngSeed);
+		hostRngStreams = s.getBoolean(HOST_RNG_STREAMS_S, false);
 	}
 
 }
@@ -76,6 +76,11 @@ public class RandomWalk extends MovementModel implements SwitchableMovement {
 		return p;
 	}
 
+	@Override
+	public boolean isParallelSafe() {
+		return true;
+	}
+
 	@Override
 	public RandomWalk replicate() {
 		return new RandomWalk(this);
@@ -53,6 +53,11 @@ public class RandomWaypoint extends MovementModel {
 		return p;
 	}
 
+	@Override
+	public boolean isParallelSafe() {
+		return true;
+	}
+
 	@Override
 	public RandomWaypoint replicate() {
 		return new RandomWaypoint(this);
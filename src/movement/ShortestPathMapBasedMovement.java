@@ -41,14 +41,15 @@ public class ShortestPathMapBasedMovement extends MapBasedMovement implements
 	 */
 	protected ShortestPathMapBasedMovement(ShortestPathMapBasedMovement mbm) {
 		super(mbm);
-		this.pathFinder = mbm.pathFinder;
+		/* own finder: its search state is kept in fields */
+		this.pathFinder = new DijkstraPathFinder(getOkMapNodeTypes());
 		this.pois = mbm.pois;
 	}
 
 	@Override
 	public Path getPath() {
 		Path p = new Path(generateSpeed());
-		MapNode to = pois.selectDestination();
+		MapNode to = pois.selectDestination(rng);
 
 		List<MapNode> nodePath = pathFinder.getShortestPath(lastMapNode, to);
 
@@ -65,6 +66,11 @@ public class ShortestPathMapBasedMovement extends MapBasedMovement implements
 		return p;
 	}
 
+	@Override
+	public boolean isParallelSafe() {
+		return getClass() == ShortestPathMapBasedMovement.class;
+	}
+
 	@Override
 	public ShortestPathMapBasedMovement replicate() {
 		return new ShortestPathMapBasedMovement(this);
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package report;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import core.DTNHost;
+import core.Message;
+import core.MessageListener;
+
+/**
+ * Reports how many times routers rejected a message only because the
+ * compact part of their message history (see
+ * {@link routing.MessageRouter#HISTORY_SIZE_S}) claimed they had already
+ * received it. With a Bloom filter history some of these rejections are
+ * false positives.
+ */
+public class HistoryFilterReport extends Report implements MessageListener {
+	public static final String HEADER = "History Filter Report\n";
+
+	private int nrofRejections;
+	/** IDs of the messages that were rejected at least once */
+	private Set<String> rejectedIds;
+
+	/**
+	 * Constructor.
+	 */
+	public HistoryFilterReport() {
+		init();
+	}
+
+	@Override
+	public void init() {
+		super.init();
+		this.nrofRejections = 0;
+		this.rejectedIds = new HashSet<String>();
+		write(HEADER);
+	}
+
+	/**
+	 * Informs the report that a router rejected a message because the
+	 * compact message history matched the message
+	 * @param m The message
+	 * @param from The host that tried to send the message
+	 * @param to The host that rejected the message
+	 */
+	public void historyFilterRejection(Message m, DTNHost from, DTNHost to) {
+		if (isWarmupID(m.getId())) {
+			return;
+		}
+		this.nrofRejections++;
+		this.rejectedIds.add(m.getId());
+	}
+
+	@Override
+	public void done() {
+		write("History filter rejections: " + this.nrofRejections);
+		write("Rejected messages: " + this.rejectedIds.size());
+		super.done();
+	}
+
+	public void newMessage(Message m) {
+		if (isWarmup()) {
+			addWarmupID(m.getId());
+		}
+	}
+
+	public void messageTransferStarted(Message m, DTNHost from, DTNHost to) {}
+	public void messageDeleted(Message m, DTNHost where, boolean dropped) {}
+	public void messageTransferAborted(Message m, DTNHost from, DTNHost to) {}
+	public void messageTransferred(Message m, DTNHost from, DTNHost to,
+			boolean firstDelivery) {}
+}
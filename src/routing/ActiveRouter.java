@@ -5,22 +5,28 @@
 package routing;
 
 import java.util.ArrayList;
-import java.util.Collection;
+import java.util.BitSet;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.NavigableSet;
 import java.util.Random;
 
 import routing.util.EnergyModel;
 import routing.util.MessageTransferAcceptPolicy;
 import routing.util.RoutingInfo;
+import util.IntHashMap;
 import util.Tuple;
 
 import core.Connection;
 import core.DTNHost;
 import core.Message;
 import core.MessageListener;
+import core.MessageProperty;
 import core.NetworkInterface;
 import core.Settings;
+import core.SettingsError;
 import core.SimClock;
 
 /**
@@ -36,6 +42,35 @@ public abstract class ActiveRouter extends MessageRouter {
 	/** should messages that final recipient marks as delivered be deleted
 	 * from message buffer */
 	protected boolean deleteDelivered;
+	/** Summary vector exchange -setting id ({@value}). Boolean valued.
+	 * If set to true, the hosts take a summary vector of the messages they
+	 * know (carry or have received as final recipients) when a connection
+	 * comes up and send it over the connection as a control message (see
+	 * {@link MessageRouter#CONTROL_PREFIX}). No messages are sent over the
+	 * connection before both vectors have been transferred, and then a
+	 * host is offered only the messages its vector didn't have.
+	 * Default=false. */
+	public static final String SUMMARY_VECTOR_S = "summaryVector";
+	/** Summary vector entry size -setting id ({@value}). Integer valued.
+	 * How many bytes one message takes in a summary vector.
+	 * Default={@value #DEF_SUMMARY_ENTRY_SIZE}. */
+	public static final String SUMMARY_ENTRY_SIZE_S = "summaryEntrySize";
+	/** Default summary vector entry size (bytes) */
+	public static final int DEF_SUMMARY_ENTRY_SIZE = 4;
+	/** are summary vectors exchanged */
+	private boolean summaryVector;
+	/** size of a summary vector entry (bytes) */
+	private int summaryEntrySize;
+	/** the summary vector exchanges of the connections (null if summary
+	 * vectors are not exchanged) */
+	private HashMap<Connection, SummaryOffer> summaryOffers;
+	/** ID of the summary vector messages (followed by host address) */
+	private static final String SUMMARY_VECTOR_ID =
+		CONTROL_PREFIX + "SummaryVector";
+	/** Message property of the keys in a summary vector. The sent bit sets
+	 * are not modified. */
+	private static final MessageProperty<BitSet> SUMMARY_VECTOR_PROPERTY =
+		MessageProperty.register("ActiveRouter.summaryVector", BitSet.class);
 
 	/** prefix of all response message IDs */
 	public static final String RESPONSE_PREFIX = "R_";
@@ -43,8 +78,14 @@ public abstract class ActiveRouter extends MessageRouter {
 	public static int TTL_CHECK_INTERVAL = 60;
 	/** connection(s) that are currently used for sending */
 	protected ArrayList<Connection> sendingConnections;
+	/** the connections that are sending the messages, by message key; the
+	 * messages being sent are excluded e.g. when making room in the buffer */
+	private IntHashMap<Connection> messagesBeingSent;
 	/** sim time when the last TTL check was done */
 	private double lastTtlCheck;
+	/** has a message, connection or transfer been added or removed since
+	 * the start of the last update */
+	private boolean changedSinceUpdate;
 
 	private MessageTransferAcceptPolicy policy;
 	protected EnergyModel energy;
@@ -60,6 +101,14 @@ public abstract class ActiveRouter extends MessageRouter {
 		this.policy = new MessageTransferAcceptPolicy(s);
 
 		this.deleteDelivered = s.getBoolean(DELETE_DELIVERED_S, false);
+		this.summaryVector = s.getBoolean(SUMMARY_VECTOR_S, false);
+		this.summaryEntrySize = s.getInt(SUMMARY_ENTRY_SIZE_S,
+				DEF_SUMMARY_ENTRY_SIZE);
+		if (this.summaryEntrySize < 0) {
+			throw new SettingsError("Invalid value for " +
+					s.getFullPropertyName(SUMMARY_ENTRY_SIZE_S) +
+					". Must be non-negative");
+		}
 
 		if (s.contains(EnergyModel.INIT_ENERGY_S)) {
 			this.energy = new EnergyModel(s);
@@ -75,6 +124,8 @@ public abstract class ActiveRouter extends MessageRouter {
 	protected ActiveRouter(ActiveRouter r) {
 		super(r);
 		this.deleteDelivered = r.deleteDelivered;
+		this.summaryVector = r.summaryVector;
+		this.summaryEntrySize = r.summaryEntrySize;
 		this.policy = r.policy;
 		this.energy = (r.energy != null ? r.energy.replicate() : null);
 	}
@@ -83,20 +134,130 @@ public abstract class ActiveRouter extends MessageRouter {
 	public void init(DTNHost host, List<MessageListener> mListeners) {
 		super.init(host, mListeners);
 		this.sendingConnections = new ArrayList<Connection>(1);
+		this.messagesBeingSent = new IntHashMap<Connection>();
 		this.lastTtlCheck = 0;
+		if (this.summaryVector) {
+			this.summaryOffers = new HashMap<Connection, SummaryOffer>();
+		}
 	}
 
 	/**
 	 * Called when a connection's state changes. If energy modeling is enabled,
 	 * and a new connection is created to this node, reduces the energy for the
-	 * device discovery (scan response) amount
+	 * device discovery (scan response) amount. If summary vectors are
+	 * exchanged, starts or forgets the summary vector exchange of the
+	 * connection.
 	 * @param con The connection whose state changed
 	 */
 	@Override
 	public void changedConnection(Connection con) {
+		this.changedSinceUpdate = true;
 		if (this.energy != null && con.isUp() && !con.isInitiator(getHost())) {
 			this.energy.reduceDiscoveryEnergy();
 		}
+
+		if (this.summaryOffers != null) {
+			if (con.isUp()) {
+				this.summaryOffers.put(con, new SummaryOffer(
+						usesSummaryVectors(con) ? getKnownMessageKeys() : null));
+			}
+			else {
+				this.summaryOffers.remove(con);
+			}
+		}
+	}
+
+	/**
+	 * Returns true if the router of the other host of a connection
+	 * exchanges summary vectors too. Messages are offered to other hosts
+	 * without a summary vector exchange.
+	 * @param con The connection
+	 * @return true if the other host exchanges summary vectors
+	 */
+	private boolean usesSummaryVectors(Connection con) {
+		MessageRouter peer = con.getOtherNode(getHost()).getRouter();
+		return peer instanceof ActiveRouter &&
+			((ActiveRouter)peer).summaryOffers != null;
+	}
+
+	/**
+	 * Starts the transfers of this host's summary vectors over the
+	 * connections that are free and have not transferred the vector yet
+	 */
+	private void sendSummaryVectors() {
+		List<Connection> connections = getConnections();
+		for (int i=0, n=connections.size(); i<n; i++) {
+			Connection con = connections.get(i);
+			SummaryOffer offer = this.summaryOffers.get(con);
+			if (offer == null || offer.vector == null || offer.sending ||
+					!con.isReadyForTransfer()) {
+				continue;
+			}
+
+			long size = (long)this.summaryEntrySize *
+				offer.vector.cardinality();
+			Message m = new Message(getHost(), con.getOtherNode(getHost()),
+					SUMMARY_VECTOR_ID + getHost().getAddress(),
+					(int)Math.min(size, Integer.MAX_VALUE));
+			m.addProperty(SUMMARY_VECTOR_PROPERTY, offer.vector);
+			if (con.startTransfer(getHost(), m) == RCV_OK) {
+				offer.sending = true;
+				addToSendingConnections(con);
+			}
+		}
+	}
+
+	/**
+	 * Takes the summary vector of the other host of the connection the
+	 * vector was received from
+	 */
+	@Override
+	protected void controlMessageReceived(Message m, DTNHost from) {
+		BitSet vector = m.getProperty(SUMMARY_VECTOR_PROPERTY);
+		if (vector == null || this.summaryOffers == null) {
+			return;
+		}
+
+		List<Connection> connections = getConnections();
+		for (int i=0, n=connections.size(); i<n; i++) {
+			Connection con = connections.get(i);
+			if (con.getMessage() == m) {
+				SummaryOffer offer = this.summaryOffers.get(con);
+				if (offer != null) {
+					offer.setKnown(vector);
+				}
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Returns true if a message can be offered over a connection, i.e., if
+	 * summary vectors are not exchanged or if both vectors have been
+	 * transferred and the other host's vector (or its later answers) didn't
+	 * have the message
+	 * @param m The message
+	 * @param con The connection
+	 * @return true if the message can be offered
+	 */
+	private boolean isOffered(Message m, Connection con) {
+		if (this.summaryOffers == null) {
+			return true;
+		}
+		SummaryOffer offer = this.summaryOffers.get(con);
+		return offer != null && offer.isReady() &&
+			!offer.known.get(m.getKey());
+	}
+
+	@Override
+	protected void addToMessages(Message m, boolean newMessage) {
+		super.addToMessages(m, newMessage);
+		this.changedSinceUpdate = true;
+		if (this.summaryOffers != null) {
+			for (SummaryOffer offer : this.summaryOffers.values()) {
+				offer.pending = true;
+			}
+		}
 	}
 
 	@Override
@@ -106,15 +267,17 @@ public abstract class ActiveRouter extends MessageRouter {
 		}
 
 		DTNHost other = con.getOtherNode(getHost());
+		List<Message> toOther = getMessagesTo(other);
+		if (toOther.isEmpty()) {
+			return false;
+		}
+
 		/* do a copy to avoid concurrent modification exceptions
 		 * (startTransfer may remove messages) */
-		ArrayList<Message> temp =
-			new ArrayList<Message>(this.getMessageCollection());
+		ArrayList<Message> temp = new ArrayList<Message>(toOther);
 		for (Message m : temp) {
-			if (other == m.getTo()) {
-				if (startTransfer(m, con) == RCV_OK) {
-					return true;
-				}
+			if (isOffered(m, con) && startTransfer(m, con) == RCV_OK) {
+				return true;
 			}
 		}
 		return false;
@@ -181,12 +344,28 @@ public abstract class ActiveRouter extends MessageRouter {
 			return TRY_LATER_BUSY;
 		}
 
+		if (this.summaryOffers != null) {
+			SummaryOffer offer = this.summaryOffers.get(con);
+			if (offer != null && !offer.isReady()) {
+				return TRY_LATER_BUSY; /* summary vectors are being exchanged */
+			}
+		}
+
 		if (!policy.acceptSending(getHost(),
 				con.getOtherNode(getHost()), con, m)) {
 			return MessageRouter.DENIED_POLICY;
 		}
 
 		retVal = con.startTransfer(getHost(), m);
+		if (this.summaryOffers != null && (retVal == RCV_OK ||
+				retVal == DENIED_OLD || retVal == DENIED_TTL)) {
+			/* the other host has (or will have) the message */
+			SummaryOffer offer = this.summaryOffers.get(con);
+			if (offer != null && offer.known != null) {
+				offer.known.set(m.getKey());
+			}
+		}
+
 		if (retVal == RCV_OK) { // started transfer
 			addToSendingConnections(con);
 		}
@@ -232,8 +411,11 @@ public abstract class ActiveRouter extends MessageRouter {
 			return TRY_LATER_BUSY; // only one connection at a time
 		}
 
-		if ( hasMessage(m.getId()) || isDeliveredMessage(m) ||
-				super.isBlacklistedMessage(m.getId())) {
+		if ( hasMessage(m.getKey()) || isDeliveredMessage(m) ||
+				super.isBlacklistedMessage(m.getKey())) {
+			if (!hasMessage(m.getKey()) && isHistoryFilterMatch(m.getKey())) {
+				LogHistoryFilterRejection(m, from);
+			}
 			return DENIED_OLD; // already seen this message -> reject it
 		}
 
@@ -323,28 +505,21 @@ public abstract class ActiveRouter extends MessageRouter {
 	 * exludeMsgBeingSent is true)
 	 */
 	protected Message getNextMessageToRemove(boolean excludeMsgBeingSent) {
-		Collection<Message> messages = this.getMessageCollection();
-		Message oldest = null;
-		for (Message m : messages) {
-
-			if (excludeMsgBeingSent && isSending(m.getId())) {
+		for (Message m : this.getMessagesByReceiveTime()) {
+			if (excludeMsgBeingSent && isSending(m.getKey())) {
 				continue; // skip the message(s) that router is sending
 			}
-
-			if (oldest == null ) {
-				oldest = m;
-			}
-			else if (oldest.getReceiveTime() > m.getReceiveTime()) {
-				oldest = m;
-			}
+			return m;
 		}
 
-		return oldest;
+		return null;
 	}
 
 	/**
 	 * Returns a list of message-connections tuples of the messages whose
-	 * recipient is some host that we're connected to at the moment.
+	 * recipient is some host that we're connected to at the moment. The
+	 * tuples are in the order of the messages in the buffer, and the tuples
+	 * of the same message in the order of the connections.
 	 * @return a list of message-connections tuples
 	 */
 	protected List<Tuple<Message, Connection>> getMessagesForConnected() {
@@ -355,15 +530,33 @@ public abstract class ActiveRouter extends MessageRouter {
 
 		List<Tuple<Message, Connection>> forTuples =
 			new ArrayList<Tuple<Message, Connection>>();
-		for (Message m : getMessageCollection()) {
-			for (Connection con : getConnections()) {
-				DTNHost to = con.getOtherNode(getHost());
-				if (m.getTo() == to) {
+		int nrofLists = 0;
+		for (Connection con : getConnections()) {
+			DTNHost to = con.getOtherNode(getHost());
+			List<Message> toList = getMessagesTo(to);
+			if (!toList.isEmpty()) {
+				nrofLists++;
+			}
+			for (Message m : toList) {
+				if (isOffered(m, con)) {
 					forTuples.add(new Tuple<Message, Connection>(m,con));
 				}
 			}
 		}
 
+		if (nrofLists > 1) {
+			/* merge the connections' lists to the buffer order; the sort
+			 * is stable so the tuples of a message stay in the order of
+			 * the connections */
+			Collections.sort(forTuples,
+					new Comparator<Tuple<Message, Connection>>() {
+				public int compare(Tuple<Message, Connection> t1,
+						Tuple<Message, Connection> t2) {
+					return compareBufferOrder(t1.getKey(), t2.getKey());
+				}
+			});
+		}
+
 		return forTuples;
 	}
 
@@ -453,6 +646,23 @@ public abstract class ActiveRouter extends MessageRouter {
 			return null;
 		}
 
+		if (this.summaryOffers != null) {
+			return tryOffersToConnections(connections);
+		}
+
+		if (getSendQueueMode() == Q_MODE_FIFO && !deleteDelivered) {
+			/* the receive time index is already in the FIFO order (ties in
+			 * the order the messages were added to the buffer, and no
+			 * message is deleted while trying) */
+			for (int i=0, n=connections.size(); i<n; i++) {
+				Connection con = connections.get(i);
+				if (tryMessagesInReceiveOrder(con) != null) {
+					return con;
+				}
+			}
+			return null;
+		}
+
 		List<Message> messages =
 			new ArrayList<Message>(this.getMessageCollection());
 		this.sortByQueueMode(messages);
@@ -460,6 +670,110 @@ public abstract class ActiveRouter extends MessageRouter {
 		return tryMessagesToConnections(messages, connections);
 	}
 
+	/**
+	 * Tries to send the messages offered after the summary vector exchange
+	 * to the connections. In the FIFO queue mode the messages are tried in
+	 * the order of the receive time index, otherwise they are ordered
+	 * using the {@link MessageRouter#sortByQueueMode(List)}. A connection
+	 * is not tried again before new messages are added to the buffer if no
+	 * message could be offered over it.
+	 * @param connections The connections to try
+	 * @return The connection that started a transfer or null if no
+	 * connection accepted a message.
+	 */
+	private Connection tryOffersToConnections(List<Connection> connections) {
+		for (int i=0, n=connections.size(); i<n; i++) {
+			Connection con = connections.get(i);
+			SummaryOffer offer = this.summaryOffers.get(con);
+			if (offer == null || !offer.isReady() || !offer.pending ||
+					!con.isReadyForTransfer()) {
+				continue; /* e.g. summary vectors are being exchanged */
+			}
+
+			offer.pending = false;
+			if (getSendQueueMode() == Q_MODE_FIFO) {
+				NavigableSet<Message> messages = getMessagesByReceiveTime();
+				Message m = messages.isEmpty() ? null : messages.first();
+				while (m != null) {
+					/* startTransfer may delete the message */
+					Message next = messages.higher(m);
+					if (!offer.known.get(m.getKey())) {
+						int retVal = offerMessage(m, con, offer);
+						if (retVal == RCV_OK) {
+							return con;
+						}
+						else if (retVal > 0) {
+							break; // should try later
+						}
+					}
+					m = next;
+				}
+			}
+			else {
+				List<Message> messages = new ArrayList<Message>();
+				for (Message m : getMessageCollection()) {
+					if (!offer.known.get(m.getKey())) {
+						messages.add(m);
+					}
+				}
+				this.sortByQueueMode(messages);
+				for (Message m : messages) {
+					int retVal = offerMessage(m, con, offer);
+					if (retVal == RCV_OK) {
+						return con;
+					}
+					else if (retVal > 0) {
+						break; // should try later
+					}
+				}
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * Tries to send an offered message over a connection. The connection
+	 * is tried again later unless the other host denied the message for
+	 * good.
+	 * @param m The message
+	 * @param con The connection
+	 * @param offer The summary vector exchange of the connection
+	 * @return The value returned by {@link #startTransfer(Message, Connection)}
+	 */
+	private int offerMessage(Message m, Connection con, SummaryOffer offer) {
+		int retVal = startTransfer(m, con);
+		if (retVal != DENIED_OLD && retVal != DENIED_TTL) {
+			offer.pending = true;
+		}
+		return retVal;
+	}
+
+	/**
+	 * Tries to send the messages to a connection in the order they were
+	 * received, like {@link #tryAllMessages(Connection, List)} does for a
+	 * list, but without copying or sorting the messages.
+	 * @param con The connection to use
+	 * @return The message that was accepted or null if no message was
+	 * accepted
+	 */
+	private Message tryMessagesInReceiveOrder(Connection con) {
+		NavigableSet<Message> messages = this.getMessagesByReceiveTime();
+		Message m = messages.isEmpty() ? null : messages.first();
+		while (m != null) {
+			int retVal = startTransfer(m, con);
+			if (retVal == RCV_OK) {
+				return m;	// accepted a message, don't try others
+			}
+			else if (retVal > 0) {
+				return null; // should try later -> don't bother trying others
+			}
+			m = messages.higher(m);
+		}
+
+		return null; // no message was accepted
+	}
+
 	/**
 	 * Exchanges deliverable (to final recipient) messages between this host
 	 * and all hosts this host is currently connected to. First all messages
@@ -516,6 +830,35 @@ public abstract class ActiveRouter extends MessageRouter {
 	 */
 	protected void addToSendingConnections(Connection con) {
 		this.sendingConnections.add(con);
+		this.changedSinceUpdate = true;
+		Message m = con.getMessage();
+		if (m != null) {
+			this.messagesBeingSent.put(m.getKey(), con);
+		}
+	}
+
+	/**
+	 * Removes a connection from the sending connections
+	 * @param index Index of the connection in the sending connections
+	 * @param key Key of the message the connection was sending (or -1 if
+	 * the transfer was aborted by some other entity)
+	 */
+	private void removeFromSendingConnections(int index, int key) {
+		Connection con = this.sendingConnections.remove(index);
+		this.changedSinceUpdate = true;
+		if (key < 0 || this.messagesBeingSent.get(key) != con) {
+			return;
+		}
+		this.messagesBeingSent.remove(key);
+		for (int i=0, n=this.sendingConnections.size(); i<n; i++) {
+			Connection other = this.sendingConnections.get(i);
+			Message m = other.getMessage();
+			if (m != null && m.getKey() == key) {
+				/* still sending the same message through other connection */
+				this.messagesBeingSent.put(key, other);
+				break;
+			}
+		}
 	}
 
 	/**
@@ -551,15 +894,23 @@ public abstract class ActiveRouter extends MessageRouter {
 	 * @return True if the message is being sent false if not
 	 */
 	public boolean isSending(String msgId) {
-		for (Connection con : this.sendingConnections) {
-			if (con.getMessage() == null) {
-				continue; // transmission is finalized
-			}
-			if (con.getMessage().getId().equals(msgId)) {
-				return true;
-			}
+		return isSending(Message.getKeyOf(msgId));
+	}
+
+	/**
+	 * Returns true if this router is currently sending a message whose ID
+	 * has the given key.
+	 * @param key Key of the message's ID (see {@link Message#getKey()})
+	 * @return True if the message is being sent false if not
+	 */
+	public boolean isSending(int key) {
+		Connection con = this.messagesBeingSent.get(key);
+		if (con == null) {
+			return false;
 		}
-		return false;
+		/* some other entity may have aborted the transfer */
+		Message m = con.getMessage();
+		return m != null && m.getKey() == key;
 	}
 
 	/**
@@ -580,16 +931,22 @@ public abstract class ActiveRouter extends MessageRouter {
 	@Override
 	public void update() {
 		super.update();
+		this.changedSinceUpdate = false;
 
 		/* in theory we can have multiple sending connections even though
 		  currently all routers allow only one concurrent sending connection */
 		for (int i=0; i<this.sendingConnections.size(); ) {
 			boolean removeCurrent = false;
 			Connection con = sendingConnections.get(i);
+			Message sent = con.getMessage();
 
 			/* finalize ready transfers */
 			if (con.isMessageTransferred()) {
-				if (con.getMessage() != null) {
+				if (sent != null && isControlMessage(sent.getId())) {
+					summaryVectorSent(con, true);
+					con.finalizeTransfer();
+				}
+				else if (sent != null) {
 					transferDone(con);
 					con.finalizeTransfer();
 				} /* else: some other entity aborted transfer */
@@ -597,9 +954,14 @@ public abstract class ActiveRouter extends MessageRouter {
 			}
 			/* remove connections that have gone down */
 			else if (!con.isUp()) {
-				if (con.getMessage() != null) {
+				if (sent != null && isControlMessage(sent.getId())) {
+					summaryVectorSent(con, false);
+					con.abortTransfer();
+				}
+				else if (sent != null) {
 					transferAborted(con);
 					con.abortTransfer();
+					requeueOffer(con, sent);
 				}
 				removeCurrent = true;
 			}
@@ -609,7 +971,8 @@ public abstract class ActiveRouter extends MessageRouter {
 				if (this.getFreeBufferSize() < 0) {
 					this.makeRoomForMessage(0);
 				}
-				sendingConnections.remove(i);
+				removeFromSendingConnections(i,
+						sent != null ? sent.getKey() : -1);
 			}
 			else {
 				/* index increase needed only if nothing was removed */
@@ -617,6 +980,10 @@ public abstract class ActiveRouter extends MessageRouter {
 			}
 		}
 
+		if (this.summaryOffers != null) {
+			sendSummaryVectors();
+		}
+
 		/* time to do a TTL check and drop old messages? Only if not sending */
 		if (SimClock.getTime() - lastTtlCheck >= TTL_CHECK_INTERVAL &&
 				sendingConnections.size() == 0) {
@@ -631,6 +998,85 @@ public abstract class ActiveRouter extends MessageRouter {
 		}
 	}
 
+	/**
+	 * Updates the summary vector exchange of a connection after this
+	 * host's vector transfer over it finished or was aborted
+	 * @param con The connection
+	 * @param transferred true if the vector was transferred, false if the
+	 * transfer was aborted (and the vector is sent again if the connection
+	 * comes up)
+	 */
+	private void summaryVectorSent(Connection con, boolean transferred) {
+		SummaryOffer offer = this.summaryOffers.get(con);
+		if (offer != null) {
+			offer.sending = false;
+			if (transferred) {
+				offer.vector = null;
+			}
+		}
+	}
+
+	/**
+	 * Offers an aborted message again over the connection (if it is still
+	 * up)
+	 * @param con The connection
+	 * @param m The message whose transfer was aborted
+	 */
+	private void requeueOffer(Connection con, Message m) {
+		if (this.summaryOffers == null) {
+			return;
+		}
+		SummaryOffer offer = this.summaryOffers.get(con);
+		if (offer != null && offer.known != null) {
+			offer.known.clear(m.getKey());
+			offer.pending = true;
+		}
+	}
+
+	/**
+	 * Returns true if there is no energy model, no applications, no
+	 * sending connections and the next TTL check is not yet due. The
+	 * subclasses' updates don't try any transfers without connections.
+	 * Subclasses whose update does anything else must override this.
+	 */
+	@Override
+	public boolean hasEnergyModel() {
+		return this.energy != null;
+	}
+
+	@Override
+	public boolean canSkipUpdate() {
+		return this.energy == null && !hasApplications() &&
+			this.sendingConnections.isEmpty() &&
+			SimClock.getTime() - lastTtlCheck < TTL_CHECK_INTERVAL;
+	}
+
+	/**
+	 * Returns the time of the next TTL check, or the current time if there
+	 * is an energy model or applications, or if there is a connection that
+	 * is free for a transfer and a message, connection or transfer has been
+	 * added or removed since the start of the last update (otherwise the
+	 * update would try the same transfers again). Ongoing transfers are
+	 * finalized by the updates their end times cause. Subclasses whose
+	 * update does anything else must override this.
+	 */
+	@Override
+	public double getNextUpdateTime() {
+		if (this.energy != null || hasApplications()) {
+			return SimClock.getTime();
+		}
+		if (!this.changedSinceUpdate) {
+			return lastTtlCheck + TTL_CHECK_INTERVAL;
+		}
+		List<Connection> connections = getConnections();
+		for (int i=0, n=connections.size(); i<n; i++) {
+			if (connections.get(i).isReadyForTransfer()) {
+				return SimClock.getTime(); /* transfers are tried */
+			}
+		}
+		return lastTtlCheck + TTL_CHECK_INTERVAL;
+	}
+
 	/**
 	 * Method is called just before a transfer is aborted at {@link #update()}
 	 * due connection going down. This happens on the sending host.
@@ -657,4 +1103,54 @@ public abstract class ActiveRouter extends MessageRouter {
 		return top;
 	}
 
+	/**
+	 * Summary vector exchange over a connection
+	 */
+	private static class SummaryOffer {
+		/** keys of the messages this host knew when the connection came
+		 * up; null after the vector has been transferred (or if the other
+		 * host doesn't exchange summary vectors) */
+		private BitSet vector;
+		/** is the vector being transferred */
+		private boolean sending;
+		/** keys of the messages in the other host's vector and of the
+		 * messages it has since accepted or denied as old; null until the
+		 * vector has been received */
+		private BitSet known;
+		/** can there be messages to offer (false after no message could be
+		 * offered until new messages are added to the buffer) */
+		private boolean pending;
+
+		/**
+		 * Constructor.
+		 * @param vector This host's summary vector or null if no summary
+		 * vectors are exchanged over the connection
+		 */
+		public SummaryOffer(BitSet vector) {
+			this.vector = vector;
+			this.known = (vector == null ? new BitSet() : null);
+			this.pending = true;
+		}
+
+		/**
+		 * Sets (or adds) the keys of the other host's summary vector
+		 * @param peerVector The other host's summary vector
+		 */
+		public void setKnown(BitSet peerVector) {
+			if (this.known == null) {
+				this.known = (BitSet)peerVector.clone();
+			}
+			else {
+				this.known.or(peerVector);
+			}
+			this.pending = true;
+		}
+
+		/**
+		 * Returns true if both summary vectors have been transferred
+		 */
+		public boolean isReady() {
+			return this.vector == null && this.known != null;
+		}
+	}
 }
@@ -1,7 +1,5 @@
 package routing;
 
-import java.security.KeyPair;
-import java.security.PublicKey;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
@@ -14,23 +12,14 @@ import core.Message;
 import core.MessageListener;
 import core.Settings;
 
-import kem.Kem;
-import kem.KemPrivateKey;
-import kem.KemPublicKey;
-import kem.CipherText;
-import kem.Rng;
-import kem.Utils;
-
-import sign.Dilithium;
-import sign.DilithiumPrivateKey;
-import sign.DilithiumPublicKey;
+import routing.util.CryptoBackend;
+import routing.util.CryptoBackend.Encapsulation;
 
 public class DirectDeliveryKEMRouter extends ActiveRouter {
 
-    private KeyPair KemKeyPair;
-    private KeyPair SignKeyPair;
+    private CryptoBackend crypto;
 
-    private Map<String, PublicKey> PublicKeys;
+    private Map<String, Object> PublicKeys;
     private Map<String, Boolean> MyPublicKeySent;
     private Map<String, int[]> SharedSecrets;
 
@@ -44,10 +33,12 @@ public class DirectDeliveryKEMRouter extends ActiveRouter {
 
     public DirectDeliveryKEMRouter(Settings s) {
         super(s);
+        this.crypto = CryptoBackend.create(s);
     }
 
     protected DirectDeliveryKEMRouter(DirectDeliveryKEMRouter r) {
         super(r);
+        this.crypto = r.crypto.replicate();
     }
 
     @Override
@@ -60,8 +51,7 @@ public class DirectDeliveryKEMRouter extends ActiveRouter {
 		super.init(host, mListeners);
         
         // Generate key pairs
-        KemKeyPair = Kem.keygen();
-        SignKeyPair = Dilithium.keygen(null);
+        crypto.init(host);
 
         // Initialize maps
         MyPublicKeySent = new HashMap<>();
@@ -115,7 +105,7 @@ public class DirectDeliveryKEMRouter extends ActiveRouter {
         if (!getHost().equals(destination)) return m; // not for me
 
         if (id.startsWith("PublicKey")) {
-            PublicKeys.put(m.getFrom().toString(), (PublicKey) m.getProperty("data"));
+            PublicKeys.put(m.getFrom().toString(), m.getProperty(CryptoBackend.DATA_PROPERTY));
             createNewMessage(createEncryptedMessage(m));
 
         } else if (id.startsWith("CiphertextFrom")) {
@@ -128,8 +118,8 @@ public class DirectDeliveryKEMRouter extends ActiveRouter {
 
     private Message createPublicKeyMsg(DTNHost peer) {
         String msgId = "PublicKey" + getHost().toString();
-        Message msg = new Message(getHost(), peer, msgId, KemKeyPair.getPublic().getEncoded().length);
-        msg.addProperty("data", KemKeyPair.getPublic());
+        Message msg = new Message(getHost(), peer, msgId, crypto.getPublicKeySize());
+        msg.addProperty(CryptoBackend.DATA_PROPERTY, crypto.getPublicKey());
         return msg;
     }
 
@@ -137,10 +127,9 @@ public class DirectDeliveryKEMRouter extends ActiveRouter {
     private void receiveCiphertext(Message m) {
         
         // Decrypt the message
-        int[] ss = decrypt((CipherText) m.getProperty("data"),
-                (KemPrivateKey) KemKeyPair.getPrivate(),
-                (DilithiumPublicKey) (DilithiumPublicKey) m.getProperty("VerifyKey"),
-                (byte[]) m.getProperty("signature"));
+        int[] ss = decrypt(m.getProperty(CryptoBackend.DATA_PROPERTY),
+                m.getProperty(CryptoBackend.VERIFY_KEY_PROPERTY),
+                m.getProperty(CryptoBackend.SIGNATURE_PROPERTY));
         // Store the shared secret
         SharedSecrets.put(m.getFrom().toString(), ss);
         // Check if the shared secret is the same as the one we generated
@@ -154,37 +143,28 @@ public class DirectDeliveryKEMRouter extends ActiveRouter {
     private Message createEncryptedMessage(Message m) {
         DTNHost origin = m.getFrom();
         
-        // Generate a shared secret
-        int [] sharedSecret = new int[Kem.N];
-        Rng.sampleNoise(sharedSecret);
-        
-        // Encrypt the message
-        KemPublicKey pk = (KemPublicKey) m.getProperty("data");
-        CipherText ct = Kem.encapsulate(pk, sharedSecret);
+        // Generate, encrypt and sign a shared secret
+        Encapsulation enc = crypto.encapsulate(m.getProperty(CryptoBackend.DATA_PROPERTY));
         this.energy.reduceEnergy(ENC_ENERGY);
-        // Sign the message
-        byte[] sig = Dilithium.sign((DilithiumPrivateKey) SignKeyPair.getPrivate(), Utils.intArrayToByteArray(sharedSecret));
         this.energy.reduceEnergy(SIGN_ENERGY);
         // Store the shared secret
-        SharedSecrets.put(origin.toString(), sharedSecret);
+        SharedSecrets.put(origin.toString(), enc.sharedSecret);
         
         // Create a new message with the ciphertext
         String msgId = "CiphertextFrom" + getHost().toString() + "To" + origin.toString();
-        Message msg = new Message(getHost(), origin, msgId, ct.toString().length() + sig.length + SignKeyPair.getPublic().getEncoded().length);
-        msg.addProperty("data", ct);
-        msg.addProperty("signature", sig);
-        msg.addProperty("VerifyKey", SignKeyPair.getPublic());
+        Message msg = new Message(getHost(), origin, msgId, enc.size);
+        msg.addProperty(CryptoBackend.DATA_PROPERTY, enc.ciphertext);
+        msg.addProperty(CryptoBackend.SIGNATURE_PROPERTY, enc.signature);
+        msg.addProperty(CryptoBackend.VERIFY_KEY_PROPERTY, enc.verifyKey);
         return msg;
     }
 
 
     // Decrypt the ciphertext and verify the signature
-    private int[] decrypt(CipherText ct, KemPrivateKey sk, DilithiumPublicKey vk, byte[] sig) {
-        // Decrypt the ciphertext
-        int[] sharedSecret = Kem.decapsulate(sk, ct);
+    private int[] decrypt(Object ct, Object vk, Object sig) {
+        int[] sharedSecret = crypto.decapsulate(ct, vk, sig);
         this.energy.reduceEnergy(DEC_ENERGY);
-        // Verify the signature
-        if (!Dilithium.verify(vk, sig, Utils.intArrayToByteArray(sharedSecret))) {
+        if (sharedSecret == null) {
             System.out.println("Signature verification failed.");
             return null;
         }
@@ -1,6 +1,5 @@
 package routing;
 
-import java.security.KeyPair;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -14,23 +13,15 @@ import core.Message;
 import core.MessageListener;
 import core.Settings;
 import core.SimScenario;
-import kem.CipherText;
-import kem.Kem;
-import kem.KemPrivateKey;
-import kem.KemPublicKey;
-import kem.Rng;
-import kem.Utils;
-import sign.Dilithium;
-import sign.DilithiumPrivateKey;
-import sign.DilithiumPublicKey;
+import routing.util.CryptoBackend;
+import routing.util.CryptoBackend.Encapsulation;
 
 public class EpidemicKEMRouter extends ActiveRouter {
 
 
-    private KeyPair KemKeyPair;
-    private KeyPair SignKeyPair;
+    private CryptoBackend crypto;
 
-    private Map<String, KemPublicKey> PublicKeys;
+    private Map<String, Object> PublicKeys;
     private Map<String, int[]> SharedSecrets;
     //
     private static final double ENC_ENERGY = 1.78;
@@ -41,10 +32,12 @@ public class EpidemicKEMRouter extends ActiveRouter {
 
     public EpidemicKEMRouter(Settings s) {
         super(s);
+        this.crypto = CryptoBackend.create(s);
     }
 
     protected EpidemicKEMRouter(EpidemicKEMRouter r) {
         super(r);
+        this.crypto = r.crypto.replicate();
     }
 
     @Override
@@ -56,13 +49,12 @@ public class EpidemicKEMRouter extends ActiveRouter {
     public void init(DTNHost host, List<MessageListener> mListeners) {
         super.init(host, mListeners);
 
-        KemKeyPair = Kem.keygen();
-        SignKeyPair = Dilithium.keygen(null);
+        crypto.init(host);
 
         PublicKeys = new HashMap<>();
         SharedSecrets = new HashMap<>();
 
-        PublicKeys.put(getHost().toString(), (KemPublicKey) KemKeyPair.getPublic());
+        PublicKeys.put(getHost().toString(), crypto.getPublicKey());
     }
 
     @Override
@@ -101,19 +93,17 @@ public class EpidemicKEMRouter extends ActiveRouter {
         Message m = super.messageTransferred(id, from);
 
         // If the message is a public key or verify key, add it to the respective map
-        if (m.getId().startsWith("PublicKey") && !PublicKeys.containsKey((String) m.getProperty("hostId"))) {
-            KemPublicKey publicKey = (KemPublicKey) m.getProperty("data");
-            PublicKeys.put((String) m.getProperty("hostId"), publicKey);
+        if (m.getId().startsWith("PublicKey") && !PublicKeys.containsKey(m.getProperty(CryptoBackend.HOST_ID_PROPERTY))) {
+            PublicKeys.put(m.getProperty(CryptoBackend.HOST_ID_PROPERTY), m.getProperty(CryptoBackend.DATA_PROPERTY));
 
-            if (getHost().toString().compareTo((String) m.getProperty("hostId")) > 0) {
+            if (getHost().toString().compareTo(m.getProperty(CryptoBackend.HOST_ID_PROPERTY)) > 0) {
                 createNewMessage(createCipherTextMessage(m));
             }
         } else if (m.getId().startsWith("CiphertextFrom") && m.getTo().equals(getHost())) {
 
-            int[] ss = decrypt((CipherText) m.getProperty("data"),
-                    (KemPrivateKey) KemKeyPair.getPrivate(),
-                    (DilithiumPublicKey) (DilithiumPublicKey) m.getProperty("VerifyKey"),
-                    (byte[]) m.getProperty("signature"));
+            int[] ss = decrypt(m.getProperty(CryptoBackend.DATA_PROPERTY),
+                    m.getProperty(CryptoBackend.VERIFY_KEY_PROPERTY),
+                    m.getProperty(CryptoBackend.SIGNATURE_PROPERTY));
             // Store the shared secret
             SharedSecrets.put(m.getFrom().toString(), ss);
             // Check if the shared secret is the same as the one we generated
@@ -139,11 +129,11 @@ public class EpidemicKEMRouter extends ActiveRouter {
         }
 
         for (String hostId : missingPublicKeys) {
-            KemPublicKey publicKey = PublicKeys.get(hostId);
+            Object publicKey = PublicKeys.get(hostId);
             String msgId = "PublicKey" + hostId;
-            Message message = new Message(getHost(), peer, msgId, 2096);
-            message.addProperty("hostId",  hostId);
-            message.addProperty("data", publicKey);
+            Message message = new Message(getHost(), peer, msgId, crypto.getPublicKeySize(publicKey));
+            message.addProperty(CryptoBackend.HOST_ID_PROPERTY,  hostId);
+            message.addProperty(CryptoBackend.DATA_PROPERTY, publicKey);
             createNewMessage(message);
         }
     }
@@ -166,41 +156,32 @@ public class EpidemicKEMRouter extends ActiveRouter {
 
     public Message createCipherTextMessage(Message pkmsg) {
 
-        String hostId = (String) pkmsg.getProperty("hostId");
+        String hostId = pkmsg.getProperty(CryptoBackend.HOST_ID_PROPERTY);
         DTNHost peer = SimScenario.getInstance().getWorld().getNodeByAddress(Integer.parseInt(hostId.substring(1)));
 
-        KemPublicKey publicKey = (KemPublicKey) pkmsg.getProperty("data");
-
-
-        int [] sharedSecret = new int[Kem.N];
-        Rng.sampleNoise(sharedSecret);
-
-        CipherText ct = Kem.encapsulate(publicKey, sharedSecret);
+        // Generate, encrypt and sign a shared secret
+        Encapsulation enc = crypto.encapsulate(pkmsg.getProperty(CryptoBackend.DATA_PROPERTY));
         this.energy.reduceEnergy(ENC_ENERGY);
-        // Sign the message
-        byte[] sig = Dilithium.sign((DilithiumPrivateKey) SignKeyPair.getPrivate(), Utils.intArrayToByteArray(sharedSecret));
         this.energy.reduceEnergy(SIGN_ENERGY);
         // Store the shared secret
-        SharedSecrets.put(peer.toString(), sharedSecret);
+        SharedSecrets.put(peer.toString(), enc.sharedSecret);
 
         // Create a new message with the ciphertext
         String msgId = "CiphertextFrom" + getHost().toString() + "To" + hostId;
-        Message msg = new Message(getHost(), peer, msgId, 2000);
-        msg.addProperty("data", ct);
-        msg.addProperty("signature", sig);
-        msg.addProperty("VerifyKey", SignKeyPair.getPublic());
+        Message msg = new Message(getHost(), peer, msgId, enc.size);
+        msg.addProperty(CryptoBackend.DATA_PROPERTY, enc.ciphertext);
+        msg.addProperty(CryptoBackend.SIGNATURE_PROPERTY, enc.signature);
+        msg.addProperty(CryptoBackend.VERIFY_KEY_PROPERTY, enc.verifyKey);
         return msg;
 
     }
 
 
     // Decrypt the ciphertext and verify the signature
-    private int[] decrypt(CipherText ct, KemPrivateKey sk, DilithiumPublicKey vk, byte[] sig) {
-        // Decrypt the ciphertext
-        int[] sharedSecret = Kem.decapsulate(sk, ct);
+    private int[] decrypt(Object ct, Object vk, Object sig) {
+        int[] sharedSecret = crypto.decapsulate(ct, vk, sig);
         this.energy.reduceEnergy(DEC_ENERGY);
-        // Verify the signature
-        if (!Dilithium.verify(vk, sig, Utils.intArrayToByteArray(sharedSecret))) {
+        if (sharedSecret == null) {
             System.out.println("Signature verification failed.");
             return null;
         }
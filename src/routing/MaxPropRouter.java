@@ -55,12 +55,13 @@ public class MaxPropRouter extends ActiveRouter {
 	private MaxPropDijkstra dijkstra;
 	/** IDs of the messages that are known to have reached the final dst */
 	private Set<String> ackedMessageIds;
-	/** mapping of the current costs for all messages. This should be set to
-	 * null always when the costs should be updated (a host is met or a new
-	 * message is received) */
-	private Map<Integer, Double> costsForMessages;
-	/** From host of the last cost calculation */
-	private DTNHost lastCostFrom;
+	/** mapping of the current costs for all messages from the hosts whose
+	 * costs have been calculated, mapped using the host's network address.
+	 * This should be set to null always when the costs should be updated
+	 * (a host is met) */
+	private Map<Integer, Map<Integer, Double>> costsForMessages;
+	/** addresses of the hosts the current costs were calculated to */
+	private Set<Integer> costTargets;
 
 	/** Map of which messages have been sent to which hosts from this host */
 	private Map<DTNHost, Set<String>> sentMessages;
@@ -192,7 +193,6 @@ public class MaxPropRouter extends ActiveRouter {
 
 	@Override
 	public Message messageTransferred(String id, DTNHost from) {
-		this.costsForMessages = null; // new message -> invalidate costs
 		Message m = super.messageTransferred(id, from);
 		/* was this node the final recipient of the message? */
 		if (isDeliveredMessage(m)) {
@@ -273,7 +273,7 @@ public class MaxPropRouter extends ActiveRouter {
 		List<Message> validMessages = new ArrayList<Message>();
 
 		for (Message m : messages) {
-			if (excludeMsgBeingSent && isSending(m.getId())) {
+			if (excludeMsgBeingSent && isSending(m.getKey())) {
 				continue; // skip the message(s) that router is sending
 			}
 			validMessages.add(m);
@@ -304,32 +304,42 @@ public class MaxPropRouter extends ActiveRouter {
 	 * Returns the message delivery cost between two hosts from this host's
 	 * point of view. If there is no path between "from" and "to" host,
 	 * Double.MAX_VALUE is returned. Paths are calculated only to hosts
-	 * that this host has messages to.
+	 * that this host has messages to. The costs are cached until a host is
+	 * met or a cost to a new destination is asked.
 	 * @param from The host where a message is coming from
 	 * @param to The host where a message would be destined to
 	 * @return The cost of the cheapest path to the destination or
 	 * Double.MAX_VALUE if such a path doesn't exist
 	 */
 	public double getCost(DTNHost from, DTNHost to) {
+		int toIndex = to.getAddress();
+
 		/* check if the cached values are OK */
-		if (this.costsForMessages == null || lastCostFrom != from) {
+		if (this.costsForMessages == null ||
+				!this.costTargets.contains(toIndex)) {
 			/* cached costs are invalid -> calculate new costs */
 			this.allProbs.put(getHost().getAddress(), this.probs);
-			int fromIndex = from.getAddress();
 
 			/* calculate paths only to nodes we have messages to
 			 * (optimization) */
-			Set<Integer> toSet = new HashSet<Integer>();
+			this.costTargets = new HashSet<Integer>();
 			for (Message m : getMessageCollection()) {
-				toSet.add(m.getTo().getAddress());
+				this.costTargets.add(m.getTo().getAddress());
 			}
+			this.costTargets.add(toIndex);
+			this.costsForMessages =
+				new HashMap<Integer, Map<Integer, Double>>();
+		}
 
-			this.costsForMessages = dijkstra.getCosts(fromIndex, toSet);
-			this.lastCostFrom = from; // store source host for caching checks
+		Map<Integer, Double> costs =
+			this.costsForMessages.get(from.getAddress());
+		if (costs == null) {
+			costs = dijkstra.getCosts(from.getAddress(), this.costTargets);
+			this.costsForMessages.put(from.getAddress(), costs);
 		}
 
-		if (costsForMessages.containsKey(to.getAddress())) {
-			return costsForMessages.get(to.getAddress());
+		if (costs.containsKey(toIndex)) {
+			return costs.get(toIndex);
 		}
 		else {
 			/* there's no known path to the given host */
@@ -363,7 +373,7 @@ public class MaxPropRouter extends ActiveRouter {
 				/* skip messages that the other host has or that have
 				 * passed the other host */
 				if (othRouter.hasMessage(m.getId()) ||
-						m.getHops().contains(other)) {
+						m.isOnPath(other)) {
 					continue;
 				}
 				/* skip message if this host has already sent it to the other
@@ -4,13 +4,17 @@
  */
 package routing;
 
+import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.NavigableSet;
 import java.util.Random;
+import java.util.TreeSet;
 import core.Application;
 import core.Connection;
 import core.DTNHost;
@@ -21,8 +25,11 @@ import core.SettingsError;
 import core.SimClock;
 import core.SimError;
 import gui.EventLogPanel;
+import report.HistoryFilterReport;
 import report.KeyExchangeRateReport;
+import routing.util.MessageHistory;
 import routing.util.RoutingInfo;
+import util.IntHashMap;
 import util.Tuple;
 
 /**
@@ -49,6 +56,33 @@ public abstract class MessageRouter {
 	 */
 	public static final String SEND_QUEUE_MODE_S = "sendQueue";
 
+	/**
+	 * Message history size -setting id ({@value}). Integer value; how many
+	 * of the messages this router has received as the final recipient (and
+	 * of the blacklisted messages) are kept exactly. The IDs of older ones
+	 * are kept in a compact set (see {@link #HISTORY_FP_RATE_S}). Default
+	 * is to keep all the messages.
+	 */
+	public static final String HISTORY_SIZE_S = "historySize";
+	/**
+	 * Message history false positive rate -setting id ({@value}). Double
+	 * value in range [0, 1). If 0 (default), the IDs of the older messages
+	 * in the history are kept in an exact bit set. Otherwise they are kept in
+	 * a Bloom filter that claims a message was seen with at most this rate
+	 * for messages that were not seen. Used only with
+	 * {@link #HISTORY_SIZE_S}.
+	 */
+	public static final String HISTORY_FP_RATE_S = "historyFalsePositiveRate";
+
+	/** Prefix of the IDs of control messages ({@value}). Control messages
+	 * carry routing information between the routers (e.g., summary
+	 * vectors). They are transferred over the connections like the other
+	 * messages, but the hosts give them to
+	 * {@link #receiveControlMessage(Message, DTNHost)} instead of
+	 * {@link #receiveMessage(Message, DTNHost)}, and they are not put to
+	 * the buffers or reported to the message listeners. */
+	public static final String CONTROL_PREFIX = "CTRL_";
+
 	/** Setting value for random queue mode */
 	public static final int Q_MODE_RANDOM = 1;
 	/** Setting value for FIFO queue mode */
@@ -87,22 +121,43 @@ public abstract class MessageRouter {
 	public static final int MAX_TTL_VALUE = 35791394;
 
 	private List<MessageListener> mListeners;
-	/** The messages being transferred with msgID_hostName keys */
-	private HashMap<String, Message> incomingMessages;
-	/** The messages this router is carrying */
-	private HashMap<String, Message> messages;
+	/** The messages being transferred */
+	private ArrayList<Message> incomingMessages;
+	/** The hosts the incoming messages are from (at the same indexes) */
+	private ArrayList<DTNHost> incomingFrom;
+	/** The messages this router is carrying by their keys, in the order
+	 * they were added */
+	private IntHashMap<Message> messages;
 	/** The messages this router has received as the final recipient */
-	private HashMap<String, Message> deliveredMessages;
+	private MessageHistory deliveredMessages;
 	/** The messages that Applications on this router have blacklisted */
-	private HashMap<String, Object> blacklistedMessages;
+	private MessageHistory blacklistedMessages;
 	/** Host where this router belongs to */
 	private DTNHost host;
 	/** size of the buffer */
 	private long bufferSize;
+	/** total size of the messages this router is carrying */
+	private long bufferOccupancy;
+	/** the carried messages in the order of their receive times (ties in
+	 * the order they were added to the buffer) */
+	private TreeSet<Message> receiveOrder;
+	/** the sequence numbers of the carried messages' additions to the
+	 * buffer, by message key */
+	private IntHashMap<Long> bufferSeqs;
+	/** sequence number for the next message added to the buffer */
+	private long nextBufferSeq;
+	/** read-only view of receiveOrder */
+	private NavigableSet<Message> receiveOrderView;
+	/** the carried messages by their final recipients */
+	private HashMap<DTNHost, List<Message>> messagesByDestination;
 	/** TTL for all messages */
 	protected int msgTtl;
 	/** Queue mode for sending messages */
 	private int sendQueueMode;
+	/** How many delivered and blacklisted messages are kept exactly */
+	private int historySize;
+	/** False positive rate of the older delivered and blacklisted messages */
+	private double historyFpRate;
 
 	/** applications attached to the host */
 	private HashMap<String, Collection<Application>> applications = null;
@@ -151,8 +206,40 @@ public abstract class MessageRouter {
 		else {
 			sendQueueMode = Q_MODE_RANDOM;
 		}
+
+		this.historySize = MessageHistory.UNLIMITED;
+		this.historyFpRate = 0;
+		if (s.contains(HISTORY_SIZE_S)) {
+			this.historySize = s.getInt(HISTORY_SIZE_S);
+			if (this.historySize < 1) {
+				throw new SettingsError("Invalid value for " +
+						s.getFullPropertyName(HISTORY_SIZE_S) +
+						". Must be a positive integer");
+			}
+		}
+		if (s.contains(HISTORY_FP_RATE_S)) {
+			this.historyFpRate = s.getDouble(HISTORY_FP_RATE_S);
+			if (this.historyFpRate < 0 || this.historyFpRate >= 1) {
+				throw new SettingsError("Invalid value for " +
+						s.getFullPropertyName(HISTORY_FP_RATE_S) +
+						". Must be in range [0, 1)");
+			}
+		}
 	}
 
+	/** Orders the carried messages by their receive times and the order
+	 * they were added to the buffer */
+	private final Comparator<Message> receiveOrderComparator =
+		new Comparator<Message>() {
+		public int compare(Message m1, Message m2) {
+			int c = Double.compare(m1.getReceiveTime(), m2.getReceiveTime());
+			if (c != 0) {
+				return c;
+			}
+			return compareBufferOrder(m1, m2);
+		}
+	};
+
 	/**
 	 * Initializes the router; i.e. sets the host this router is in and
 	 * message listeners that need to be informed about message related
@@ -161,10 +248,20 @@ public abstract class MessageRouter {
 	 * @param mListeners The message listeners
 	 */
 	public void init(DTNHost host, List<MessageListener> mListeners) {
-		this.incomingMessages = new HashMap<String, Message>();
-		this.messages = new HashMap<String, Message>();
-		this.deliveredMessages = new HashMap<String, Message>();
-		this.blacklistedMessages = new HashMap<String, Object>();
+		this.incomingMessages = new ArrayList<Message>();
+		this.incomingFrom = new ArrayList<DTNHost>();
+		this.messages = new IntHashMap<Message>();
+		this.bufferOccupancy = 0;
+		this.receiveOrder = new TreeSet<Message>(receiveOrderComparator);
+		this.bufferSeqs = new IntHashMap<Long>();
+		this.nextBufferSeq = 0;
+		this.receiveOrderView =
+			Collections.unmodifiableNavigableSet(this.receiveOrder);
+		this.messagesByDestination = new HashMap<DTNHost, List<Message>>();
+		this.deliveredMessages = new MessageHistory(this.historySize,
+				this.historyFpRate);
+		this.blacklistedMessages = new MessageHistory(this.historySize,
+				this.historyFpRate);
 		this.mListeners = mListeners;
 		this.host = host;
 	}
@@ -177,6 +274,8 @@ public abstract class MessageRouter {
 		this.bufferSize = r.bufferSize;
 		this.msgTtl = r.msgTtl;
 		this.sendQueueMode = r.sendQueueMode;
+		this.historySize = r.historySize;
+		this.historyFpRate = r.historyFpRate;
 
 		this.applications = new HashMap<String, Collection<Application>>();
 		for (Collection<Application> apps : r.applications.values()) {
@@ -199,6 +298,49 @@ public abstract class MessageRouter {
 		}
 	}
 
+	/**
+	 * Returns true if this router models the energy consumption of its host,
+	 * i.e., the interfaces of the host can run out of energy. This
+	 * implementation returns false.
+	 * @return true if the router has an energy model
+	 */
+	public boolean hasEnergyModel() {
+		return false;
+	}
+
+	/**
+	 * Returns true if calling {@link #update()} now would change nothing,
+	 * given that the host has no connections. Hosts whose router returns
+	 * true may be left without update on such rounds (see
+	 * {@link core.World#SKIP_IDLE_UPDATES_S}), so the answer must be
+	 * conservative. This implementation returns false.
+	 * @return true if the update can be skipped
+	 */
+	public boolean canSkipUpdate() {
+		return false;
+	}
+
+	/**
+	 * Returns the time until which {@link #update()} needs not be called
+	 * unless something happens to the host before it (connection changes,
+	 * transfer ends, external events). Hosts may be left without update
+	 * until then (see {@link core.World#NEXT_EVENT_JUMP_S}), so the answer
+	 * must be conservative. This implementation returns the current time,
+	 * i.e., the router is updated on every round.
+	 * @return The next time the router needs an update
+	 */
+	public double getNextUpdateTime() {
+		return SimClock.getTime();
+	}
+
+	/**
+	 * Returns true if any applications are attached to this router
+	 * @return true if any applications are attached to this router
+	 */
+	protected boolean hasApplications() {
+		return !this.applications.isEmpty();
+	}
+
 	/**
 	 * Informs the router about change in connections state.
 	 * @param con The connection that changed
@@ -211,7 +353,16 @@ public abstract class MessageRouter {
 	 * @return The message
 	 */
 	protected Message getMessage(String id) {
-		return this.messages.get(id);
+		return getMessage(Message.getKeyOf(id));
+	}
+
+	/**
+	 * Returns a message by the key of its ID.
+	 * @param key Key of the message's ID (see {@link Message#getKey()})
+	 * @return The message or null if there's no message for the key
+	 */
+	protected Message getMessage(int key) {
+		return key < 0 ? null : this.messages.get(key);
 	}
 
 	/**
@@ -220,19 +371,43 @@ public abstract class MessageRouter {
 	 * @return True if the router has message with this id, false if not
 	 */
 	public boolean hasMessage(String id) {
-		return this.messages.containsKey(id);
+		return hasMessage(Message.getKeyOf(id));
+	}
+
+	/**
+	 * Checks if this router has a message with certain ID key buffered.
+	 * @param key Key of the message's ID (see {@link Message#getKey()})
+	 * @return True if the router has message with this key, false if not
+	 */
+	public boolean hasMessage(int key) {
+		return key >= 0 && this.messages.containsKey(key);
 	}
 
 	/**
 	 * Returns true if a full message with same ID as the given message has been
 	 * received by this host as the <strong>final</strong> recipient
 	 * (at least once).
+	 * With a limited history (see {@link #HISTORY_SIZE_S}) the answer can
+	 * be a false positive for messages that were not received.
 	 * @param m message we're interested of
 	 * @return true if a message with the same ID has been received by
 	 * this host as the final recipient.
 	 */
 	protected boolean isDeliveredMessage(Message m) {
-		return (this.deliveredMessages.containsKey(m.getId()));
+		return (this.deliveredMessages.contains(m.getKey()));
+	}
+
+	/**
+	 * Returns the keys of the messages this router carries or has received
+	 * as the final recipient. Delivered messages whose keys are kept only in
+	 * a Bloom filter (see {@link #HISTORY_FP_RATE_S}) are not included.
+	 * @return A new bit set of the message keys
+	 */
+	protected BitSet getKnownMessageKeys() {
+		BitSet keys = new BitSet();
+		this.messages.forEachKey(keys::set);
+		this.deliveredMessages.addKeysTo(keys);
+		return keys;
 	}
 
 	/**
@@ -245,7 +420,33 @@ public abstract class MessageRouter {
 	 * @return <code>true</code> if blacklisted, <code>false</code> otherwise.
 	 */
 	protected boolean isBlacklistedMessage(String id) {
-		return this.blacklistedMessages.containsKey(id);
+		return isBlacklistedMessage(Message.getKeyOf(id));
+	}
+
+	/**
+	 * Returns <code>true</code> if the message with the ID key has been
+	 * blacklisted (see {@link #isBlacklistedMessage(String)}).
+	 * @param key Key of the message's ID (see {@link Message#getKey()})
+	 * @return <code>true</code> if blacklisted, <code>false</code> otherwise.
+	 */
+	protected boolean isBlacklistedMessage(int key) {
+		return key >= 0 && this.blacklistedMessages.contains(key);
+	}
+
+	/**
+	 * Returns true if the message with the ID key is known to be delivered
+	 * to or blacklisted by this router only from the compact part of the
+	 * message history, i.e., if such an answer could be a false positive.
+	 * @param key Key of the message's ID (see {@link Message#getKey()})
+	 * @return true if the message was found only from the compact history
+	 */
+	protected boolean isHistoryFilterMatch(int key) {
+		if (key < 0 || this.deliveredMessages.isRecent(key) ||
+				this.blacklistedMessages.isRecent(key)) {
+			return false;
+		}
+		return this.deliveredMessages.contains(key) ||
+			this.blacklistedMessages.contains(key);
 	}
 
 	/**
@@ -260,6 +461,45 @@ public abstract class MessageRouter {
 		return this.messages.values();
 	}
 
+	/**
+	 * Returns the messages of this router ordered by their receive times.
+	 * Messages with the same receive time are in the order they were added
+	 * to the buffer, i.e., in their order in {@link #getMessageCollection()}.
+	 * The set can be navigated (e.g. with {@link NavigableSet#higher})
+	 * while messages are added or removed.
+	 * @return The messages ordered by their receive times
+	 */
+	protected NavigableSet<Message> getMessagesByReceiveTime() {
+		return this.receiveOrderView;
+	}
+
+	/**
+	 * Returns the carried messages whose final recipient is the given host,
+	 * in the order they were added to the buffer
+	 * @param to The final recipient
+	 * @return The messages to the host (an empty list if there are none)
+	 */
+	protected List<Message> getMessagesTo(DTNHost to) {
+		List<Message> list = this.messagesByDestination.get(to);
+		if (list == null) {
+			return Collections.emptyList();
+		}
+		return Collections.unmodifiableList(list);
+	}
+
+	/**
+	 * Compares the order two carried messages were added to the buffer in,
+	 * i.e., their order in {@link #getMessageCollection()}
+	 * @param m1 The first message
+	 * @param m2 The second message
+	 * @return -1, 0 or 1 if m1 was added before, is the same as, or was
+	 * added after m2
+	 */
+	protected int compareBufferOrder(Message m1, Message m2) {
+		return Long.compare(this.bufferSeqs.get(m1.getKey()),
+				this.bufferSeqs.get(m2.getKey()));
+	}
+
 	/**
 	 * Returns the number of messages this router has
 	 * @return How many messages this router has
@@ -284,17 +524,26 @@ public abstract class MessageRouter {
 	 * size isn't defined)
 	 */
 	public long getFreeBufferSize() {
-		long occupancy = 0;
-
 		if (this.getBufferSize() == Integer.MAX_VALUE) {
 			return Integer.MAX_VALUE;
 		}
 
+		assert this.bufferOccupancy == countBufferOccupancy() :
+			"Buffer occupancy " + this.bufferOccupancy + " of " + this.host +
+			" doesn't match the messages (" + countBufferOccupancy() + ")";
+		return this.getBufferSize() - this.bufferOccupancy;
+	}
+
+	/**
+	 * Counts the total size of the messages in the buffer
+	 * @return The total size of the messages
+	 */
+	private long countBufferOccupancy() {
+		long occupancy = 0;
 		for (Message m : getMessageCollection()) {
 			occupancy += m.getSize();
 		}
-
-		return this.getBufferSize() - occupancy;
+		return occupancy;
 	}
 
 	/**
@@ -393,11 +642,11 @@ public abstract class MessageRouter {
 			// -> put to buffer
 			addToMessages(aMessage, false);
 		} else if (isFirstDelivery) {
-			this.deliveredMessages.put(id, aMessage);
+			this.deliveredMessages.add(incoming.getKey(), aMessage);
 		} else if (outgoing == null) {
 			// Blacklist messages that an app wants to drop.
 			// Otherwise the peer will just try to send it back again.
-			this.blacklistedMessages.put(id, null);
+			this.blacklistedMessages.add(incoming.getKey(), null);
 		}
 
 		for (MessageListener ml : this.mListeners) {
@@ -408,6 +657,62 @@ public abstract class MessageRouter {
 		return aMessage;
 	}
 
+	/**
+	 * Returns true if the ID is the ID of a control message (see
+	 * {@link #CONTROL_PREFIX})
+	 * @param id The message ID
+	 * @return true for a control message ID
+	 */
+	public static boolean isControlMessage(String id) {
+		return id.startsWith(CONTROL_PREFIX);
+	}
+
+	/**
+	 * Starts receiving a control message from another host. Control
+	 * messages are always accepted.
+	 * @param m The control message
+	 * @param from Who the message is from
+	 * @return {@link #RCV_OK}
+	 */
+	public int receiveControlMessage(Message m, DTNHost from) {
+		this.putToIncomingBuffer(m, from);
+		return RCV_OK;
+	}
+
+	/**
+	 * This method should be called (on the receiving host) after a control
+	 * message was successfully transferred
+	 * @param id Id of the transferred control message
+	 * @param from Host the message was from
+	 */
+	public void controlMessageTransferred(String id, DTNHost from) {
+		Message m = removeFromIncomingBuffer(id, from);
+		if (m == null) {
+			throw new SimError("No control message with ID " + id +
+					" in the incoming buffer of " + this.host);
+		}
+		controlMessageReceived(m, from);
+	}
+
+	/**
+	 * This method should be called (on the receiving host) when a control
+	 * message transfer was aborted
+	 * @param id Id of the control message that was being transferred
+	 * @param from Host the message was from
+	 */
+	public void controlMessageAborted(String id, DTNHost from) {
+		removeFromIncomingBuffer(id, from);
+	}
+
+	/**
+	 * Called when a control message has been received. Subclasses that
+	 * send control messages should override this. This implementation
+	 * does nothing.
+	 * @param m The control message
+	 * @param from Host the message was from
+	 */
+	protected void controlMessageReceived(Message m, DTNHost from) { }
+
 	/**
 	 * Puts a message to incoming messages buffer. Two messages with the
 	 * same ID are distinguished by the from host.
@@ -415,7 +720,14 @@ public abstract class MessageRouter {
 	 * @param from Who the message was from (previous hop).
 	 */
 	protected void putToIncomingBuffer(Message m, DTNHost from) {
-		this.incomingMessages.put(m.getId() + "_" + from.toString(), m);
+		int index = indexOfIncoming(m.getKey(), from);
+		if (index >= 0) {
+			this.incomingMessages.set(index, m);
+		}
+		else {
+			this.incomingMessages.add(m);
+			this.incomingFrom.add(from);
+		}
 	}
 
 	/**
@@ -426,7 +738,30 @@ public abstract class MessageRouter {
 	 * @return The found message or null if such message wasn't found
 	 */
 	protected Message removeFromIncomingBuffer(String id, DTNHost from) {
-		return this.incomingMessages.remove(id + "_" + from.toString());
+		int index = indexOfIncoming(Message.getKeyOf(id), from);
+		if (index < 0) {
+			return null;
+		}
+		this.incomingFrom.remove(index);
+		return this.incomingMessages.remove(index);
+	}
+
+	/**
+	 * Returns the index of an incoming message in the incoming buffer
+	 * @param key Key of the message's ID
+	 * @param from The host that sent this message (previous hop) or null
+	 * for any host
+	 * @return The index or -1 if the message isn't incoming
+	 */
+	private int indexOfIncoming(int key, DTNHost from) {
+		/* there's at most one incoming message per connection */
+		for (int i = 0, n = this.incomingMessages.size(); i < n; i++) {
+			if (this.incomingMessages.get(i).getKey() == key &&
+					(from == null || this.incomingFrom.get(i) == from)) {
+				return i;
+			}
+		}
+		return -1;
 	}
 
 	/**
@@ -436,7 +771,7 @@ public abstract class MessageRouter {
 	 * @return True if such message is incoming right now
 	 */
 	protected boolean isIncomingMessage(String id) {
-		return this.incomingMessages.containsKey(id);
+		return indexOfIncoming(Message.getKeyOf(id), null) >= 0;
 	}
 
 	/**
@@ -447,7 +782,23 @@ public abstract class MessageRouter {
 	 * message, if false, nothing is informed.
 	 */
 	protected void addToMessages(Message m, boolean newMessage) {
-		this.messages.put(m.getId(), m);
+		/* a replaced message moves to the end of the buffer */
+		Message old = this.messages.remove(m.getKey());
+		if (old != null) {
+			this.bufferOccupancy -= old.getSize();
+			this.receiveOrder.remove(old);
+			removeFromDestination(old);
+		}
+		this.messages.put(m.getKey(), m);
+		this.bufferOccupancy += m.getSize();
+		this.bufferSeqs.put(m.getKey(), this.nextBufferSeq++);
+		this.receiveOrder.add(m);
+		List<Message> toList = this.messagesByDestination.get(m.getTo());
+		if (toList == null) {
+			toList = new ArrayList<Message>();
+			this.messagesByDestination.put(m.getTo(), toList);
+		}
+		toList.add(m);
 
 		if (newMessage) {
 			for (MessageListener ml : this.mListeners) {
@@ -462,10 +813,25 @@ public abstract class MessageRouter {
 	 * @return The removed message or null if message for the ID wasn't found
 	 */
 	protected Message removeFromMessages(String id) {
-		Message m = this.messages.remove(id);
+		int key = Message.getKeyOf(id);
+		Message m = key < 0 ? null : this.messages.remove(key);
+		if (m != null) {
+			this.bufferOccupancy -= m.getSize();
+			this.receiveOrder.remove(m);
+			this.bufferSeqs.remove(key);
+			removeFromDestination(m);
+		}
 		return m;
 	}
 
+	private void removeFromDestination(Message m) {
+		List<Message> toList = this.messagesByDestination.get(m.getTo());
+		toList.remove(m);
+		if (toList.isEmpty()) {
+			this.messagesByDestination.remove(m.getTo());
+		}
+	}
+
 	/**
 	 * This method should be called (on the receiving host) when a message
 	 * transfer was aborted.
@@ -546,6 +912,15 @@ public abstract class MessageRouter {
 		}
 	}
 
+	public void LogHistoryFilterRejection(Message m, DTNHost from) {
+		for (MessageListener ml : this.mListeners) {
+			if (ml instanceof HistoryFilterReport) {
+				((HistoryFilterReport) ml).historyFilterRejection(m, from,
+						this.host);
+			}
+		}
+	}
+
 	public void LogKeyExchangeFailure(DTNHost from, DTNHost to) {
 		for (MessageListener ml : this.mListeners) {
 			if (ml instanceof EventLogPanel) {
@@ -559,6 +934,14 @@ public abstract class MessageRouter {
 
 
 	// -------------------------------------------------------------
+	/**
+	 * Returns the send queue mode of this router
+	 * @return The send queue mode (e.g. {@link #Q_MODE_FIFO})
+	 */
+	protected int getSendQueueMode() {
+		return this.sendQueueMode;
+	}
+
 	/**
 	 * Sorts/shuffles the given list according to the current sending queue
 	 * mode. The list can contain either Message or Tuple<Message, Connection>
@@ -656,11 +1039,11 @@ public abstract class MessageRouter {
 		ri.addMoreInfo(delivered);
 		ri.addMoreInfo(cons);
 
-		for (Message m : this.incomingMessages.values()) {
+		for (Message m : this.incomingMessages) {
 			incoming.addMoreInfo(new RoutingInfo(m));
 		}
 
-		for (Message m : this.deliveredMessages.values()) {
+		for (Message m : this.deliveredMessages.getRecentMessages()) {
 			delivered.addMoreInfo(new RoutingInfo(m + " path:" + m.getHops()));
 		}
 
@@ -8,10 +8,9 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
+import routing.util.DeliveryPredictabilities;
 import routing.util.RoutingInfo;
 
 import util.Tuple;
@@ -63,7 +62,7 @@ public class ProphetRouter extends ActiveRouter {
 	private double gamma;
 
 	/** delivery predictabilities */
-	private Map<DTNHost, Double> preds;
+	private DeliveryPredictabilities preds;
 	/** last delivery predictability update (sim)time */
 	private double lastAgeUpdate;
 
@@ -109,7 +108,7 @@ public class ProphetRouter extends ActiveRouter {
 	 * Initializes predictability hash
 	 */
 	private void initPreds() {
-		this.preds = new HashMap<DTNHost, Double>();
+		this.preds = new DeliveryPredictabilities();
 	}
 
 	@Override
@@ -131,7 +130,7 @@ public class ProphetRouter extends ActiveRouter {
 	private void updateDeliveryPredFor(DTNHost host) {
 		double oldValue = getPredFor(host);
 		double newValue = oldValue + (1 - oldValue) * P_INIT;
-		preds.put(host, newValue);
+		preds.set(host, newValue);
 	}
 
 	/**
@@ -142,12 +141,7 @@ public class ProphetRouter extends ActiveRouter {
 	 */
 	public double getPredFor(DTNHost host) {
 		ageDeliveryPreds(); // make sure preds are updated before getting
-		if (preds.containsKey(host)) {
-			return preds.get(host);
-		}
-		else {
-			return 0;
-		}
+		return preds.get(host);
 	}
 
 	/**
@@ -162,17 +156,19 @@ public class ProphetRouter extends ActiveRouter {
 			" with other routers of same type";
 
 		double pForHost = getPredFor(host); // P(a,b)
-		Map<DTNHost, Double> othersPreds =
+		DeliveryPredictabilities othersPreds =
 			((ProphetRouter)otherRouter).getDeliveryPreds();
 
-		for (Map.Entry<DTNHost, Double> e : othersPreds.entrySet()) {
-			if (e.getKey() == getHost()) {
+		for (int i = 0, n = othersPreds.size(); i < n; i++) {
+			DTNHost c = othersPreds.getHost(i);
+			if (c == getHost()) {
 				continue; // don't add yourself
 			}
 
-			double pOld = getPredFor(e.getKey()); // P(a,c)_old
-			double pNew = pOld + ( 1 - pOld) * pForHost * e.getValue() * beta;
-			preds.put(e.getKey(), pNew);
+			double pOld = getPredFor(c); // P(a,c)_old
+			double pNew = pOld + ( 1 - pOld) * pForHost *
+				othersPreds.getValue(i) * beta;
+			preds.set(c, pNew);
 		}
 	}
 
@@ -190,19 +186,16 @@ public class ProphetRouter extends ActiveRouter {
 			return;
 		}
 
-		double mult = Math.pow(gamma, timeDiff);
-		for (Map.Entry<DTNHost, Double> e : preds.entrySet()) {
-			e.setValue(e.getValue()*mult);
-		}
+		preds.age(gamma, timeDiff);
 
 		this.lastAgeUpdate = SimClock.getTime();
 	}
 
 	/**
-	 * Returns a map of this router's delivery predictions
-	 * @return a map of this router's delivery predictions
+	 * Returns this router's delivery predictions
+	 * @return this router's delivery predictions
 	 */
-	private Map<DTNHost, Double> getDeliveryPreds() {
+	private DeliveryPredictabilities getDeliveryPreds() {
 		ageDeliveryPreds(); // make sure the aging is done
 		return this.preds;
 	}
@@ -303,9 +296,9 @@ public class ProphetRouter extends ActiveRouter {
 		RoutingInfo ri = new RoutingInfo(preds.size() +
 				" delivery prediction(s)");
 
-		for (Map.Entry<DTNHost, Double> e : preds.entrySet()) {
-			DTNHost host = e.getKey();
-			Double value = e.getValue();
+		for (int i = 0, n = preds.size(); i < n; i++) {
+			DTNHost host = preds.getHost(i);
+			double value = preds.getValue(i);
 
 			ri.addMoreInfo(new RoutingInfo(String.format("%s : %.6f",
 					host, value)));
@@ -12,6 +12,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import routing.util.DeliveryPredictabilities;
 import routing.util.RoutingInfo;
 
 import util.Tuple;
@@ -72,7 +73,7 @@ public class ProphetRouterWithEstimation extends ActiveRouter {
 	private double ptavg;
 
 	/** delivery predictabilities */
-	private Map<DTNHost, Double> preds;
+	private DeliveryPredictabilities preds;
 
 	/** last meeting time with a node */
 	private Map<DTNHost, Double> meetings;
@@ -126,7 +127,7 @@ public class ProphetRouterWithEstimation extends ActiveRouter {
 	 * Initializes predictability hash
 	 */
 	private void initPreds() {
-		this.preds = new HashMap<DTNHost, Double>();
+		this.preds = new DeliveryPredictabilities();
 	}
 
 	/**
@@ -327,7 +328,7 @@ public class ProphetRouterWithEstimation extends ActiveRouter {
 	private void updateDeliveryPredFor(DTNHost host) {
 		double oldValue = getPredFor(host);
 		double newValue = oldValue + (1 - oldValue) * pinit;
-		preds.put(host, newValue);
+		preds.set(host, newValue);
 	}
 
 	/**
@@ -338,12 +339,7 @@ public class ProphetRouterWithEstimation extends ActiveRouter {
 	 */
 	public double getPredFor(DTNHost host) {
 		ageDeliveryPreds(); // make sure preds are updated before getting
-		if (preds.containsKey(host)) {
-			return preds.get(host);
-		}
-		else {
-			return 0;
-		}
+		return preds.get(host);
 	}
 
 	/**
@@ -358,17 +354,19 @@ public class ProphetRouterWithEstimation extends ActiveRouter {
 		" with other routers of same type";
 
 		double pForHost = getPredFor(host); // P(a,b)
-		Map<DTNHost, Double> othersPreds =
+		DeliveryPredictabilities othersPreds =
 			((ProphetRouterWithEstimation)otherRouter).getDeliveryPreds();
 
-		for (Map.Entry<DTNHost, Double> e : othersPreds.entrySet()) {
-			if (e.getKey() == getHost()) {
+		for (int i = 0, n = othersPreds.size(); i < n; i++) {
+			DTNHost c = othersPreds.getHost(i);
+			if (c == getHost()) {
 				continue; // don't add yourself
 			}
 
-			double pOld = getPredFor(e.getKey()); // P(a,c)_old
-			double pNew = pOld + ( 1 - pOld) * pForHost * e.getValue() * beta;
-			preds.put(e.getKey(), pNew);
+			double pOld = getPredFor(c); // P(a,c)_old
+			double pNew = pOld + ( 1 - pOld) * pForHost *
+				othersPreds.getValue(i) * beta;
+			preds.set(c, pNew);
 		}
 	}
 
@@ -384,19 +382,16 @@ public class ProphetRouterWithEstimation extends ActiveRouter {
 			return;
 		}
 
-		double mult = Math.pow(gamma, timeDiff);
-		for (Map.Entry<DTNHost, Double> e : preds.entrySet()) {
-			e.setValue(e.getValue()*mult);
-		}
+		preds.age(gamma, timeDiff);
 
 		this.lastAgeUpdate = SimClock.getTime();
 	}
 
 	/**
-	 * Returns a map of this router's delivery predictions
-	 * @return a map of this router's delivery predictions
+	 * Returns this router's delivery predictions
+	 * @return this router's delivery predictions
 	 */
-	private Map<DTNHost, Double> getDeliveryPreds() {
+	private DeliveryPredictabilities getDeliveryPreds() {
 		ageDeliveryPreds(); // make sure the aging is done
 		return this.preds;
 	}
@@ -497,9 +492,9 @@ public class ProphetRouterWithEstimation extends ActiveRouter {
 		RoutingInfo ri = new RoutingInfo(preds.size() +
 		" delivery prediction(s)");
 
-		for (Map.Entry<DTNHost, Double> e : preds.entrySet()) {
-			DTNHost host = e.getKey();
-			Double value = e.getValue();
+		for (int i = 0, n = preds.size(); i < n; i++) {
+			DTNHost host = preds.getHost(i);
+			double value = preds.getValue(i);
 
 			ri.addMoreInfo(new RoutingInfo(String.format("%s : %.6f",
 					host, value)));
@@ -16,6 +16,7 @@ import java.util.Map;
 
 import java.util.Random;
 
+import routing.util.DeliveryPredictabilities;
 import routing.util.RoutingInfo;
 
 
@@ -69,7 +70,7 @@ public class ProphetV2Router extends ActiveRouter {
 	private double gamma;
 
 	/** delivery predictabilities */
-	private Map<DTNHost, Double> preds;
+	private DeliveryPredictabilities preds;
 
 	/** last encouter timestamp (sim)time */
 	private Map<DTNHost, Double> lastEncouterTime;
@@ -128,7 +129,7 @@ public class ProphetV2Router extends ActiveRouter {
 	 * Initializes predictability hash
 	 */
 	private void initPreds() {
-		this.preds = new HashMap<DTNHost, Double>();
+		this.preds = new DeliveryPredictabilities();
 	}
 
 	@Override
@@ -164,7 +165,7 @@ public class ProphetV2Router extends ActiveRouter {
 
 		double oldValue = getPredFor(host);
 		double newValue = oldValue + (1 - oldValue) * PEnc;
-		preds.put(host, newValue);
+		preds.set(host, newValue);
 		lastEncouterTime.put(host, simTime);
 	}
 
@@ -191,12 +192,7 @@ public class ProphetV2Router extends ActiveRouter {
 	 */
 	public double getPredFor(DTNHost host) {
 		ageDeliveryPreds(); // make sure preds are updated before getting
-		if (preds.containsKey(host)) {
-			return preds.get(host);
-		}
-		else {
-			return 0;
-		}
+		return preds.get(host);
 	}
 
 	/**
@@ -211,19 +207,20 @@ public class ProphetV2Router extends ActiveRouter {
 			"PRoPHETv2 only works with other routers of same type";
 
 		double pForHost = getPredFor(host); // P(a,b)
-		Map<DTNHost, Double> othersPreds =
+		DeliveryPredictabilities othersPreds =
 			((ProphetV2Router)otherRouter).getDeliveryPreds();
 
-		for (Map.Entry<DTNHost, Double> e : othersPreds.entrySet()) {
-			if (e.getKey() == getHost()) {
+		for (int i = 0, n = othersPreds.size(); i < n; i++) {
+			DTNHost c = othersPreds.getHost(i);
+			if (c == getHost()) {
 				continue; // don't add yourself
 			}
 
 //ProphetV2 max(old,new)
-			double pOld = getPredFor(e.getKey()); // P(a,c)_old
-			double pNew = pForHost * e.getValue() * beta;
+			double pOld = getPredFor(c); // P(a,c)_old
+			double pNew = pForHost * othersPreds.getValue(i) * beta;
 			if(pNew>pOld)
-				preds.put(e.getKey(), pNew);
+				preds.set(c, pNew);
 
 		}
 	}
@@ -242,19 +239,16 @@ public class ProphetV2Router extends ActiveRouter {
 			return;
 		}
 
-		double mult = Math.pow(gamma, timeDiff);
-		for (Map.Entry<DTNHost, Double> e : preds.entrySet()) {
-			e.setValue(e.getValue()*mult);
-		}
+		preds.age(gamma, timeDiff);
 
 		this.lastAgeUpdate = SimClock.getTime();
 	}
 
 	/**
-	 * Returns a map of this router's delivery predictions
-	 * @return a map of this router's delivery predictions
+	 * Returns this router's delivery predictions
+	 * @return this router's delivery predictions
 	 */
-	private Map<DTNHost, Double> getDeliveryPreds() {
+	private DeliveryPredictabilities getDeliveryPreds() {
 		ageDeliveryPreds(); // make sure the aging is done
 		return this.preds;
 	}
@@ -356,9 +350,9 @@ public class ProphetV2Router extends ActiveRouter {
 		RoutingInfo ri = new RoutingInfo(preds.size() +
 				" delivery prediction(s)");
 
-		for (Map.Entry<DTNHost, Double> e : preds.entrySet()) {
-			DTNHost host = e.getKey();
-			Double value = e.getValue();
+		for (int i = 0, n = preds.size(); i < n; i++) {
+			DTNHost host = preds.getHost(i);
+			double value = preds.getValue(i);
 
 			ri.addMoreInfo(new RoutingInfo(String.format("%s : %.6f",
 					host, value)));
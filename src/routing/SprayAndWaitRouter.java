@@ -10,6 +10,7 @@ import java.util.List;
 import core.Connection;
 import core.DTNHost;
 import core.Message;
+import core.MessageProperty;
 import core.Settings;
 
 /**
@@ -28,6 +29,9 @@ public class SprayAndWaitRouter extends ActiveRouter {
 	/** Message property key */
 	public static final String MSG_COUNT_PROPERTY = SPRAYANDWAIT_NS + "." +
 		"copies";
+	/** The message property of the number of copies */
+	private static final MessageProperty<Integer> MSG_COUNT =
+		MessageProperty.register(MSG_COUNT_PROPERTY, Integer.class);
 
 	protected int initialNrofCopies;
 	protected boolean isBinary;
@@ -58,7 +62,7 @@ public class SprayAndWaitRouter extends ActiveRouter {
 	@Override
 	public Message messageTransferred(String id, DTNHost from) {
 		Message msg = super.messageTransferred(id, from);
-		Integer nrofCopies = (Integer)msg.getProperty(MSG_COUNT_PROPERTY);
+		Integer nrofCopies = msg.getProperty(MSG_COUNT);
 
 		assert nrofCopies != null : "Not a SnW message: " + msg;
 
@@ -71,7 +75,7 @@ public class SprayAndWaitRouter extends ActiveRouter {
 			nrofCopies = 1;
 		}
 
-		msg.updateProperty(MSG_COUNT_PROPERTY, nrofCopies);
+		msg.updateProperty(MSG_COUNT, nrofCopies);
 		return msg;
 	}
 
@@ -80,7 +84,7 @@ public class SprayAndWaitRouter extends ActiveRouter {
 		makeRoomForNewMessage(msg.getSize());
 
 		msg.setTtl(this.msgTtl);
-		msg.addProperty(MSG_COUNT_PROPERTY, new Integer(initialNrofCopies));
+		msg.addProperty(MSG_COUNT, initialNrofCopies);
 		addToMessages(msg, true);
 		return true;
 	}
@@ -116,7 +120,7 @@ public class SprayAndWaitRouter extends ActiveRouter {
 		List<Message> list = new ArrayList<Message>();
 
 		for (Message m : getMessageCollection()) {
-			Integer nrofCopies = (Integer)m.getProperty(MSG_COUNT_PROPERTY);
+			Integer nrofCopies = m.getProperty(MSG_COUNT);
 			assert nrofCopies != null : "SnW message " + m + " didn't have " +
 				"nrof copies property!";
 			if (nrofCopies > 1) {
@@ -137,16 +141,15 @@ public class SprayAndWaitRouter extends ActiveRouter {
 	@Override
 	protected void transferDone(Connection con) {
 		Integer nrofCopies;
-		String msgId = con.getMessage().getId();
 		/* get this router's copy of the message */
-		Message msg = getMessage(msgId);
+		Message msg = getMessage(con.getMessage().getKey());
 
 		if (msg == null) { // message has been dropped from the buffer after..
 			return; // ..start of transfer -> no need to reduce amount of copies
 		}
 
 		/* reduce the amount of copies left */
-		nrofCopies = (Integer)msg.getProperty(MSG_COUNT_PROPERTY);
+		nrofCopies = msg.getProperty(MSG_COUNT);
 		if (isBinary) {
 			/* in binary S'n'W the sending node keeps ceil(n/2) copies */
 			nrofCopies = (int)Math.ceil(nrofCopies/2.0);
@@ -154,7 +157,7 @@ public class SprayAndWaitRouter extends ActiveRouter {
 		else {
 			nrofCopies--;
 		}
-		msg.updateProperty(MSG_COUNT_PROPERTY, nrofCopies);
+		msg.updateProperty(MSG_COUNT, nrofCopies);
 	}
 
 	@Override
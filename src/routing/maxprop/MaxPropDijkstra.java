@@ -4,33 +4,41 @@
  */
 package routing.maxprop;
 
-import java.util.Collection;
-import java.util.Comparator;
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Map;
-import java.util.PriorityQueue;
-import java.util.Queue;
 import java.util.Set;
 
 /**
  * Dijkstra's shortest path implementation for MaxProp Router module.
+ * Nodes are handled by their indexes (addresses): the distances and the
+ * state of the nodes are kept in arrays indexed by the node index, and the
+ * unvisited nodes are in a binary heap that supports decreasing the
+ * distance of a node in place. The arrays are reused between searches.
  */
 public class MaxPropDijkstra {
 	/** Value for infinite distance  */
-	private static final Double INFINITY = Double.MAX_VALUE;
-	/** Initial size of the priority queue */
-	private static final int PQ_INIT_SIZE = 11;
-
-	/** Map of node distances from the source node */
-	private DistanceMap distancesFromStart;
-	/** Set of already visited nodes (where the shortest path is known) */
-	private Set<Integer> visited;
-	/** Priority queue of unvisited nodes discovered so far */
-	private Queue<Integer> unvisited;
-	/** Map of previous nodes on the shortest path(s) -- only used for
-	 * debugging purposes */
-	private Map<Integer, Integer> prevNodes;
+	private static final double INFINITY = Double.MAX_VALUE;
+	/** Initial size of the node arrays */
+	private static final int INIT_SIZE = 16;
+
+	/** Distances of the nodes from the source node; valid only for the nodes
+	 * whose {@link #seen} value equals the current search number */
+	private double[] distancesFromStart;
+	/** Number of the search where the node's distance was last set */
+	private int[] seen;
+	/** Number of the search where the node was visited (the shortest path
+	 * to the node is known) */
+	private int[] visited;
+	/** Number of the search where the node was one of the targets */
+	private int[] targets;
+	/** Heap of unvisited nodes discovered so far, ordered by distance */
+	private int[] heap;
+	private int heapSize;
+	/** Positions of the nodes in the heap, or -1 for nodes not in it */
+	private int[] heapIndex;
+	/** Number of the current search */
+	private int search;
 	/** Mapping of to other nodes' (whom this node has met) probability sets */
 	private Map<Integer, MeetingProbabilitySet> probs;
 
@@ -41,22 +49,30 @@ public class MaxPropDijkstra {
 	 */
 	public MaxPropDijkstra(Map<Integer, MeetingProbabilitySet> probs) {
 		this.probs = probs;
+		this.distancesFromStart = new double[INIT_SIZE];
+		this.seen = new int[INIT_SIZE];
+		this.visited = new int[INIT_SIZE];
+		this.targets = new int[INIT_SIZE];
+		this.heap = new int[INIT_SIZE];
+		this.heapIndex = new int[INIT_SIZE];
+		Arrays.fill(this.heapIndex, -1);
+		this.search = 0;
 	}
 
 	/**
 	 * Initializes a new search with the first hop router node
 	 * @param firstHop The first hop router node
 	 */
-	private void initWith(Integer firstHop) {
-		this.unvisited = new PriorityQueue<Integer>(PQ_INIT_SIZE,
-				new DistanceComparator());
-		this.visited = new HashSet<Integer>();
-		this.prevNodes = new HashMap<Integer, Integer>();
-		this.distancesFromStart = new DistanceMap();
+	private void initWith(int firstHop) {
+		for (int i = 0; i < this.heapSize; i++) {
+			this.heapIndex[this.heap[i]] = -1;
+		}
+		this.heapSize = 0;
+		this.search++;
 
 		// set distance to source 0 and initialize unvisited queue
-		this.distancesFromStart.put(firstHop, 0);
-		this.unvisited.add(firstHop);
+		ensureCapacity(firstHop);
+		setDistance(firstHop, 0);
 	}
 
 	/**
@@ -72,20 +88,24 @@ public class MaxPropDijkstra {
 		int nrofNodesToFind = to.size();
 
 		initWith(from);
-		Integer node = null;
+		for (Integer t : to) {
+			ensureCapacity(t);
+			this.targets[t] = this.search;
+		}
 
 		// always take the node with shortest distance
-		while ((node = unvisited.poll()) != null) {
-			if (to.contains(node)) {
+		while (this.heapSize > 0) {
+			int node = poll();
+			if (this.targets[node] == this.search) {
 				// found one of the requested nodes
-				distMap.put(node, distancesFromStart.get(node));
+				distMap.put(node, this.distancesFromStart[node]);
 				nrofNodesToFind--;
 				if (nrofNodesToFind == 0) {
 					break; // all requested nodes found
 				}
 			}
 
-			visited.add(node); // mark the node as visited
+			this.visited[node] = this.search; // mark the node as visited
 			relax(node);       // add/update neighbor nodes' distances
 		}
 
@@ -94,131 +114,144 @@ public class MaxPropDijkstra {
 
 	/**
 	 * Relaxes the neighbors of a node (updates the shortest distances).
+	 * The "distance" between two nodes is the complement of the
+	 * probability that the next node "from" meets is "to".
 	 * @param node The node whose neighbors are relaxed
 	 */
-	private void relax(Integer node) {
-		double nodeDist = distancesFromStart.get(node);
-		Collection<Integer> neighbors;
+	private void relax(int node) {
+		double nodeDist = this.distancesFromStart[node];
+		MeetingProbabilitySet mps = this.probs.get(node);
 
-		if (!this.probs.containsKey(node)) {
+		if (mps == null) {
 			return; // node's neighbors are not known
 		}
 
-		neighbors =	this.probs.get(node).getAllProbs().keySet();
-
-		for (Integer n : neighbors) {
-			if (visited.contains(n)) {
+		for (Map.Entry<Integer, Double> e : mps.getAllProbs().entrySet()) {
+			int n = e.getKey();
+			ensureCapacity(n);
+			if (this.visited[n] == this.search) {
 				continue; // skip visited nodes
 			}
 
 			// n node's distance from path's source node
-			double nDist = nodeDist + getDistance(node, n);
+			double nDist = nodeDist + (1 - e.getValue());
 
-			if (distancesFromStart.get(n) > nDist) {
+			if (getDistance(n) > nDist) {
 				// stored distance > found dist -> update
-				prevNodes.put(n, node); // for debugging
 				setDistance(n, nDist);
 			}
 		}
 	}
 
 	/**
-	 * Sets the distance from source node to a node
-	 * @param n The node whose distance is set
-	 * @param distance The distance of the node from the source node
+	 * Returns the distance of a node from the source node
+	 * @param n The node
+	 * @return The distance or {@link #INFINITY} if the node hasn't been
+	 * reached
 	 */
-	private void setDistance(Integer n, double distance) {
-		unvisited.remove(n); // remove node from old place in the queue
-		distancesFromStart.put(n, distance); // update distance
-		unvisited.add(n); // insert node to the new place in the queue
+	private double getDistance(int n) {
+		return this.seen[n] == this.search ? this.distancesFromStart[n] :
+			INFINITY;
 	}
 
 	/**
-	 * Returns the "distance" between two nodes, i.e., the complement of the
-	 * probability that the next node "from" meets is "to". Works only if there
-	 * exist a probability value for "from" meeting "to".
-	 * @param from The first node
-	 * @param to The second node
-	 * @return The distance between the two nodes
+	 * Sets the distance from source node to a node and moves the node to
+	 * its place in the heap
+	 * @param n The node whose distance is set
+	 * @param distance The distance of the node from the source node
 	 */
-	private double getDistance(Integer from, Integer to) {
-		assert probs.containsKey(from) : "Node " + from + " has not met " + to +
-			" (it has met nodes " + probs.keySet() + ")";
-		return ( 1 - probs.get(from).getProbFor(to) );
+	private void setDistance(int n, double distance) {
+		this.distancesFromStart[n] = distance;
+		this.seen[n] = this.search;
+		if (this.heapIndex[n] < 0) {
+			this.heap[this.heapSize] = n;
+			this.heapIndex[n] = this.heapSize;
+			this.heapSize++;
+		}
+		siftUp(this.heapIndex[n]); /* distance can only decrease */
 	}
 
 	/**
-	 * Comparator that compares two nodes by their distance from
-	 * the source node.
+	 * Removes and returns the unvisited node with the shortest distance
+	 * @return The node
 	 */
-	private class DistanceComparator implements
-		Comparator<Integer> {
-
-		/**
-		 * Compares two map nodes by their distance from the source node
-		 * @return -1, 0 or 1 if node1's distance is smaller, equal to, or
-		 * bigger than node2's distance
-		 */
-		public int compare(Integer node1, Integer node2) {
-			double dist1 = distancesFromStart.get(node1);
-			double dist2 = distancesFromStart.get(node2);
-
-			if (dist1 > dist2) {
-				return 1;
-			}
-			else if (dist1 < dist2) {
-				return -1;
-			}
-			else {
-				return node1.compareTo(node2);
-			}
+	private int poll() {
+		int first = this.heap[0];
+		this.heapIndex[first] = -1;
+		this.heapSize--;
+		if (this.heapSize > 0) {
+			int last = this.heap[this.heapSize];
+			this.heap[0] = last;
+			this.heapIndex[last] = 0;
+			siftDown(0);
 		}
+		return first;
 	}
 
-	/**
-	 * Simple Map implementation for storing distances.
-	 */
-	private class DistanceMap {
-		private HashMap<Integer, Double> map;
-
-		/**
-		 * Constructor. Creates an empty distance map
-		 */
-		public DistanceMap() {
-			this.map = new HashMap<Integer, Double>();
+	private void siftUp(int i) {
+		int node = this.heap[i];
+		while (i > 0) {
+			int parent = (i - 1) / 2;
+			if (!isCloser(node, this.heap[parent])) {
+				break;
+			}
+			this.heap[i] = this.heap[parent];
+			this.heapIndex[this.heap[i]] = i;
+			i = parent;
 		}
+		this.heap[i] = node;
+		this.heapIndex[node] = i;
+	}
 
-		/**
-		 * Returns the distance to a node. If no distance value
-		 * is found, returns {@link MaxPropDijkstra#INFINITY} as the value.
-		 * @param node The node whose distance is requested
-		 * @return The distance to that node
-		 */
-		public double get(Integer node) {
-			Double value = map.get(node);
-			if (value != null) {
-				return value;
+	private void siftDown(int i) {
+		int node = this.heap[i];
+		while (true) {
+			int child = 2 * i + 1;
+			if (child >= this.heapSize) {
+				break;
+			}
+			if (child + 1 < this.heapSize &&
+					isCloser(this.heap[child + 1], this.heap[child])) {
+				child++;
 			}
-			else {
-				return INFINITY;
+			if (!isCloser(this.heap[child], node)) {
+				break;
 			}
+			this.heap[i] = this.heap[child];
+			this.heapIndex[this.heap[i]] = i;
+			i = child;
 		}
+		this.heap[i] = node;
+		this.heapIndex[node] = i;
+	}
 
-		/**
-		 * Puts a new distance value for a map node
-		 * @param node The node
-		 * @param distance Distance to that node
-		 */
-		public void  put(Integer node, double distance) {
-			map.put(node, distance);
-		}
+	/**
+	 * Compares two nodes by their distance from the source node. Nodes with
+	 * equal distances are ordered by their indexes.
+	 * @return true if node1 should be visited before node2
+	 */
+	private boolean isCloser(int node1, int node2) {
+		double dist1 = this.distancesFromStart[node1];
+		double dist2 = this.distancesFromStart[node2];
+		return dist1 < dist2 || (dist1 == dist2 && node1 < node2);
+	}
 
-		/**
-		 * Returns a string representation of the map's contents
-		 * @return a string representation of the map's contents
-		 */
-		public String toString() {
-			return map.toString();
+	/**
+	 * Makes sure that the node arrays have room for the given node index
+	 * @param n The node index
+	 */
+	private void ensureCapacity(int n) {
+		if (n < this.seen.length) {
+			return;
 		}
+		int size = Math.max(n + 1, 2 * this.seen.length);
+		int oldSize = this.seen.length;
+		this.distancesFromStart = Arrays.copyOf(this.distancesFromStart, size);
+		this.seen = Arrays.copyOf(this.seen, size);
+		this.visited = Arrays.copyOf(this.visited, size);
+		this.targets = Arrays.copyOf(this.targets, size);
+		this.heap = Arrays.copyOf(this.heap, size);
+		this.heapIndex = Arrays.copyOf(this.heapIndex, size);
+		Arrays.fill(this.heapIndex, oldSize, size, -1);
 	}
 }
@@ -0,0 +1,179 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing.util;
+
+import kem.RandomSource;
+import kem.Rng;
+import movement.MovementModel;
+import core.DTNHost;
+import core.MessageProperty;
+import core.Settings;
+import core.SettingsError;
+
+/**
+ * Key exchange primitives (KEM key pair, encapsulation, signing and
+ * verification) used by the KEM routers. Keys, ciphertexts and signatures
+ * are opaque objects that the routers only pass around in message
+ * properties. Each host has its own instance, created by replicating a
+ * prototype from {@link #create(Settings)}.
+ */
+public abstract class CryptoBackend {
+	/** Crypto backend -setting id ({@value}). Valid values are
+	 * {@link #REAL} (default) and {@link #MODELLED}. */
+	public static final String CRYPTO_BACKEND_S = "cryptoBackend";
+	/** Backend that runs the real lattice cryptography */
+	public static final String REAL = "real";
+	/** Backend that only models the cost and sizes of the cryptography */
+	public static final String MODELLED = "modelled";
+
+	/** Randomness mode of the key exchange -setting id ({@value}).
+	 * One of "secure" (SecureRandom, default), "bulk" (SecureRandom bytes
+	 * sampled in bulk) or "seeded" (deterministic per host stream derived
+	 * from MovementModel.rngSeed and the host address). */
+	public static final String KEM_RNG_S = "kemRng";
+
+	/** Message property of the public key or the ciphertext of a key
+	 * exchange message */
+	public static final MessageProperty<Object> DATA_PROPERTY =
+		MessageProperty.register("data", Object.class);
+	/** Message property of the signature over an encapsulated secret */
+	public static final MessageProperty<Object> SIGNATURE_PROPERTY =
+		MessageProperty.register("signature", Object.class);
+	/** Message property of the key for verifying the signature */
+	public static final MessageProperty<Object> VERIFY_KEY_PROPERTY =
+		MessageProperty.register("VerifyKey", Object.class);
+	/** Message property of the host whose public key a message carries */
+	public static final MessageProperty<String> HOST_ID_PROPERTY =
+		MessageProperty.register("hostId", String.class);
+
+	private final String rngMode;
+	private final long rngSeed;
+	/** Randomness source of this host, set in {@link #init(DTNHost)} */
+	protected RandomSource rng;
+
+	/**
+	 * Result of encapsulating a new shared secret for a peer.
+	 */
+	public static class Encapsulation {
+		/** The shared secret */
+		public final int[] sharedSecret;
+		/** Ciphertext of the secret */
+		public final Object ciphertext;
+		/** Signature over the secret */
+		public final Object signature;
+		/** Key for verifying the signature */
+		public final Object verifyKey;
+		/** Transfer size of ciphertext, signature and verify key (bytes) */
+		public final int size;
+
+		public Encapsulation(int[] sharedSecret, Object ciphertext,
+				Object signature, Object verifyKey, int size) {
+			this.sharedSecret = sharedSecret;
+			this.ciphertext = ciphertext;
+			this.signature = signature;
+			this.verifyKey = verifyKey;
+			this.size = size;
+		}
+	}
+
+	/**
+	 * Constructor.
+	 * @param s The settings object of the router's namespace
+	 */
+	protected CryptoBackend(Settings s) {
+		this.rngMode = s.getSetting(KEM_RNG_S, Rng.MODE_SECURE);
+		this.rngSeed = new Settings(MovementModel.MOVEMENT_MODEL_NS).getInt(
+				MovementModel.RNG_SEED, 0);
+		try {
+			Rng.create(rngMode, rngSeed, 0);
+		} catch (IllegalArgumentException e) {
+			throw new SettingsError("Invalid value for " +
+					s.getFullPropertyName(KEM_RNG_S) + ": " + rngMode);
+		}
+	}
+
+	/**
+	 * Copy constructor.
+	 * @param proto The prototype where setting values are copied from
+	 */
+	protected CryptoBackend(CryptoBackend proto) {
+		this.rngMode = proto.rngMode;
+		this.rngSeed = proto.rngSeed;
+	}
+
+	/**
+	 * Creates a backend prototype of the type given in the
+	 * {@link #CRYPTO_BACKEND_S} setting.
+	 * @param s The settings object of the router's namespace
+	 * @return The prototype
+	 */
+	public static CryptoBackend create(Settings s) {
+		String type = s.getSetting(CRYPTO_BACKEND_S, REAL);
+		if (type.equals(REAL)) {
+			return new RealCryptoBackend(s);
+		} else if (type.equals(MODELLED)) {
+			return new ModelledCryptoBackend(s);
+		}
+		throw new SettingsError("Invalid value for " +
+				s.getFullPropertyName(CRYPTO_BACKEND_S) + ": " + type);
+	}
+
+	/**
+	 * Returns a fresh copy of this (prototype) backend.
+	 */
+	public abstract CryptoBackend replicate();
+
+	/**
+	 * Initializes the backend for a host and generates its key pairs.
+	 * @param host The host that uses this backend
+	 */
+	public void init(DTNHost host) {
+		this.rng = Rng.create(rngMode, rngSeed, host.getAddress());
+		generateKeys();
+	}
+
+	/**
+	 * Generates the KEM and signing key pairs of the host.
+	 */
+	protected abstract void generateKeys();
+
+	/**
+	 * Returns the KEM public key of the host.
+	 */
+	public abstract Object getPublicKey();
+
+	/**
+	 * Returns the transfer size of the KEM public key (bytes).
+	 */
+	public int getPublicKeySize() {
+		return getPublicKeySize(getPublicKey());
+	}
+
+	/**
+	 * Returns the transfer size of a KEM public key (bytes), e.g. of some
+	 * other host's key that is forwarded.
+	 * @param publicKey The public key (from {@link #getPublicKey()} of a
+	 * backend of the same type)
+	 */
+	public abstract int getPublicKeySize(Object publicKey);
+
+	/**
+	 * Creates a new shared secret, encapsulates it for a peer and signs it.
+	 * @param peerPublicKey The KEM public key of the peer
+	 * @return The secret and what the peer needs to recover and verify it
+	 */
+	public abstract Encapsulation encapsulate(Object peerPublicKey);
+
+	/**
+	 * Recovers a shared secret encapsulated for this host and verifies its
+	 * signature.
+	 * @param ciphertext The ciphertext
+	 * @param verifyKey Key for verifying the signature
+	 * @param signature The signature
+	 * @return The shared secret, or null if the signature did not verify
+	 */
+	public abstract int[] decapsulate(Object ciphertext, Object verifyKey,
+			Object signature);
+}
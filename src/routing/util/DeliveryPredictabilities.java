@@ -0,0 +1,136 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing.util;
+
+import java.util.Arrays;
+
+import core.DTNHost;
+
+/**
+ * Delivery predictabilities of a PRoPHET router. The values are stored in
+ * an array indexed by the network addresses of the hosts and share one
+ * aging exponent: aging all the values adds to the exponent instead of
+ * multiplying every value, so it takes constant time. The hosts with a
+ * value are also kept in a list so that they can be iterated without
+ * going through the whole array.
+ */
+public class DeliveryPredictabilities {
+	/** the scale exponent where the stored values are rescaled so that
+	 * they don't overflow when new values are set */
+	private static final double MIN_LOG_SCALE = -300;
+
+	/** stored values by host address; the values are these times scale */
+	private double[] values;
+	/** natural logarithm of the common scale of the values */
+	private double logScale;
+	/** the common scale of the values (e to the power of logScale) */
+	private double scale;
+	/** hosts that have a value, in the order the values were set */
+	private DTNHost[] hosts;
+	private int size;
+
+	/**
+	 * Creates a store without any values
+	 */
+	public DeliveryPredictabilities() {
+		this.values = new double[0];
+		this.hosts = new DTNHost[8];
+		this.size = 0;
+		this.logScale = 0;
+		this.scale = 1;
+	}
+
+	/**
+	 * Returns the predictability for a host
+	 * @param host The host
+	 * @return The predictability or 0 if the host has no value
+	 */
+	public double get(DTNHost host) {
+		int address = host.getAddress();
+		if (address >= this.values.length) {
+			return 0;
+		}
+		return this.values[address] * this.scale;
+	}
+
+	/**
+	 * Sets the predictability for a host
+	 * @param host The host
+	 * @param value The new value
+	 */
+	public void set(DTNHost host, double value) {
+		int address = host.getAddress();
+		if (address >= this.values.length) {
+			this.values = Arrays.copyOf(this.values,
+					Math.max(address + 1, 2 * this.values.length));
+		}
+		if (this.values[address] == 0) {
+			if (value == 0) {
+				return; /* nothing to store */
+			}
+			if (this.size == this.hosts.length) {
+				this.hosts = Arrays.copyOf(this.hosts, 2 * this.size);
+			}
+			this.hosts[this.size++] = host;
+		}
+		/* a stored zero would mean that the host has no value */
+		this.values[address] = Math.max(value / this.scale, Double.MIN_VALUE);
+	}
+
+	/**
+	 * Multiplies all the values by <CODE>gamma ^ timeUnits</CODE>
+	 * @param gamma The aging constant
+	 * @param timeUnits Number of time units to age the values
+	 */
+	public void age(double gamma, double timeUnits) {
+		this.logScale += timeUnits * Math.log(gamma);
+		if (this.logScale < MIN_LOG_SCALE) {
+			rescale();
+		}
+		this.scale = Math.exp(this.logScale);
+	}
+
+	/**
+	 * Moves the common scale to the stored values
+	 */
+	private void rescale() {
+		double s = Math.exp(this.logScale);
+		for (int i = 0; i < this.size; i++) {
+			int address = this.hosts[i].getAddress();
+			double v = this.values[address] * s;
+			/* keep values that underflow among the set values */
+			this.values[address] = v > 0 ? v : Double.MIN_VALUE;
+		}
+		this.logScale = 0;
+	}
+
+	/**
+	 * Returns the number of hosts that have a value
+	 * @return the number of hosts that have a value
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 * Returns the host of the value at the given index. Indexes go from 0
+	 * to {@link #size()}-1 in the order the hosts got their first values.
+	 * @param index The index
+	 * @return The host
+	 */
+	public DTNHost getHost(int index) {
+		return this.hosts[index];
+	}
+
+	/**
+	 * Returns the value at the given index
+	 * @param index The index
+	 * @return The predictability
+	 * @see #getHost(int)
+	 */
+	public double getValue(int index) {
+		return get(this.hosts[index]);
+	}
+}
@@ -0,0 +1,244 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing.util;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+
+import util.IntHashMap;
+
+import core.Message;
+
+/**
+ * Set of messages a router has seen (e.g., received as the final
+ * recipient), keyed by the keys of the message IDs
+ * (see {@link Message#getKey()}). The most recently added messages are kept
+ * exactly. When the history has a limited size, older keys are moved to a
+ * compact set of keys that doesn't keep the messages: either a bit set
+ * (exact) or a Bloom filter that can give false positives with the given
+ * rate but whose size depends only on the number of keys in it.
+ */
+public class MessageHistory {
+	/** Value for unlimited number of exactly kept messages */
+	public static final int UNLIMITED = 0;
+	/** Smallest number of keys a Bloom filter stage is sized for */
+	private static final int MIN_STAGE_CAPACITY = 64;
+
+	/** how many messages are kept exactly (or {@link #UNLIMITED}) */
+	private final int recentSize;
+	/** acceptable false positive rate of the older keys (0 for exact) */
+	private final double falsePositiveRate;
+
+	/** the exactly kept messages */
+	private IntHashMap<Message> recent;
+	/** keys of the exactly kept messages in the order they were added
+	 * (a ring buffer starting at index first); only for limited size */
+	private int[] recentOrder;
+	private int first;
+	/** older keys when the false positive rate is 0 */
+	private BitSet oldKeys;
+	/** Bloom filter stages of the older keys, the last one is filled */
+	private List<BloomStage> stages;
+	/** number of keys in the history */
+	private int size;
+
+	/**
+	 * Creates an empty history
+	 * @param recentSize How many messages are kept exactly (or
+	 * {@link #UNLIMITED} for all)
+	 * @param falsePositiveRate Acceptable rate of false positives for the
+	 * older keys, or 0 for keeping also them exactly
+	 */
+	public MessageHistory(int recentSize, double falsePositiveRate) {
+		assert recentSize >= 0 && falsePositiveRate >= 0 &&
+			falsePositiveRate < 1;
+		this.recentSize = recentSize;
+		this.falsePositiveRate = falsePositiveRate;
+		this.recent = new IntHashMap<Message>();
+		if (recentSize != UNLIMITED) {
+			this.recentOrder = new int[recentSize];
+			if (falsePositiveRate == 0) {
+				this.oldKeys = new BitSet();
+			}
+			else {
+				this.stages = new ArrayList<BloomStage>();
+			}
+		}
+		this.size = 0;
+	}
+
+	/**
+	 * Adds a message to the history if it isn't there yet
+	 * @param key Key of the message's ID
+	 * @param m The message (can be null)
+	 */
+	public void add(int key, Message m) {
+		if (contains(key)) {
+			return;
+		}
+		if (this.recentOrder != null &&
+				this.recent.size() == this.recentSize) {
+			/* move the oldest exactly kept key to the older keys */
+			int oldest = this.recentOrder[this.first];
+			this.recent.remove(oldest);
+			this.first = (this.first + 1) % this.recentSize;
+			addOld(oldest);
+		}
+		if (this.recentOrder != null) {
+			this.recentOrder[(this.first + this.recent.size()) %
+			                 this.recentSize] = key;
+		}
+		this.recent.put(key, m);
+		this.size++;
+	}
+
+	private void addOld(int key) {
+		if (this.oldKeys != null) {
+			this.oldKeys.set(key);
+			return;
+		}
+
+		int n = this.stages.size();
+		if (n == 0 || this.stages.get(n - 1).isFull()) {
+			/* every new stage has twice the capacity and half the false
+			 * positive rate of the previous, so the total rate stays below
+			 * the given rate */
+			int capacity =
+				Math.max(MIN_STAGE_CAPACITY, this.recentSize) << n;
+			double rate = this.falsePositiveRate / (2L << n);
+			this.stages.add(new BloomStage(capacity, rate));
+			n++;
+		}
+		this.stages.get(n - 1).add(key);
+	}
+
+	/**
+	 * Returns true if the key is in the history. Keys that are not among
+	 * the exactly kept ones can be false positives.
+	 * @param key Key of the message's ID
+	 * @return true if the key is (or may be) in the history
+	 */
+	public boolean contains(int key) {
+		return this.recent.containsKey(key) || containsOld(key);
+	}
+
+	/**
+	 * Returns true if the key is among the exactly kept keys
+	 * @param key Key of the message's ID
+	 * @return true if the key is among the most recently added keys
+	 */
+	public boolean isRecent(int key) {
+		return this.recent.containsKey(key);
+	}
+
+	private boolean containsOld(int key) {
+		if (this.oldKeys != null) {
+			return this.oldKeys.get(key);
+		}
+		if (this.stages != null) {
+			for (int i = 0, n = this.stages.size(); i < n; i++) {
+				if (this.stages.get(i).contains(key)) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Adds the keys of the history to a bit set. Keys that are only in a
+	 * Bloom filter can't be listed and are not added.
+	 * @param keys The bit set to add the keys to
+	 */
+	public void addKeysTo(BitSet keys) {
+		this.recent.forEachKey(keys::set);
+		if (this.oldKeys != null) {
+			keys.or(this.oldKeys);
+		}
+	}
+
+	/**
+	 * Returns the number of keys added to the history
+	 * @return the number of keys in the history
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 * Returns the exactly kept messages
+	 * @return the exactly kept messages
+	 */
+	public Collection<Message> getRecentMessages() {
+		return this.recent.values();
+	}
+
+	/**
+	 * A Bloom filter for a limited number of keys
+	 */
+	private static class BloomStage {
+		private final long[] bits;
+		private final int nrofBits;
+		private final int nrofHashes;
+		private final int capacity;
+		private int count;
+
+		/**
+		 * Creates a filter with the optimal size and number of hash
+		 * functions for the capacity and the false positive rate
+		 */
+		public BloomStage(int capacity, double rate) {
+			double ln2 = Math.log(2);
+			long m = (long)Math.ceil(-capacity * Math.log(rate) /
+					(ln2 * ln2));
+			this.nrofBits = (int)Math.min(Integer.MAX_VALUE - 63, m);
+			this.nrofHashes = Math.max(1,
+					(int)Math.round((double)this.nrofBits / capacity * ln2));
+			this.bits = new long[(this.nrofBits + 63) / 64];
+			this.capacity = capacity;
+			this.count = 0;
+		}
+
+		public boolean isFull() {
+			return this.count >= this.capacity;
+		}
+
+		public void add(int key) {
+			long h = hash(key);
+			int h1 = (int)h;
+			int h2 = (int)(h >>> 32) | 1;
+			for (int i = 0; i < this.nrofHashes; i++) {
+				int bit = Math.floorMod(h1 + i * h2, this.nrofBits);
+				this.bits[bit >>> 6] |= 1L << bit;
+			}
+			this.count++;
+		}
+
+		public boolean contains(int key) {
+			long h = hash(key);
+			int h1 = (int)h;
+			int h2 = (int)(h >>> 32) | 1;
+			for (int i = 0; i < this.nrofHashes; i++) {
+				int bit = Math.floorMod(h1 + i * h2, this.nrofBits);
+				if ((this.bits[bit >>> 6] & (1L << bit)) == 0) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		/**
+		 * Mixes the bits of a key to two 32 bit hashes
+		 */
+		private static long hash(int key) {
+			long h = key * 0x9E3779B97F4A7C15L;
+			h ^= h >>> 31;
+			h *= 0xBF58476D1CE4E5B9L;
+			return h ^ (h >>> 29);
+		}
+	}
+}
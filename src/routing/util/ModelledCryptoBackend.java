@@ -0,0 +1,95 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing.util;
+
+import kem.Kem;
+import sign.Dilithium;
+import core.Settings;
+
+/**
+ * Crypto backend that skips the lattice math. Keys, ciphertexts and
+ * signatures are opaque tokens with the (expected) sizes of the real ones
+ * and a secret decapsulates successfully exactly when the ciphertext was
+ * made for the decapsulating host's public key. Shared secrets are still
+ * drawn from the host's randomness source.
+ */
+public class ModelledCryptoBackend extends CryptoBackend {
+	/** Expected length of the encoded KEM public key: two polynomials of
+	 * N decimal coefficients in [0, Q), on average ~4.1 digits each */
+	public static final int PUBLIC_KEY_SIZE = 2096;
+	/** Expected length of the encoded ciphertext, as for the public key */
+	public static final int CIPHERTEXT_SIZE = 2096;
+	/** Length of a Dilithium signature */
+	public static final int SIGNATURE_SIZE = sign.Utils.getSigLength();
+	/** Length of an encoded Dilithium public key */
+	public static final int VERIFY_KEY_SIZE = Dilithium.SEEDBYTES +
+			Dilithium.k * Dilithium.POLYT1_PACKEDBYTES;
+
+	/** Placeholder for signatures and verify keys */
+	private static final Object SIGNATURE = new Object();
+
+	private Object publicKey;
+
+	/**
+	 * Ciphertext token carrying the secret and the key it was made for.
+	 */
+	private static class Ciphertext {
+		private final Object recipientKey;
+		private final int[] sharedSecret;
+
+		private Ciphertext(Object recipientKey, int[] sharedSecret) {
+			this.recipientKey = recipientKey;
+			this.sharedSecret = sharedSecret.clone();
+		}
+	}
+
+	public ModelledCryptoBackend(Settings s) {
+		super(s);
+	}
+
+	protected ModelledCryptoBackend(ModelledCryptoBackend proto) {
+		super(proto);
+	}
+
+	@Override
+	public ModelledCryptoBackend replicate() {
+		return new ModelledCryptoBackend(this);
+	}
+
+	@Override
+	protected void generateKeys() {
+		publicKey = new Object();
+	}
+
+	@Override
+	public Object getPublicKey() {
+		return publicKey;
+	}
+
+	@Override
+	public int getPublicKeySize(Object publicKey) {
+		return PUBLIC_KEY_SIZE;
+	}
+
+	@Override
+	public Encapsulation encapsulate(Object peerPublicKey) {
+		int[] sharedSecret = new int[Kem.N];
+		rng.sampleNoise(sharedSecret);
+
+		return new Encapsulation(sharedSecret,
+				new Ciphertext(peerPublicKey, sharedSecret), SIGNATURE,
+				SIGNATURE, CIPHERTEXT_SIZE + SIGNATURE_SIZE + VERIFY_KEY_SIZE);
+	}
+
+	@Override
+	public int[] decapsulate(Object ciphertext, Object verifyKey,
+			Object signature) {
+		Ciphertext ct = (Ciphertext)ciphertext;
+		if (ct.recipientKey != publicKey) {
+			return null;
+		}
+		return ct.sharedSecret.clone();
+	}
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing.util;
+
+import java.security.KeyPair;
+
+import kem.CipherText;
+import kem.Kem;
+import kem.KemPrivateKey;
+import kem.KemPublicKey;
+import kem.Utils;
+import sign.Dilithium;
+import sign.DilithiumPrivateKey;
+import sign.DilithiumPublicKey;
+import sign.DilithiumVerifier;
+import core.Settings;
+
+/**
+ * Crypto backend running the Ring-BLWE KEM and Dilithium signatures.
+ */
+public class RealCryptoBackend extends CryptoBackend {
+	private KeyPair kemKeyPair;
+	private KeyPair signKeyPair;
+
+	public RealCryptoBackend(Settings s) {
+		super(s);
+	}
+
+	protected RealCryptoBackend(RealCryptoBackend proto) {
+		super(proto);
+	}
+
+	@Override
+	public RealCryptoBackend replicate() {
+		return new RealCryptoBackend(this);
+	}
+
+	@Override
+	protected void generateKeys() {
+		kemKeyPair = Kem.keygen(rng);
+		signKeyPair = Dilithium.keygen(rng.nextSeed(Dilithium.SEEDBYTES));
+	}
+
+	@Override
+	public Object getPublicKey() {
+		return kemKeyPair.getPublic();
+	}
+
+	@Override
+	public int getPublicKeySize(Object publicKey) {
+		return ((KemPublicKey)publicKey).getEncoded().length;
+	}
+
+	@Override
+	public Encapsulation encapsulate(Object peerPublicKey) {
+		int[] sharedSecret = new int[Kem.N];
+		rng.sampleNoise(sharedSecret);
+
+		CipherText ct = Kem.encapsulate((KemPublicKey)peerPublicKey,
+				sharedSecret, rng);
+		byte[] sig = Dilithium.sign(
+				(DilithiumPrivateKey)signKeyPair.getPrivate(),
+				Utils.intArrayToByteArray(sharedSecret));
+
+		int size = ct.toString().length() + sig.length +
+				signKeyPair.getPublic().getEncoded().length;
+		return new Encapsulation(sharedSecret, ct, sig,
+				signKeyPair.getPublic(), size);
+	}
+
+	@Override
+	public int[] decapsulate(Object ciphertext, Object verifyKey,
+			Object signature) {
+		int[] sharedSecret = Kem.decapsulate(
+				(KemPrivateKey)kemKeyPair.getPrivate(), (CipherText)ciphertext);
+		if (!DilithiumVerifier.shared().verify((DilithiumPublicKey)verifyKey,
+				(byte[])signature, Utils.intArrayToByteArray(sharedSecret))) {
+			return null;
+		}
+		return sharedSecret;
+	}
+}
@@ -193,14 +193,30 @@ public class Dilithium {
 	}
 
     public static boolean verify(DilithiumPublicKey pk, byte[] sig, byte[] M) {
+        return verify(prepare(pk), sig, M);
+    }
+
+    /**
+     * Computes the parts of verification that only depend on the public
+     * key: the expanded matrix A, t1 * 2^d in NTT domain and the hash of
+     * the encoded key.
+     */
+    static PreparedKey prepare(DilithiumPublicKey pk) {
+        PolyVec[] A = pk.getA();
+        if (A == null) {
+            A = expandA(pk.getRho(), k, l);
+        }
+        PolyVec t1hat = pk.getT1().shift().ntt();
+        return new PreparedKey(A, t1hat, Utils.crh(pk.getEncoded()));
+    }
+
+    static boolean verify(PreparedKey pk, byte[] sig, byte[] M) {
         int CRYPTO_BYTES = Utils.getSigLength();
 
         if (sig.length != CRYPTO_BYTES) {
             throw new RuntimeException("Bad signature");
         }
 
-        PolyVec t1 = pk.getT1();
-
         int off = 0;
         byte[] c = new byte[SEEDBYTES];
         System.arraycopy(sig, 0, c, 0, SEEDBYTES);
@@ -240,25 +256,15 @@ public class Dilithium {
             throw new RuntimeException("Bad signature");
         }
 
-        byte[] mu = Utils.crh(pk.getEncoded());
-        mu = Utils.getSHAKE256Digest(MUBYTES, mu, M);
+        byte[] mu = Utils.getSHAKE256Digest(MUBYTES, pk.tr, M);
 
         Poly cp = generateChallenge(tau, c);
 
-        PolyVec[] A;
-        if (pk instanceof DilithiumPublicKey) {
-            A = ((DilithiumPublicKey) pk).getA();
-        } else {
-            A = expandA(pk.getRho(), k, l);
-        }
         z = z.ntt();
-        PolyVec w = z.mulMatrixPointwiseMontgomery(A);
+        PolyVec w = z.mulMatrixPointwiseMontgomery(pk.A);
 
         cp = cp.ntt();
-        t1 = t1.shift();
-        t1 = t1.ntt();
-
-        t1 = t1.pointwiseMontgomery(cp);
+        PolyVec t1 = pk.t1hat.pointwiseMontgomery(cp);
         w = w.sub(t1);
         w.reduce();
         w.invnttTomont();
@@ -415,4 +421,19 @@ public class Dilithium {
     }
 
 
-}
\ No newline at end of file
+
+    /**
+     * Public key data in the form verification needs it.
+     */
+    static class PreparedKey {
+        final PolyVec[] A;
+        final PolyVec t1hat;
+        final byte[] tr;
+
+        PreparedKey(PolyVec[] A, PolyVec t1hat, byte[] tr) {
+            this.A = A;
+            this.t1hat = t1hat;
+            this.tr = tr;
+        }
+    }
+}
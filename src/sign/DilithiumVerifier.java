@@ -0,0 +1,143 @@
+package sign;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * Signature verifier that remembers the key dependent part of verification
+ * (expanded matrix, NTT domain t1 and key hash) of the most recently used
+ * public keys, so that repeated signatures from the same signer skip it.
+ * Keys are identified by their encoded bytes. Thread safe.
+ */
+public class DilithiumVerifier {
+
+    /** Number of keys cached by the {@link #shared()} verifier */
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    private static final DilithiumVerifier shared =
+            new DilithiumVerifier(DEFAULT_CAPACITY, ForkJoinPool.commonPool());
+
+    private final Map<Fingerprint, Dilithium.PreparedKey> cache;
+    private final ForkJoinPool pool;
+
+    /**
+     * Creates a verifier.
+     * @param capacity Maximum number of public keys to cache
+     * @param pool Pool where {@link #verifyBatch} runs the verifications
+     */
+    public DilithiumVerifier(final int capacity, ForkJoinPool pool) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+        this.pool = pool;
+        this.cache = new LinkedHashMap<Fingerprint, Dilithium.PreparedKey>(
+                16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(
+                    Map.Entry<Fingerprint, Dilithium.PreparedKey> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Returns a verifier shared by everyone using the default capacity and
+     * the common ForkJoin pool.
+     */
+    public static DilithiumVerifier shared() {
+        return shared;
+    }
+
+    /**
+     * Verifies a signature like {@link Dilithium#verify} does.
+     */
+    public boolean verify(DilithiumPublicKey pk, byte[] sig, byte[] M) {
+        return Dilithium.verify(prepared(pk), sig, M);
+    }
+
+    /**
+     * Verifies many (key, signature, message) tuples in parallel.
+     * Malformed signatures count as failed verifications.
+     * @return Verification result for each index of the arrays
+     */
+    public boolean[] verifyBatch(final DilithiumPublicKey[] pks,
+            final byte[][] sigs, final byte[][] msgs) {
+        if (pks.length != sigs.length || pks.length != msgs.length) {
+            throw new IllegalArgumentException("Batch arrays differ in length");
+        }
+        final boolean[] results = new boolean[pks.length];
+        try {
+            pool.submit(() -> IntStream.range(0, pks.length).parallel()
+                    .forEach(i -> results[i] = verifyQuietly(pks[i], sigs[i],
+                            msgs[i]))).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Batch verification interrupted", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Batch verification failed",
+                    e.getCause());
+        }
+        return results;
+    }
+
+    /**
+     * Returns the number of currently cached keys.
+     */
+    public int cacheSize() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    private boolean verifyQuietly(DilithiumPublicKey pk, byte[] sig,
+            byte[] M) {
+        try {
+            return verify(pk, sig, M);
+        } catch (RuntimeException e) {
+            return false;
+        }
+    }
+
+    private Dilithium.PreparedKey prepared(DilithiumPublicKey pk) {
+        Fingerprint fp = new Fingerprint(pk.getEncoded());
+        Dilithium.PreparedKey prepared;
+        synchronized (cache) {
+            prepared = cache.get(fp);
+        }
+        if (prepared == null) {
+            prepared = Dilithium.prepare(pk); // outside the lock, may race
+            synchronized (cache) {
+                cache.put(fp, prepared);
+            }
+        }
+        return prepared;
+    }
+
+    /**
+     * Identity of a public key, i.e. its encoded bytes.
+     */
+    private static class Fingerprint {
+        private final byte[] bytes;
+        private final int hash;
+
+        Fingerprint(byte[] bytes) {
+            this.bytes = bytes;
+            this.hash = Arrays.hashCode(bytes);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Fingerprint &&
+                    Arrays.equals(bytes, ((Fingerprint) o).bytes);
+        }
+    }
+}
@@ -24,6 +24,8 @@ public class AllTests {
 
 		//$JUnit-BEGIN$
 		suite.addTestSuite(WorldTest.class);
+		suite.addTestSuite(ContactPredictorTest.class);
+		suite.addTestSuite(SpatialHashGridTest.class);
 		suite.addTestSuite(ConnectionTest.class);
 		suite.addTestSuite(ExternalMovementReaderTest.class);
 		suite.addTestSuite(ExternalMovementTest.class);
@@ -48,8 +50,14 @@ public class AllTests {
 		suite.addTestSuite(MaxPropRouterTest.class);
 		suite.addTestSuite(ScheduledUpdatesQueueTest.class);
 		suite.addTestSuite(MessageTest.class);
+		suite.addTestSuite(IntHashMapTest.class);
+		suite.addTestSuite(MessageHistoryTest.class);
 		suite.addTestSuite(ModuleCommunicationBusTest.class);
 		suite.addTestSuite(DTNHostTest.class);
+		suite.addTestSuite(KemPolyTest.class);
+		suite.addTestSuite(KemRngTest.class);
+		suite.addTestSuite(DilithiumVerifierTest.class);
+		suite.addTestSuite(CryptoBackendTest.class);
 		//$JUnit-END$
 		return suite;
 	}
@@ -0,0 +1,180 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import interfaces.SpatialHashGrid;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+import movement.MovementModel;
+import movement.Path;
+import core.ConnectionListener;
+import core.ContactPredictor;
+import core.Coord;
+import core.DTNHost;
+import core.SimClock;
+
+/**
+ * Tests for the ContactPredictor class
+ */
+public class ContactPredictorTest extends TestCase {
+	/* for rounding errors */
+	private static final double DELTA = 0.00001;
+	/* x distance from the stationary host where a host at 0.5 y distance
+	 * is within the range of 1 */
+	private static final double IN_RANGE_X = Math.sqrt(0.75);
+
+	private TestUtils utils;
+	private ContactPredictor predictor;
+	private SimClock clock;
+	private List<Double> upTimes;
+	private List<Double> downTimes;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		SimClock.reset();
+		DTNHost.reset();
+		SpatialHashGrid.reset();
+		this.clock = SimClock.getInstance();
+		this.upTimes = new ArrayList<Double>();
+		this.downTimes = new ArrayList<Double>();
+
+		List<ConnectionListener> cl = new ArrayList<ConnectionListener>();
+		cl.add(new ConnectionListener() {
+			public void hostsConnected(DTNHost host1, DTNHost host2) {
+				upTimes.add(SimClock.getTime());
+			}
+			public void hostsDisconnected(DTNHost host1, DTNHost host2) {
+				downTimes.add(SimClock.getTime());
+			}
+		});
+		this.utils = new TestUtils(cl, null, new TestSettings());
+	}
+
+	/**
+	 * Moves the hosts and runs the connection changes of a step
+	 */
+	private void step(double duration) {
+		double start = SimClock.getTime();
+		for (DTNHost host : utils.getAllHosts()) {
+			host.move(duration);
+		}
+		predictor.predict(start, duration);
+
+		while (predictor.nextEventsTime() <= start + duration) {
+			clock.setTime(predictor.nextEventsTime());
+			predictor.nextEvent().processEvent(null);
+		}
+		clock.setTime(start + duration);
+	}
+
+	public void testContactWithinSteps() {
+		utils.createHost(new LineMovement(new Coord(0, 0), new Coord(10, 0),
+				new Coord(10, 0)), null);
+		utils.createHost(new Coord(5, 0.5));
+		predictor = new ContactPredictor(utils.getAllHosts());
+
+		for (int i = 0; i < 12; i++) {
+			step(1.0);
+		}
+
+		assertEquals(1, upTimes.size());
+		assertEquals(1, downTimes.size());
+		assertEquals(5 - IN_RANGE_X, upTimes.get(0), DELTA);
+		assertEquals(5 + IN_RANGE_X, downTimes.get(0), DELTA);
+	}
+
+	public void testContactShorterThanStep() {
+		utils.createHost(new LineMovement(new Coord(0, 0), new Coord(10, 0),
+				new Coord(10, 0)), null);
+		utils.createHost(new Coord(5, 0.5));
+		predictor = new ContactPredictor(utils.getAllHosts());
+
+		step(10.0);
+
+		assertEquals(1, upTimes.size());
+		assertEquals(1, downTimes.size());
+		assertEquals(5 - IN_RANGE_X, upTimes.get(0), DELTA);
+		assertEquals(5 + IN_RANGE_X, downTimes.get(0), DELTA);
+	}
+
+	public void testTurningWithinRange() {
+		/* goes to the stationary host and back within one step */
+		utils.createHost(new LineMovement(new Coord(0, 0), new Coord(5, 0),
+				new Coord(0, 0)), null);
+		utils.createHost(new Coord(5, 0.5));
+		predictor = new ContactPredictor(utils.getAllHosts());
+
+		step(10.0);
+
+		assertEquals(1, upTimes.size());
+		assertEquals(1, downTimes.size());
+		assertEquals(5 - IN_RANGE_X, upTimes.get(0), DELTA);
+		assertEquals(5 + IN_RANGE_X, downTimes.get(0), DELTA);
+	}
+
+	public void testInitiallyWithinRange() {
+		utils.createHost(new Coord(0, 0));
+		utils.createHost(new Coord(0.5, 0));
+		utils.createHost(new Coord(3, 0));
+		predictor = new ContactPredictor(utils.getAllHosts());
+
+		clock.setTime(2.0);
+		step(1.0);
+		step(1.0);
+
+		assertEquals(1, upTimes.size());
+		assertEquals(2.0, upTimes.get(0), DELTA);
+		assertEquals(0, downTimes.size());
+	}
+
+	/**
+	 * Movement model with a single path through the given points at
+	 * speed 1
+	 */
+	private static class LineMovement extends MovementModel {
+		private Coord[] points;
+		private boolean pathGiven;
+
+		public LineMovement(Coord... points) {
+			this.points = points;
+		}
+
+		@Override
+		public Coord getInitialLocation() {
+			return points[0].clone();
+		}
+
+		@Override
+		public Path getPath() {
+			if (pathGiven) {
+				return null;
+			}
+			pathGiven = true;
+			Path p = new Path(1);
+			for (int i = 1; i < points.length; i++) {
+				p.addWaypoint(points[i].clone());
+			}
+			return p;
+		}
+
+		@Override
+		public double nextPathAvailable() {
+			return pathGiven ? Double.MAX_VALUE : 0;
+		}
+
+		@Override
+		public boolean isActive() {
+			return true;
+		}
+
+		@Override
+		public LineMovement replicate() {
+			return new LineMovement(points);
+		}
+	}
+}
@@ -0,0 +1,186 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+import kem.Rng;
+import routing.DirectDeliveryKEMRouter;
+import routing.util.CryptoBackend;
+import routing.util.CryptoBackend.Encapsulation;
+import routing.util.EnergyModel;
+import routing.util.ModelledCryptoBackend;
+import routing.util.RealCryptoBackend;
+import core.ConnectionListener;
+import core.Coord;
+import core.DTNHost;
+import core.Message;
+import core.MessageListener;
+import core.NetworkInterface;
+import core.SettingsError;
+import core.SimClock;
+
+public class CryptoBackendTest extends TestCase {
+
+	private TestSettings ts;
+	private DTNHost h1;
+	private DTNHost h2;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		ts = new TestSettings();
+		TestUtils utils = new TestUtils(new ArrayList<ConnectionListener>(),
+				new ArrayList<MessageListener>(), ts);
+		h1 = utils.createHost();
+		h2 = utils.createHost();
+		ts.putSetting(CryptoBackend.KEM_RNG_S, Rng.MODE_SEEDED);
+	}
+
+	public void testRealBackend() {
+		ts.putSetting(CryptoBackend.CRYPTO_BACKEND_S, CryptoBackend.REAL);
+		CryptoBackend proto = CryptoBackend.create(ts);
+		assertTrue(proto instanceof RealCryptoBackend);
+		checkExchange(proto);
+	}
+
+	public void testModelledBackend() {
+		ts.putSetting(CryptoBackend.CRYPTO_BACKEND_S, CryptoBackend.MODELLED);
+		CryptoBackend proto = CryptoBackend.create(ts);
+		assertTrue(proto instanceof ModelledCryptoBackend);
+		checkExchange(proto);
+	}
+
+	public void testModelledSizesMatchReal() {
+		ts.putSetting(CryptoBackend.CRYPTO_BACKEND_S, CryptoBackend.REAL);
+		CryptoBackend real = CryptoBackend.create(ts).replicate();
+		real.init(h1);
+		Encapsulation enc = real.encapsulate(real.getPublicKey());
+		int sigAndKey = ((byte[])enc.signature).length +
+				((java.security.PublicKey)enc.verifyKey).getEncoded().length;
+		assertEquals(ModelledCryptoBackend.SIGNATURE_SIZE +
+				ModelledCryptoBackend.VERIFY_KEY_SIZE, sigAndKey);
+
+		/* the real sizes are those of the encodings */
+		assertEquals(((java.security.PublicKey)real.getPublicKey())
+				.getEncoded().length, real.getPublicKeySize());
+		assertEquals(enc.ciphertext.toString().length() + sigAndKey,
+				enc.size);
+
+		/* encoded sizes of the real keys vary only a little */
+		assertTrue(Math.abs(real.getPublicKeySize() -
+				ModelledCryptoBackend.PUBLIC_KEY_SIZE) < 100);
+		assertTrue(Math.abs(enc.size - ModelledCryptoBackend.CIPHERTEXT_SIZE -
+				sigAndKey) < 100);
+	}
+
+	public void testPublicKeySizeOfOtherHost() {
+		ts.putSetting(CryptoBackend.CRYPTO_BACKEND_S, CryptoBackend.REAL);
+		CryptoBackend proto = CryptoBackend.create(ts);
+		CryptoBackend c1 = proto.replicate();
+		CryptoBackend c2 = proto.replicate();
+		c1.init(h1);
+		c2.init(h2);
+		assertEquals(c2.getPublicKeySize(),
+				c1.getPublicKeySize(c2.getPublicKey()));
+
+		ts.putSetting(CryptoBackend.CRYPTO_BACKEND_S, CryptoBackend.MODELLED);
+		CryptoBackend modelled = CryptoBackend.create(ts).replicate();
+		modelled.init(h1);
+		assertEquals(ModelledCryptoBackend.PUBLIC_KEY_SIZE,
+				modelled.getPublicKeySize(new Object()));
+	}
+
+	public void testKemRouterMessageSizes() {
+		List<Integer> modelled = kemRouterMessageSizes(CryptoBackend.MODELLED);
+		assertEquals(Arrays.asList(ModelledCryptoBackend.PUBLIC_KEY_SIZE,
+				ModelledCryptoBackend.CIPHERTEXT_SIZE +
+				ModelledCryptoBackend.SIGNATURE_SIZE +
+				ModelledCryptoBackend.VERIFY_KEY_SIZE), modelled);
+
+		/* the real sizes vary from key to key, but only a little */
+		List<Integer> real = kemRouterMessageSizes(CryptoBackend.REAL);
+		assertEquals(modelled.size(), real.size());
+		for (int i = 0; i < real.size(); i++) {
+			assertTrue(Math.abs(real.get(i) - modelled.get(i)) < 100);
+		}
+	}
+
+	public void testInvalidBackend() {
+		ts.putSetting(CryptoBackend.CRYPTO_BACKEND_S, "foo");
+		try {
+			CryptoBackend.create(ts);
+			fail("Invalid backend accepted");
+		} catch (SettingsError e) {
+			// expected
+		}
+	}
+
+	/**
+	 * Runs a key exchange between two hosts with DirectDeliveryKEMRouter
+	 * and returns the sizes of the created messages
+	 */
+	private List<Integer> kemRouterMessageSizes(String backend) {
+		final List<Integer> sizes = new ArrayList<Integer>();
+		MessageChecker mc = new MessageChecker() {
+			@Override
+			public void newMessage(Message m) {
+				sizes.add(m.getSize());
+			}
+		};
+		List<MessageListener> ml = new ArrayList<MessageListener>();
+		ml.add(mc);
+
+		TestSettings rs = new TestSettings();
+		rs.putSetting(CryptoBackend.KEM_RNG_S, Rng.MODE_SEEDED);
+		rs.putSetting(CryptoBackend.CRYPTO_BACKEND_S, backend);
+		rs.putSetting(EnergyModel.INIT_ENERGY_S, "1000000");
+		rs.putSetting(EnergyModel.SCAN_ENERGY_S, "0");
+		rs.putSetting(EnergyModel.SCAN_RSP_ENERGY_S, "0");
+		rs.putSetting(EnergyModel.TRANSMIT_ENERGY_S, "0");
+		DirectDeliveryKEMRouter proto = new DirectDeliveryKEMRouter(rs);
+		rs.setNameSpace(TestUtils.IFACE_NS);
+		rs.putSetting(NetworkInterface.TRANSMIT_RANGE_S, "10");
+		rs.putSetting(NetworkInterface.TRANSMIT_SPEED_S, "1000000");
+
+		/* own utils (and communication bus) for both energy models */
+		TestUtils utilsA = new TestUtils(null, ml, rs);
+		TestUtils utilsB = new TestUtils(null, ml, rs);
+		utilsA.setMessageRouterProto(proto);
+		utilsB.setMessageRouterProto(proto);
+		DTNHost a = utilsA.createHost(new Coord(0, 0), "a");
+		DTNHost b = utilsB.createHost(new Coord(0, 0), "b");
+
+		SimClock clock = SimClock.getInstance();
+		clock.setTime(0);
+		a.connect(b);
+		for (int i = 0; i < 10; i++) {
+			clock.advance(1);
+			a.update(true);
+			b.update(true);
+		}
+		return sizes;
+	}
+
+	private void checkExchange(CryptoBackend proto) {
+		CryptoBackend c1 = proto.replicate();
+		CryptoBackend c2 = proto.replicate();
+		c1.init(h1);
+		c2.init(h2);
+
+		Encapsulation enc = c1.encapsulate(c2.getPublicKey());
+		int[] secret = c2.decapsulate(enc.ciphertext, enc.verifyKey,
+				enc.signature);
+		assertTrue(Arrays.equals(enc.sharedSecret, secret));
+
+		/* ciphertext for someone else does not decapsulate */
+		Encapsulation other = c2.encapsulate(c1.getPublicKey());
+		assertNull(c2.decapsulate(other.ciphertext, other.verifyKey,
+				other.signature));
+	}
+}
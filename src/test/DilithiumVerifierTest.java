@@ -0,0 +1,74 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.security.KeyPair;
+import java.util.concurrent.ForkJoinPool;
+
+import junit.framework.TestCase;
+import sign.Dilithium;
+import sign.DilithiumPrivateKey;
+import sign.DilithiumPublicKey;
+import sign.DilithiumVerifier;
+
+public class DilithiumVerifierTest extends TestCase {
+
+	private DilithiumVerifier verifier;
+	private DilithiumPublicKey[] pks;
+	private DilithiumPrivateKey[] sks;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		verifier = new DilithiumVerifier(2, new ForkJoinPool(2));
+		pks = new DilithiumPublicKey[3];
+		sks = new DilithiumPrivateKey[3];
+		for (int i = 0; i < pks.length; i++) {
+			byte[] seed = new byte[Dilithium.SEEDBYTES];
+			seed[0] = (byte)i;
+			KeyPair kp = Dilithium.keygen(seed);
+			pks[i] = (DilithiumPublicKey)kp.getPublic();
+			sks[i] = (DilithiumPrivateKey)kp.getPrivate();
+		}
+	}
+
+	public void testVerifyMatchesUncached() {
+		byte[] msg = "hello".getBytes();
+		byte[] sig = Dilithium.sign(sks[0], msg);
+
+		assertTrue(Dilithium.verify(pks[0], sig, msg));
+		assertTrue(verifier.verify(pks[0], sig, msg));
+		assertTrue(verifier.verify(pks[0], sig, msg)); // from cache
+		assertFalse(verifier.verify(pks[1], sig, msg));
+		assertFalse(verifier.verify(pks[0], sig, "hellO".getBytes()));
+	}
+
+	public void testCacheIsBounded() {
+		byte[] msg = "m".getBytes();
+		for (int i = 0; i < pks.length; i++) {
+			verifier.verify(pks[i], Dilithium.sign(sks[i], msg), msg);
+		}
+		assertEquals(2, verifier.cacheSize());
+	}
+
+	public void testVerifyBatch() {
+		int n = 6;
+		DilithiumPublicKey[] bPks = new DilithiumPublicKey[n];
+		byte[][] sigs = new byte[n][];
+		byte[][] msgs = new byte[n][];
+		for (int i = 0; i < n; i++) {
+			msgs[i] = ("msg" + i).getBytes();
+			bPks[i] = pks[i % pks.length];
+			sigs[i] = Dilithium.sign(sks[i % sks.length], msgs[i]);
+		}
+		sigs[2] = sigs[3]; // wrong signature
+		sigs[4] = new byte[1]; // malformed signature
+
+		boolean[] results = verifier.verifyBatch(bPks, sigs, msgs);
+		for (int i = 0; i < n; i++) {
+			assertEquals("Result " + i, i != 2 && i != 4, results[i]);
+		}
+	}
+}
@@ -4,10 +4,13 @@
  */
 package test;
 
+import routing.ActiveRouter;
 import routing.EpidemicRouter;
 import routing.MessageRouter;
+import core.Connection;
 import core.DTNHost;
 import core.Message;
+import core.Settings;
 
 /**
  * Tests for EpidemicRouter and, due the simple nature of Epidemic router,
@@ -195,6 +198,47 @@ public class EpidemicRouterTest extends AbstractRouterTest {
 
 	}
 
+	/**
+	 * Tests that deliverable messages for different connections are tried
+	 * in the order they are in the buffer, not connection by connection
+	 */
+	public void testDeliverableMessagesInBufferOrder() {
+		Message m1 = new Message(h1,h3, msgId1, 1);
+		h1.createNewMessage(m1);
+		Message m2 = new Message(h1,h2, msgId2, 1);
+		h1.createNewMessage(m2);
+		checkCreates(2);
+
+		h1.connect(h2);
+		h1.connect(h3);
+		h1.update(true);
+
+		checkTransferStart(h1, h3, msgId1);
+		assertFalse(mc.next());
+	}
+
+	/**
+	 * Tests that a message is seen as incoming by its ID while it is being
+	 * transferred
+	 */
+	public void testIsIncomingMessage() {
+		utils.setMessageRouterProto(new IncomingCheckRouter(ts));
+		DTNHost from = utils.createHost(c0, "from");
+		DTNHost to = utils.createHost(c0, "to");
+		IncomingCheckRouter r = (IncomingCheckRouter)to.getRouter();
+
+		Message m1 = new Message(from, to, msgId1, 10);
+		from.createNewMessage(m1);
+		from.connect(to);
+		from.update(true);
+		assertTrue(r.isIncoming(msgId1));
+		assertFalse(r.isIncoming(msgId2));
+
+		clock.advance(10);
+		from.update(true);	// transfer done
+		assertFalse(r.isIncoming(msgId1));
+	}
+
 	/**
 	 * Tests aborting transfer when connections is disconnected during the
 	 * transfer
@@ -619,4 +663,63 @@ public class EpidemicRouterTest extends AbstractRouterTest {
 		assertNotSame(orderedIds, runMessageExchange(true));
 		assertNotSame(orderedIds, runMessageExchange(false));
 	}
+
+	public void testSummaryVectorExchange() throws Exception {
+		ts.putSetting(ActiveRouter.SUMMARY_VECTOR_S, "true");
+		try {
+			this.setUp();
+
+			h1.createNewMessage(new Message(h1, h3, msgId1, 1));
+			checkCreates(1);
+			h1.connect(h2);
+
+			/* h1's vector has one 4 byte entry -> 0.4s at speed 10 */
+			updateAllNodes();
+			assertFalse(mc.next());
+			Connection con = h1.getConnections().get(0);
+			assertTrue(con.isTransferring());
+			clock.advance(0.4);
+			/* h2 sends its empty vector after receiving h1's vector */
+			updateAllNodes();
+			assertFalse(mc.next());
+			updateAllNodes();
+			assertFalse(mc.next());
+			deliverMessage(h1, h2, msgId1, 1, false);
+			assertEquals(4 + 1, con.getTotalBytesTransferred());
+
+			/* new messages are offered while the connection is up */
+			h2.createNewMessage(new Message(h2, h3, msgId2, 1));
+			checkCreates(1);
+			deliverMessage(h2, h1, msgId2, 1, false);
+
+			/* both know both messages -> nothing to offer */
+			clock.advance(1);
+			updateAllNodes();
+			assertFalse(mc.next());
+		} finally {
+			ts.putSetting(ActiveRouter.SUMMARY_VECTOR_S, "false");
+		}
+	}
+
+	/**
+	 * Epidemic router that exposes the incoming message check
+	 */
+	private static class IncomingCheckRouter extends EpidemicRouter {
+		public IncomingCheckRouter(Settings s) {
+			super(s);
+		}
+
+		protected IncomingCheckRouter(IncomingCheckRouter r) {
+			super(r);
+		}
+
+		@Override
+		public IncomingCheckRouter replicate() {
+			return new IncomingCheckRouter(this);
+		}
+
+		public boolean isIncoming(String id) {
+			return isIncomingMessage(id);
+		}
+	}
 }
@@ -5,10 +5,12 @@
 package test;
 
 import input.BinaryEventsReader;
+import input.ColumnarEventsReader;
 import input.ExternalEvent;
 import input.ExternalEventsQueue;
 import input.ExternalEventsReader;
 import input.MessageCreateEvent;
+import input.PrefetchingEventsReader;
 import input.StandardEventsReader;
 
 import java.io.File;
@@ -16,6 +18,7 @@ import java.io.PrintWriter;
 import java.util.List;
 
 import junit.framework.TestCase;
+import core.SimError;
 
 public class ExternalEventsQueueTest extends TestCase {
 	private final String[] stdinput = {
@@ -37,6 +40,46 @@ public class ExternalEventsQueueTest extends TestCase {
 			2200.000, 3095.408, 3103.000, 8071.608, 8091.608,
 			100502.200, 106202.613};
 
+	/** events of the stdinput as parsed by the Scanner based reader */
+	private final String[] stdEvents = {
+"MSG @1000.0 MSG_365_D_1 [1->2] size:100000 CREATE",
+"MSG @1533.405 MSG_365_D_1 [1->0] SENDING",
+"MSG @1542.0 MSG_365_D_1 [1->0] ABORTED",
+"MSG @2200.0 MSG_746_D_2 [1->3] size:100000 CREATE",
+"MSG @3095.408 MSG_746_D_2 [1->64] SENDING",
+"MSG @3103.0 MSG_746_D_2 [1->64] ABORTED",
+"MSG @8071.608 MSG_746_D_2 [1->10] TRANSFERRED",
+"MSG @8091.608 MSG_365_D_1 [1->10] TRANSFERRED",
+"MSG @100502.2 MSG_365_D_1 [10] DELETE",
+"MSG @106202.613 MSG_10644_D_5 [70] DELETE"
+	};
+
+	/** less common number formats, separators and line endings */
+	private final String edgeInput =
+"1,000.5\tC\tM1\t12\tp3\t100k\t2kiB\r\n" +
+"1e3 CONN  h1\tc2  Up  bt\r\n" +
+"\t2.5\u000BS  M2 p1 p2 extra\n" +
+"  \t \r" +
+"#comment\n" +
+"3\tCONN\t1\t2\tdown\n" +
+"4 DR * p07\n" +
+"5 C M3 p1 p2 +100 1,024";
+
+	private final String[] edgeEvents = {
+"MSG @1000.5 M1 [12->3] size:100000 CREATE",
+"CONN up @1000.0 1<->2",
+"MSG @2.5 M2 [1->2] SENDING",
+"CONN down @3.0 1<->2",
+"MSG @4.0 * [7] DELETE",
+"MSG @5.0 M3 [1->2] size:100 CREATE"
+	};
+
+	/** lines that the Scanner based reader didn't accept */
+	private final String[] invalidLines = {" # comment",
+			"1 C M1 p1x2 p2 100", "1 X M1 p1 p2", "1 C M1 p1 p2",
+			"1 CONN p1 p2 sideways", "1.2.3 S M1 p1 p2",
+			"1 S M1 p1 99999999999", "1 C M1 p1 p2 1.5k", "1 R M1"};
+
 	private ExternalEventsQueue eeq;
 	private File tempFile;
 
@@ -66,6 +109,37 @@ public class ExternalEventsQueueTest extends TestCase {
 	}
 
 
+	public void testPrefetchingEEQ() {
+		int preload = 3;
+		eeq = new ExternalEventsQueue(tempFile.getAbsolutePath(), preload, 2);
+		checkEeq(eeq, preload);
+
+		preload = 1;
+		eeq = new ExternalEventsQueue(tempFile.getAbsolutePath(), preload, 1);
+		checkEeq(eeq, preload);
+	}
+
+	public void testPrefetchingReaderFailure() throws Exception {
+		File tmpFile = File.createTempFile("eeqFailTest", ".tmp");
+		writeFile(tmpFile, stdinput[0] + "\n" + stdinput[1] + "\n" +
+				invalidLines[2] + "\n");
+		ExternalEventsReader r = new PrefetchingEventsReader(
+				new StandardEventsReader(tmpFile), 1, 1);
+
+		/* events before the invalid line are given normally */
+		assertEquals(1, r.readEvents(1).size());
+		assertEquals(1, r.readEvents(1).size());
+		try {
+			r.readEvents(1);
+			fail("Invalid line didn't cause an exception");
+		} catch (SimError e) {
+			// expected
+		}
+		assertEquals(0, r.readEvents(1).size());
+		r.close();
+		assertTrue(tmpFile.delete());
+	}
+
 	public void testBinaryEEQ() throws Exception{
 		int preload = 7;
 		File tmpBinFile = File.createTempFile("TempBinTest",
@@ -81,6 +155,72 @@ public class ExternalEventsQueueTest extends TestCase {
 		assertTrue(tmpBinFile.delete()); // make sure all locks are gone
 	}
 
+	public void testColumnarEEQ() throws Exception{
+		int preload = 7;
+		File tmpColFile = File.createTempFile("TempColTest",
+				ColumnarEventsReader.COLUMNAR_EXT);
+		String colFileName = tmpColFile.getAbsolutePath();
+		ExternalEventsReader r = new StandardEventsReader(tempFile);
+		List<ExternalEvent> events = r.readEvents(100);
+		ColumnarEventsReader.storeToColumnarFile(colFileName, events);
+
+		/* columnar file must give the same events as the original */
+		ExternalEventsReader cr = new ColumnarEventsReader(tmpColFile);
+		List<ExternalEvent> colEvents = cr.readEvents(100);
+		cr.close();
+		assertEquals(events.size(), colEvents.size());
+		for (int i=0; i < events.size(); i++) {
+			assertEquals(events.get(i).toString(),
+					colEvents.get(i).toString());
+		}
+
+		eeq = new ExternalEventsQueue(colFileName, preload);
+		checkEeq(eeq, preload);
+
+		assertTrue(tmpColFile.delete());
+	}
+
+
+	public void testStandardReaderConformance() throws Exception {
+		checkEvents(tempFile, stdEvents);
+
+		File tmpFile = File.createTempFile("eeqEdgeTest", ".tmp");
+		writeFile(tmpFile, edgeInput);
+		checkEvents(tmpFile, edgeEvents);
+
+		for (String line : invalidLines) {
+			writeFile(tmpFile, line);
+			ExternalEventsReader r = new StandardEventsReader(tmpFile);
+			try {
+				r.readEvents(1);
+				fail("Accepted invalid line '" + line + "'");
+			} catch (SimError e) {
+				// expected
+			} finally {
+				r.close();
+			}
+		}
+		assertTrue(tmpFile.delete());
+	}
+
+	private void checkEvents(File file, String[] expected) {
+		ExternalEventsReader r = new StandardEventsReader(file);
+		/* read in parts to check that reading continues correctly */
+		List<ExternalEvent> events = r.readEvents(3);
+		events.addAll(r.readEvents(100));
+		r.close();
+
+		assertEquals(expected.length, events.size());
+		for (int i=0; i < expected.length; i++) {
+			assertEquals(expected[i], events.get(i).toString());
+		}
+	}
+
+	private void writeFile(File file, String content) throws Exception {
+		PrintWriter out = new PrintWriter(file);
+		out.print(content);
+		out.close();
+	}
 
 	private void checkEeq(ExternalEventsQueue eeq, int preloadVal) {
 		ExternalEvent ee;
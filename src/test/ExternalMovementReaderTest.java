@@ -4,6 +4,7 @@
  */
 package test;
 
+import input.BinaryMovementReader;
 import input.ExternalMovementReader;
 
 import java.io.File;
@@ -17,6 +18,7 @@ import core.Coord;
 
 public class ExternalMovementReaderTest extends TestCase {
 	private ExternalMovementReader r;
+	private File tmpFile;
 	private static final String INPUT =
 		"0 0 0 0 0 0\n"+
 		"10 1 10 10\n"+
@@ -40,7 +42,7 @@ public class ExternalMovementReaderTest extends TestCase {
 	protected void setUp() throws Exception {
 		super.setUp();
 
-		File tmpFile = File.createTempFile("EMRTest","tmp");
+		tmpFile = File.createTempFile("EMRTest","tmp");
 		tmpFile.deleteOnExit();
 
 		PrintWriter pw = new PrintWriter(tmpFile);
@@ -51,6 +53,62 @@ public class ExternalMovementReaderTest extends TestCase {
 	}
 
 	public void testReader() {
+		checkReader();
+	}
+
+	public void testPrefetchingReader() {
+		r.startPrefetching(1);
+		checkReader();
+	}
+
+	public void testBinaryReader() throws Exception {
+		BinaryMovementReader br = createBinaryReader();
+
+		for (int i=0; i<times.length; i++) {
+			assertEquals(ids.length, br.readNextSlice());
+			assertEquals(times[i], br.getLastTimeStamp());
+			for (int j=0; j<ids.length; j++) {
+				assertEquals(ids[j], br.getId(br.getIdIndexes()[j]));
+				assertEquals(coords[i][j], new Coord(br.getXs()[j],
+						br.getYs()[j]));
+			}
+		}
+
+		assertEquals(0, br.readNextSlice());
+		br.close();
+	}
+
+	public void testBinarySeek() throws Exception {
+		BinaryMovementReader br = createBinaryReader();
+
+		br.seek(15);
+		assertEquals(ids.length, br.readNextSlice());
+		assertEquals(times[1], br.getLastTimeStamp());
+
+		br.seek(30);
+		assertEquals(ids.length, br.readNextSlice());
+		assertEquals(times[2], br.getLastTimeStamp());
+		assertEquals(coords[2][2], new Coord(br.getXs()[2], br.getYs()[2]));
+
+		br.seek(0);
+		assertEquals(ids.length, br.readNextSlice());
+		assertEquals(times[0], br.getLastTimeStamp());
+
+		br.seek(31);
+		assertEquals(0, br.readNextSlice());
+		br.close();
+	}
+
+	private BinaryMovementReader createBinaryReader() throws Exception {
+		File binFile = File.createTempFile("EMRTest",
+				BinaryMovementReader.BINARY_EXT);
+		binFile.deleteOnExit();
+		BinaryMovementReader.convert(tmpFile.getAbsolutePath(),
+				binFile.getAbsolutePath());
+		return new BinaryMovementReader(binFile.getAbsolutePath());
+	}
+
+	private void checkReader() {
 		List<Tuple<String, Coord>> list;
 
 		for (int i=0; i<times.length; i++) {
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+import util.IntHashMap;
+
+/**
+ * Tests for the IntHashMap
+ */
+public class IntHashMapTest extends TestCase {
+	private IntHashMap<String> map;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		this.map = new IntHashMap<String>();
+	}
+
+	public void testPutGetRemove() {
+		assertTrue(map.isEmpty());
+		assertNull(map.put(1, "a"));
+		assertNull(map.put(17, "b"));
+		assertEquals("a", map.put(1, "c"));
+		assertEquals(2, map.size());
+		assertEquals("c", map.get(1));
+		assertEquals("b", map.get(17));
+		assertNull(map.get(2));
+
+		assertEquals("c", map.remove(1));
+		assertNull(map.remove(1));
+		assertFalse(map.containsKey(1));
+		assertTrue(map.containsKey(17));
+		assertEquals(1, map.size());
+	}
+
+	public void testNullValues() {
+		map.put(3, null);
+		assertTrue(map.containsKey(3));
+		assertEquals(1, map.values().size());
+	}
+
+	public void testInsertionOrder() {
+		map.put(40, "a");
+		map.put(3, "b");
+		map.put(17, "c");
+		map.put(3, "d");	// replacing keeps the place
+		map.remove(40);
+		map.put(40, "e");	// removing and putting moves to the end
+		assertEquals(Arrays.asList("d", "c", "e"),
+				new ArrayList<String>(map.values()));
+
+		final List<Integer> keys = new ArrayList<Integer>();
+		map.forEachKey(key -> keys.add(key));
+		assertEquals(Arrays.asList(3, 17, 40), keys);
+	}
+
+	/**
+	 * Does random puts and removes (with the removes moving the probed
+	 * keys back and the puts compacting the removed entries) and compares
+	 * the results, and the iteration order, to a LinkedHashMap
+	 */
+	public void testSameAsLinkedHashMap() {
+		Random rng = new Random(1);
+		LinkedHashMap<Integer, String> reference =
+			new LinkedHashMap<Integer, String>();
+
+		for (int i = 0; i < 20000; i++) {
+			int key = rng.nextInt(500);
+			if (rng.nextInt(3) == 0) {
+				assertEquals(reference.remove(key), map.remove(key));
+			}
+			else {
+				String value = "v" + i;
+				assertEquals(reference.put(key, value), map.put(key, value));
+			}
+			assertEquals(reference.size(), map.size());
+		}
+
+		for (int key = 0; key < 500; key++) {
+			assertEquals(reference.containsKey(key), map.containsKey(key));
+			assertEquals(reference.get(key), map.get(key));
+		}
+
+		assertEquals(new ArrayList<String>(reference.values()),
+				new ArrayList<String>(map.values()));
+	}
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import junit.framework.TestCase;
+import kem.CipherText;
+import kem.Kem;
+import kem.KemPrivateKey;
+import kem.KemPublicKey;
+import kem.Poly;
+
+import java.security.KeyPair;
+
+public class KemPolyTest extends TestCase {
+
+	private Random rng = new Random(42);
+
+	public void testMultMatchesSchoolbook() {
+		for (int round = 0; round < 20; round++) {
+			Poly a = randomPoly(Kem.Q);
+			Poly b = randomPoly(2);
+			assertTrue(Arrays.equals(schoolbook(a, b).getCoeffs(),
+					Poly.mult(a, b).getCoeffs()));
+		}
+	}
+
+	public void testMultUsesOnlyNonZeroOfSecondOperand() {
+		Poly a = randomPoly(Kem.Q);
+		Poly b = randomPoly(Kem.Q);
+		assertTrue(Arrays.equals(schoolbook(a, b).getCoeffs(),
+				Poly.mult(a, b).getCoeffs()));
+	}
+
+	public void testMultUnreducedOperand() {
+		Poly a = randomPoly(Kem.Q);
+		Poly b = randomPoly(2);
+		a.getCoeffs()[3] = -5;
+		a.getCoeffs()[7] = Kem.Q + 4;
+		assertTrue(Arrays.equals(schoolbook(a, b).getCoeffs(),
+				Poly.mult(a, b).getCoeffs()));
+	}
+
+	public void testIntoVariantsAllowAliasing() {
+		Poly a = randomPoly(Kem.Q);
+		Poly b = randomPoly(2);
+		Poly sum = Poly.add(a, b);
+		Poly diff = Poly.sub(a, b);
+		Poly prod = Poly.mult(a, b);
+
+		Poly dest = new Poly();
+		assertTrue(Arrays.equals(sum.getCoeffs(),
+				Poly.addInto(a, b, dest).getCoeffs()));
+		assertTrue(Arrays.equals(diff.getCoeffs(),
+				Poly.subInto(a, b, dest).getCoeffs()));
+
+		Poly aCopy = new Poly();
+		System.arraycopy(a.getCoeffs(), 0, aCopy.getCoeffs(), 0, Kem.N);
+		assertSame(aCopy, Poly.multInto(aCopy, b, aCopy));
+		assertTrue(Arrays.equals(prod.getCoeffs(), aCopy.getCoeffs()));
+	}
+
+	public void testKeyExchange() {
+		KeyPair kp = Kem.keygen();
+		int[] m = randomPoly(2).getCoeffs();
+		CipherText ct = Kem.encapsulate((KemPublicKey)kp.getPublic(), m);
+		int[] m2 = Kem.decapsulate((KemPrivateKey)kp.getPrivate(), ct);
+		assertTrue(Arrays.equals(m, m2));
+	}
+
+	private Poly randomPoly(int bound) {
+		Poly p = new Poly();
+		for (int i = 0; i < Kem.N; i++) {
+			p.getCoeffs()[i] = rng.nextInt(bound);
+		}
+		return p;
+	}
+
+	/* the original O(N^2) negacyclic multiplication */
+	private Poly schoolbook(Poly a, Poly b) {
+		Poly result = new Poly();
+		int[] r = result.getCoeffs();
+		for (int i = 0; i < Kem.N; i++) {
+			if (b.get(i) == 0) continue;
+			for (int j = 0; j < Kem.N; j++) {
+				int k = (i + j) >= Kem.N ? (i + j - Kem.N) : (i + j);
+				int sign = ((i + j) >= Kem.N) ? -1 : 1;
+				r[k] = Poly.reduce(r[k] + sign * a.get(j));
+			}
+		}
+		return result;
+	}
+}
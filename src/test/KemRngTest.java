@@ -0,0 +1,67 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+import kem.Kem;
+import kem.RandomSource;
+import kem.Rng;
+
+public class KemRngTest extends TestCase {
+
+	public void testSeededStreamsAreRepeatable() {
+		RandomSource r1 = Rng.create(Rng.MODE_SEEDED, 42, 3);
+		RandomSource r2 = Rng.create(Rng.MODE_SEEDED, 42, 3);
+		RandomSource other = Rng.create(Rng.MODE_SEEDED, 42, 4);
+
+		int[] a = new int[Kem.N];
+		int[] b = new int[Kem.N];
+		int[] c = new int[Kem.N];
+		for (int i = 0; i < 3; i++) {
+			r1.randomInt(a);
+			r2.randomInt(b);
+			other.randomInt(c);
+			assertTrue(Arrays.equals(a, b));
+			assertFalse(Arrays.equals(a, c));
+
+			r1.sampleNoise(a);
+			r2.sampleNoise(b);
+			assertTrue(Arrays.equals(a, b));
+		}
+	}
+
+	public void testValueRanges() {
+		for (String mode : new String[] {Rng.MODE_SECURE, Rng.MODE_BULK,
+				Rng.MODE_SEEDED}) {
+			RandomSource r = Rng.create(mode, 1, 1);
+			int[] coeffs = new int[Kem.N];
+			int ones = 0;
+			for (int round = 0; round < 20; round++) {
+				r.randomInt(coeffs);
+				for (int x : coeffs) {
+					assertTrue(mode, x >= 0 && x < Kem.Q);
+				}
+				r.sampleNoise(coeffs);
+				for (int x : coeffs) {
+					assertTrue(mode, x == 0 || x == 1);
+					ones += x;
+				}
+			}
+			/* 5120 fair coin flips; expected 2560 ones, stddev ~36 */
+			assertTrue(mode + " " + ones, ones > 2300 && ones < 2820);
+		}
+	}
+
+	public void testUnknownMode() {
+		try {
+			Rng.create("foo", 0, 0);
+			fail("Unknown mode accepted");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+}
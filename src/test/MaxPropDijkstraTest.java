@@ -123,6 +123,27 @@ public class MaxPropDijkstraTest extends TestCase {
 		assertEquals( (1-0.625)+(1-0.5), result.get(5));
 	}
 
+	public void testRepeatedSearches() {
+		mapping.get(0).updateMeetingProbFor(1);
+		mapping.get(1).updateMeetingProbFor(2);
+		mapping.get(1).updateMeetingProbFor(0);
+		mapping.get(2).updateMeetingProbFor(3);
+		targets.add(3);
+		targets.add(0);
+
+		Map<Integer, Double> result = mpd.getCosts(0, targets);
+		assertEquals(0.0, result.get(0));
+		assertEquals(0.5, result.get(3), DELTA);
+
+		/* the state of the earlier search must not affect the next ones */
+		result = mpd.getCosts(2, targets);
+		assertEquals(0.0, result.get(3));
+		assertNull(result.get(0));
+
+		result = mpd.getCosts(1, targets);
+		assertEquals(0.5, result.get(0), DELTA);
+		assertEquals(0.5, result.get(3), DELTA);
+	}
 
 	public void testProbabilitySumsToOne() {
 		double total;
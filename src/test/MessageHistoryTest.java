@@ -0,0 +1,74 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.util.BitSet;
+
+import junit.framework.TestCase;
+import routing.util.MessageHistory;
+
+/**
+ * Tests for the MessageHistory
+ */
+public class MessageHistoryTest extends TestCase {
+	private static final int NROF_KEYS = 5000;
+	private static final int RECENT_SIZE = 100;
+
+	public void testUnlimitedHistory() {
+		MessageHistory h = new MessageHistory(MessageHistory.UNLIMITED, 0);
+		for (int i = 0; i < NROF_KEYS; i += 2) {
+			h.add(i, null);
+		}
+		h.add(0, null); // adding again doesn't change anything
+
+		assertEquals(NROF_KEYS / 2, h.size());
+		for (int i = 0; i < NROF_KEYS; i++) {
+			assertEquals(i % 2 == 0, h.contains(i));
+			assertEquals(i % 2 == 0, h.isRecent(i));
+		}
+	}
+
+	public void testExactOldKeys() {
+		MessageHistory h = new MessageHistory(RECENT_SIZE, 0);
+		for (int i = 0; i < NROF_KEYS; i += 2) {
+			h.add(i, null);
+		}
+
+		assertEquals(NROF_KEYS / 2, h.size());
+		assertEquals(RECENT_SIZE, h.getRecentMessages().size());
+		for (int i = 0; i < NROF_KEYS; i++) {
+			assertEquals(i % 2 == 0, h.contains(i));
+			assertEquals(i % 2 == 0 && i >= NROF_KEYS - 2 * RECENT_SIZE,
+					h.isRecent(i));
+		}
+
+		BitSet keys = new BitSet();
+		h.addKeysTo(keys);
+		assertEquals(NROF_KEYS / 2, keys.cardinality());
+		for (int i = 0; i < NROF_KEYS; i++) {
+			assertEquals(i % 2 == 0, keys.get(i));
+		}
+	}
+
+	public void testFilteredOldKeys() {
+		double rate = 0.01;
+		MessageHistory h = new MessageHistory(RECENT_SIZE, rate);
+		for (int i = 0; i < NROF_KEYS; i++) {
+			h.add(i, null);
+		}
+
+		for (int i = 0; i < NROF_KEYS; i++) {
+			assertTrue(h.contains(i)); // no false negatives
+		}
+		int falsePositives = 0;
+		for (int i = NROF_KEYS; i < 2 * NROF_KEYS; i++) {
+			if (h.contains(i)) {
+				falsePositives++;
+			}
+		}
+		assertTrue("False positive rate " + falsePositives / (double)NROF_KEYS,
+				falsePositives <= rate * NROF_KEYS);
+	}
+}
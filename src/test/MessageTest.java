@@ -4,6 +4,8 @@
  */
 package test;
 
+import java.util.Arrays;
+
 import junit.framework.TestCase;
 
 import org.junit.Before;
@@ -11,7 +13,9 @@ import org.junit.Test;
 
 import core.DTNHost;
 import core.Message;
+import core.MessageProperty;
 import core.SimClock;
+import core.SimError;
 
 public class MessageTest extends TestCase {
 
@@ -61,4 +65,78 @@ public class MessageTest extends TestCase {
 	}
 
 
+
+	@Test
+	public void testKeys() {
+		Message other = new Message(from, to, "N", 100);
+		assertFalse(msg.getKey() == other.getKey());
+		assertEquals(msg.getKey(), msg.replicate().getKey());
+		assertEquals(msg.getKey(), new Message(to, from, "M", 1).getKey());
+		assertEquals(other.getKey(), Message.getKeyOf("N"));
+		assertEquals(-1, Message.getKeyOf("not an id"));
+
+		Message.reset();
+		assertEquals(-1, Message.getKeyOf("M"));
+		assertEquals(0, new Message(from, to, "N", 100).getKey());
+	}
+
+	@Test
+	public void testReplicatePropertiesCopyOnWrite() {
+		msg.addProperty("foo", "value1");
+		Message rep = msg.replicate();
+		assertEquals("value1", rep.getProperty("foo"));
+
+		rep.updateProperty("foo", "value2");
+		msg.addProperty("bar", "value3");
+		assertEquals("value1", msg.getProperty("foo"));
+		assertEquals("value2", rep.getProperty("foo"));
+		assertNull(rep.getProperty("bar"));
+	}
+
+	@Test
+	public void testTypedProperty() {
+		MessageProperty<Integer> count =
+			MessageProperty.register("MessageTest.count", Integer.class);
+		assertSame(count,
+				MessageProperty.register("MessageTest.count", Integer.class));
+
+		msg.addProperty(count, 3);
+		assertEquals(Integer.valueOf(3), msg.getProperty(count));
+		assertEquals(3, msg.getProperty("MessageTest.count"));
+
+		try {
+			msg.updateProperty("MessageTest.count", "three");
+			fail("Property of wrong type was accepted");
+		} catch (SimError e) {
+			// should end up here
+		}
+		try {
+			MessageProperty.register("MessageTest.count", String.class);
+			fail("Property was registered with two types");
+		} catch (SimError e) {
+			// should end up here
+		}
+	}
+
+	@Test
+	public void testReplicatesSharePath() {
+		TestUtils utils = new TestUtils(null, null, new TestSettings());
+		DTNHost h1 = utils.createHost();
+		DTNHost h2 = utils.createHost();
+		DTNHost h3 = utils.createHost();
+
+		Message m = new Message(h1, h2, "P", 100);
+		assertEquals(0, m.getHopCount());
+		m.addNodeOnPath(h2);
+		Message rep = m.replicate();
+		rep.addNodeOnPath(h3);
+
+		assertEquals(1, m.getHopCount());
+		assertEquals(2, rep.getHopCount());
+		assertEquals(Arrays.asList(h1, h2), m.getHops());
+		assertEquals(Arrays.asList(h1, h2, h3), rep.getHops());
+		assertTrue(rep.isOnPath(h1));
+		assertTrue(rep.isOnPath(h3));
+		assertFalse(m.isOnPath(h3));
+	}
 }
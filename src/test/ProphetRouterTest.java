@@ -151,4 +151,22 @@ public class ProphetRouterTest extends AbstractRouterTest {
 		assertEquals(newPred, r5.getPredFor(h4));
 	}
 
+	public void testLongAging() {
+		ProphetRouter r4 = (ProphetRouter)h4.getRouter();
+
+		h4.connect(h5);
+		disconnect(h5);
+
+		/* aged so long that the stored values must be rescaled */
+		for (int i = 1; i <= 4; i++) {
+			clock.advance(SECONDS_IN_TIME_UNIT * 5000);
+			double newPred = ProphetRouter.P_INIT *
+				Math.pow(ProphetRouter.DEFAULT_GAMMA, 5000 * i);
+			assertEquals(newPred, r4.getPredFor(h5), newPred * 1e-9);
+		}
+
+		h4.connect(h5);
+		assertEquals(ProphetRouter.P_INIT, r4.getPredFor(h5), 1e-9);
+	}
+
 }
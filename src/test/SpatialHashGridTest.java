@@ -0,0 +1,154 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import interfaces.ConnectivityGrid;
+import interfaces.SpatialHashGrid;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+import core.Coord;
+import core.DTNHost;
+import core.NetworkInterface;
+
+/**
+ * Tests for the SpatialHashGrid class
+ */
+public class SpatialHashGridTest extends TestCase {
+	private static final int NROF_HOSTS = 60;
+	/* hosts are put to this area so that the cells get crowded */
+	private static final double AREA = 30;
+
+	private Random rng;
+	private List<DTNHost> hosts;
+	private List<NetworkInterface> interfaces;
+	private SpatialHashGrid grid;
+	private ConnectivityGrid reference;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		SpatialHashGrid.reset();
+		ConnectivityGrid.reset();
+		this.rng = new Random(42);
+
+		TestUtils utils = new TestUtils(null, null, new TestSettings());
+		this.hosts = new ArrayList<DTNHost>();
+		this.interfaces = new ArrayList<NetworkInterface>();
+		for (int i = 0; i < NROF_HOSTS; i++) {
+			DTNHost h = utils.createHost(randomCoord());
+			this.hosts.add(h);
+			this.interfaces.add(h.getInterfaces().get(0));
+		}
+
+		this.grid = SpatialHashGrid.SpatialHashGridFactory(
+				"interface".hashCode(), 1.0);
+		this.reference = ConnectivityGrid.ConnectivityGridFactory(
+				"interface".hashCode(), 1.0);
+		this.reference.addInterfaces(this.interfaces);
+		/* hosts were added to the grid before they got their locations */
+		for (NetworkInterface ni : this.interfaces) {
+			this.grid.updateLocation(ni);
+		}
+	}
+
+	private Coord randomCoord() {
+		return new Coord(rng.nextDouble() * AREA, rng.nextDouble() * AREA);
+	}
+
+	private void assertSameNeighbors() {
+		for (NetworkInterface ni : this.interfaces) {
+			List<NetworkInterface> visited = new ArrayList<NetworkInterface>();
+			this.grid.forEachNearInterface(ni, visited::add);
+
+			assertEquals(this.reference.getNearInterfaces(ni), visited);
+			assertEquals(visited, this.grid.getNearInterfaces(ni));
+		}
+	}
+
+	public void testSameNeighborsAsConnectivityGrid() {
+		assertSameNeighbors();
+
+		for (int round = 0; round < 20; round++) {
+			for (int i = 0; i < NROF_HOSTS; i++) {
+				this.hosts.get(i).setLocation(randomCoord());
+				this.grid.updateLocation(this.interfaces.get(i));
+				this.reference.updateLocation(this.interfaces.get(i));
+			}
+			assertSameNeighbors();
+		}
+	}
+
+	public void testNeighborsWithinDistance() {
+		NetworkInterface ni = this.interfaces.get(0);
+		List<NetworkInterface> visited = new ArrayList<NetworkInterface>();
+		this.grid.forEachNearInterface(ni, 3.0, visited::add);
+
+		for (NetworkInterface other : this.grid.getNearInterfaces(ni)) {
+			double d = ni.getLocation().distance(other.getLocation());
+			assertEquals(d <= 3.0, visited.contains(other));
+		}
+		assertTrue(visited.contains(ni));
+	}
+
+	public void testCandidatesInVisitingOrder() {
+		for (NetworkInterface ni : this.interfaces) {
+			List<NetworkInterface> candidates =
+				new ArrayList<NetworkInterface>();
+			for (NetworkInterface other : this.interfaces) {
+				if (rng.nextBoolean()) {
+					candidates.add(other);
+				}
+			}
+			Collections.shuffle(candidates, rng);
+
+			List<NetworkInterface> expected =
+				new ArrayList<NetworkInterface>();
+			for (NetworkInterface other : this.grid.getNearInterfaces(ni)) {
+				if (candidates.contains(other)) {
+					expected.add(other);
+				}
+			}
+			List<NetworkInterface> visited = new ArrayList<NetworkInterface>();
+			this.grid.forEachNearInterface(ni, candidates, () -> true,
+					visited::add);
+
+			assertEquals(expected, visited);
+		}
+	}
+
+	public void testCandidatesUntilConditionFails() {
+		NetworkInterface ni = this.interfaces.get(0);
+		List<NetworkInterface> near = new ArrayList<NetworkInterface>(
+				this.grid.getNearInterfaces(ni));
+		assertTrue(near.size() > 3);
+		List<NetworkInterface> candidates = near.subList(2, 3);
+
+		/* after the first candidate, the rest are visited in full */
+		List<NetworkInterface> visited = new ArrayList<NetworkInterface>();
+		this.grid.forEachNearInterface(ni, candidates,
+				() -> visited.isEmpty(), visited::add);
+
+		assertEquals(near.subList(2, near.size()), visited);
+	}
+
+	public void testRemoveInterface() {
+		NetworkInterface removed = this.interfaces.get(5);
+		this.grid.removeInterface(removed);
+		this.reference.removeInterface(removed);
+		this.interfaces.remove(removed);
+
+		assertSameNeighbors();
+		assertFalse(this.grid.getAllInterfaces().contains(removed));
+		assertEquals(NROF_HOSTS - 1, this.grid.getAllInterfaces().size());
+		assertTrue(this.grid.getNearInterfaces(removed).isEmpty());
+
+		this.grid.addInterface(removed);
+		assertEquals(NROF_HOSTS, this.grid.getAllInterfaces().size());
+	}
+}
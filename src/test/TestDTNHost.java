@@ -31,6 +31,7 @@ public class TestDTNHost extends DTNHost {
 
 	public String transferredId;
 	public DTNHost transferredFrom;
+	public double nextUpdateTime = Double.MAX_VALUE;
 
 
 	public TestDTNHost(List<NetworkInterface> li,
@@ -53,6 +54,11 @@ public class TestDTNHost extends DTNHost {
 		this.lastUpdate = SimClock.getTime();
 	}
 
+	@Override
+	public double getNextUpdateTime() {
+		return this.nextUpdateTime;
+	}
+
 	@Override
 	public int receiveMessage(Message m, DTNHost from) {
 		this.recvMessage = m;
@@ -9,11 +9,20 @@ import input.EventQueue;
 import java.util.ArrayList;
 import java.util.List;
 
+import interfaces.SpatialHashGrid;
 import junit.framework.TestCase;
+import movement.MovementModel;
+import movement.Path;
+import routing.EpidemicRouter;
+import routing.util.EnergyModel;
+import core.ConnectionListener;
+import core.Coord;
 import core.DTNHost;
 import core.ModuleCommunicationBus;
 import core.NetworkInterface;
+import core.SettingsError;
 import core.SimClock;
+import core.SimScenario;
 import core.UpdateListener;
 import core.World;
 
@@ -52,6 +61,10 @@ public class WorldTest extends TestCase {
 			this.testHosts.add(new TestDTNHost(li, comBus, testSettings));
 		}
 
+		createWorld();
+	}
+
+	private void createWorld() {
 		TestScenario ts = new TestScenario();
 		this.world = new World(ts.getHosts(),ts.getWorldSizeX(),
 				ts.getWorldSizeY(),ts.getUpdateInterval(),
@@ -101,6 +114,223 @@ public class WorldTest extends TestCase {
 
 	}
 
+	public void testNextEventJump() {
+		TestSettings ts = new TestSettings(World.OPTIMIZATION_SETTINGS_NS);
+		ts.putSetting(World.NEXT_EVENT_JUMP_S, "true");
+		ts.putSetting(World.MAX_JUMP_S, "1");
+		ts.setNameSpace(SimScenario.SCENARIO_NS);
+		ts.putSetting(SimScenario.END_TIME_S, "3.5");
+		ts.putSetting(SimScenario.SIM_CON_S, "false");
+		simulateConnections = false;
+		createWorld();
+
+		/* nothing to do -> maximum jumps */
+		world.update();
+		assertEquals(1.0, SimClock.getTime(), TIME_DELTA);
+		assertNrofUpdates(1);
+
+		/* scheduled updates are done inside the jump */
+		world.scheduleUpdate(1.25);
+		world.update();
+		assertEquals(2.0, SimClock.getTime(), TIME_DELTA);
+		assertNrofUpdates(3);
+
+		/* whole update intervals until a host needs an update */
+		testHosts.get(5).nextUpdateTime = 2.35;
+		world.update();
+		assertEquals(2.3, SimClock.getTime(), TIME_DELTA);
+		testHosts.get(5).nextUpdateTime = 2.3;
+		world.update();
+		assertEquals(2.4, SimClock.getTime(), TIME_DELTA);
+		assertNrofUpdates(5);
+
+		/* no jumps past the end time */
+		testHosts.get(5).nextUpdateTime = Double.MAX_VALUE;
+		world.update();
+		assertEquals(3.4, SimClock.getTime(), TIME_DELTA);
+		world.update();
+		assertEquals(3.5, SimClock.getTime(), TIME_DELTA);
+	}
+
+	/**
+	 * Shows how the contacts drift from the ones without jumps: a host
+	 * whose path ends inside a jump starts its pause at the start of the
+	 * jump, instead of at the start of the update interval where the path
+	 * ends, so all its later movement comes earlier
+	 */
+	public void testNextEventJumpDrift() {
+		List<Double> ticks = contactUpTimes(false);
+		List<Double> jumps = contactUpTimes(true);
+		assertEquals(2, ticks.size());
+		assertEquals(2, jumps.size());
+
+		/* equal until the first path ends (at 7.05) */
+		assertEquals(ticks.get(0), jumps.get(0), TIME_DELTA);
+
+		/* the pause starts at 7.0 without jumps, but at the start of the
+		 * jump (6.0; the jumps are 2 s long here) with them, so the host
+		 * comes back a second earlier (give or take an interval of
+		 * rounding in the clock) */
+		double drift = ticks.get(1) - jumps.get(1);
+		assertEquals(1.0, drift, upInterval + TIME_DELTA);
+	}
+
+	/**
+	 * Runs the world with a host passing by a stationary host, pausing
+	 * and coming back, and returns the times the hosts got connected
+	 * @param jump Should the world jump to the next event
+	 * @return The connection up times
+	 */
+	private List<Double> contactUpTimes(boolean jump) {
+		SimClock.reset();
+		DTNHost.reset();
+		NetworkInterface.reset();
+		SpatialHashGrid.reset();
+		final List<Double> upTimes = new ArrayList<Double>();
+		List<ConnectionListener> cl = new ArrayList<ConnectionListener>();
+		cl.add(new ConnectionListener() {
+			public void hostsConnected(DTNHost host1, DTNHost host2) {
+				upTimes.add(SimClock.getTime());
+			}
+			public void hostsDisconnected(DTNHost host1, DTNHost host2) {}
+		});
+
+		TestSettings rs = new TestSettings();
+		TestUtils utils = new TestUtils(cl, null, rs);
+		utils.setMessageRouterProto(new EpidemicRouter(rs));
+		utils.createHost(new Coord(3, 0.5));
+		utils.createHost(new PausingMovement(), null);
+		TestSettings ts = new TestSettings(World.OPTIMIZATION_SETTINGS_NS);
+		ts.putSetting(World.CONTACT_PREDICTION_S, "true");
+		ts.putSetting(World.NEXT_EVENT_JUMP_S, "" + jump);
+
+		World w = new World(utils.getAllHosts(), worldSizeX, worldSizeY,
+				upInterval, new ArrayList<UpdateListener>(), true,
+				new ArrayList<EventQueue>());
+		while (SimClock.getTime() < 12) {
+			w.update();
+		}
+		return upTimes;
+	}
+
+	public void testNextEventJumpRequiresContactPrediction() {
+		TestSettings ts = new TestSettings(World.OPTIMIZATION_SETTINGS_NS);
+		ts.putSetting(World.NEXT_EVENT_JUMP_S, "true");
+		try {
+			createWorld();
+			fail("Jumps without contact prediction should fail");
+		} catch (SettingsError e) {
+			// expected
+		}
+	}
+
+	public void testParallelUpdatesCantSkipIdleUpdates() {
+		TestSettings ts = new TestSettings(World.OPTIMIZATION_SETTINGS_NS);
+		ts.putSetting(World.PARALLEL_UPDATES_S, "true");
+		ts.putSetting(World.SKIP_IDLE_UPDATES_S, "true");
+		try {
+			createWorld();
+			fail("Parallel updates with skipping idle updates should fail");
+		} catch (SettingsError e) {
+			// expected
+		}
+	}
+
+	public void testContactPredictionCantUseScanInterval() {
+		TestSettings rs = new TestSettings();
+		TestSettings gs = new TestSettings(SimScenario.GROUP_NS);
+		gs.putSetting(NetworkInterface.NET_SUB_NS + "." +
+				NetworkInterface.SCAN_INTERVAL_S, "1");
+		try {
+			createPredictingWorld(rs, gs);
+			fail("Contact prediction with scanning intervals should fail");
+		} catch (SettingsError e) {
+			// expected
+		}
+	}
+
+	public void testContactPredictionCantUseEnergyModel() {
+		TestSettings rs = new TestSettings();
+		rs.putSetting(EnergyModel.INIT_ENERGY_S, "1000");
+		rs.putSetting(EnergyModel.SCAN_ENERGY_S, "0.1");
+		rs.putSetting(EnergyModel.TRANSMIT_ENERGY_S, "0.2");
+		rs.putSetting(EnergyModel.SCAN_RSP_ENERGY_S, "0.1");
+		try {
+			createPredictingWorld(rs, null);
+			fail("Contact prediction with energy models should fail");
+		} catch (SettingsError e) {
+			// expected
+		}
+	}
+
+	/**
+	 * Creates a world with contact prediction and two epidemic routers
+	 * @param rs Settings for the routers and interfaces of the hosts
+	 * @param gs Group settings for the interfaces (or null for none)
+	 */
+	private void createPredictingWorld(TestSettings rs, TestSettings gs) {
+		TestUtils utils = new TestUtils(new ArrayList<ConnectionListener>(),
+				null, rs);
+		utils.setMessageRouterProto(new EpidemicRouter(rs));
+		utils.createHost(new Coord(0, 0));
+		utils.createHost(new Coord(3, 0));
+		if (gs != null) {
+			for (DTNHost host : utils.getAllHosts()) {
+				host.getInterfaces().get(0).setGroupSettings(gs);
+			}
+		}
+		TestSettings ts = new TestSettings(World.OPTIMIZATION_SETTINGS_NS);
+		ts.putSetting(World.CONTACT_PREDICTION_S, "true");
+
+		new World(utils.getAllHosts(), worldSizeX, worldSizeY, upInterval,
+				new ArrayList<UpdateListener>(), true,
+				new ArrayList<EventQueue>());
+	}
+
+	/**
+	 * Pauses for 2 seconds, moves at 1 m/s from (0,0) to (5.05,0), pauses
+	 * for 2 seconds and moves back
+	 */
+	private static class PausingMovement extends MovementModel {
+		private int nrofPaths;
+
+		@Override
+		public Coord getInitialLocation() {
+			return new Coord(0, 0);
+		}
+
+		@Override
+		public Path getPath() {
+			if (nrofPaths == 2) {
+				return null;
+			}
+			Path p = new Path(1);
+			p.addWaypoint(nrofPaths == 0 ? new Coord(5.05, 0) :
+				new Coord(0, 0));
+			nrofPaths++;
+			return p;
+		}
+
+		@Override
+		public double nextPathAvailable() {
+			return nrofPaths == 2 ? Double.MAX_VALUE : SimClock.getTime() + 2;
+		}
+
+		@Override
+		public double getMaxSpeed() {
+			return 1;
+		}
+
+		@Override
+		public boolean isActive() {
+			return true;
+		}
+
+		@Override
+		public PausingMovement replicate() {
+			return new PausingMovement();
+		}
+	}
 
 	/** Dummy scenario for providing test values for the World */
 	@SuppressWarnings("serial")
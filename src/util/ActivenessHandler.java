@@ -101,6 +101,25 @@ public class ActivenessHandler {
 		return timesList;
 	}
 
+	/**
+	 * Returns true if this handler uses the active times queue. Checking
+	 * activeness then advances the queue, which is shared by all the nodes
+	 * of the group.
+	 * @return true if active times are in use
+	 */
+	public boolean hasActiveTimes() {
+		return this.activeTimes != null;
+	}
+
+	/**
+	 * Returns true if neither active times nor active periods are used,
+	 * i.e., the node is always active
+	 * @return true if the node is always active
+	 */
+	public boolean isAlwaysActive() {
+		return this.activeTimes == null && this.activePeriods == null;
+	}
+
 	/**
 	 * Returns true if node should be active at the moment
 	 * @return true if node should be active at the moment
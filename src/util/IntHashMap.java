@@ -0,0 +1,287 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package util;
+
+import java.util.AbstractCollection;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.IntConsumer;
+
+/**
+ * Hash map from non-negative int keys to objects. Keys are stored in
+ * primitive arrays, so no key objects are created or hashed. The entries
+ * are kept in arrays in the order their keys were first put to the map
+ * (like in a LinkedHashMap), and an open addressing (linear probing) table
+ * of entry indexes is used for the lookups. Values are iterated in that
+ * insertion order. Removed entries leave a gap that is left out when the
+ * entries are next compacted.
+ */
+public class IntHashMap<V> {
+	/** key of a free slot or a removed entry */
+	private static final int FREE = -1;
+	/** initial number of entries */
+	private static final int INITIAL_CAPACITY = 8;
+
+	/** the indexes of the entries, by the hashes of their keys */
+	private int[] slots;
+	/** the keys of the entries in insertion order */
+	private int[] keys;
+	/** the values of the entries in insertion order */
+	private Object[] values;
+	/** number of used entries, including the removed ones */
+	private int end;
+	private int size;
+	/** number of modifications; for detecting modification while iterating */
+	private int modCount;
+
+	/**
+	 * Creates an empty map
+	 */
+	public IntHashMap() {
+		this.slots = new int[INITIAL_CAPACITY * 2];
+		this.keys = new int[INITIAL_CAPACITY];
+		this.values = new Object[INITIAL_CAPACITY];
+		Arrays.fill(this.slots, FREE);
+	}
+
+	/**
+	 * Returns the value of a key
+	 * @param key The key
+	 * @return The value or null if the key isn't in the map
+	 */
+	@SuppressWarnings("unchecked")
+	public V get(int key) {
+		int slot = find(key);
+		return slot == FREE ? null : (V)this.values[this.slots[slot]];
+	}
+
+	/**
+	 * Returns true if the key is in the map
+	 * @param key The key
+	 * @return true if the key is in the map
+	 */
+	public boolean containsKey(int key) {
+		return find(key) != FREE;
+	}
+
+	/**
+	 * Puts a value to the map. A new key is put last in the iteration
+	 * order; the value of an existing key is replaced in its place.
+	 * @param key The key (must be non-negative)
+	 * @param value The value
+	 * @return The old value of the key or null if there was no value
+	 */
+	@SuppressWarnings("unchecked")
+	public V put(int key, V value) {
+		assert key >= 0 : "Negative key " + key;
+		int slot = find(key);
+		if (slot != FREE) {
+			int entry = this.slots[slot];
+			V old = (V)this.values[entry];
+			this.values[entry] = value;
+			return old;
+		}
+
+		if (this.end == this.keys.length) {
+			rehash();
+		}
+		int mask = this.slots.length - 1;
+		slot = hash(key) & mask;
+		while (this.slots[slot] != FREE) {
+			slot = (slot + 1) & mask;
+		}
+		this.slots[slot] = this.end;
+		this.keys[this.end] = key;
+		this.values[this.end] = value;
+		this.end++;
+		this.size++;
+		this.modCount++;
+		return null;
+	}
+
+	/**
+	 * Removes a key from the map
+	 * @param key The key
+	 * @return The value of the removed key or null if the key wasn't in
+	 * the map
+	 */
+	@SuppressWarnings("unchecked")
+	public V remove(int key) {
+		int slot = find(key);
+		if (slot == FREE) {
+			return null;
+		}
+		int entry = this.slots[slot];
+		V old = (V)this.values[entry];
+		this.keys[entry] = FREE;
+		this.values[entry] = null;
+		this.size--;
+		this.modCount++;
+
+		/* move the following entries of the probe sequence back so that no
+		 * free slot is left between them and their hash slots */
+		int mask = this.slots.length - 1;
+		int free = slot;
+		int next = (slot + 1) & mask;
+		while (this.slots[next] != FREE) {
+			int home = hash(this.keys[this.slots[next]]) & mask;
+			if (((next - home) & mask) >= ((next - free) & mask)) {
+				this.slots[free] = this.slots[next];
+				free = next;
+			}
+			next = (next + 1) & mask;
+		}
+		this.slots[free] = FREE;
+		return old;
+	}
+
+	/**
+	 * Returns the number of keys in the map
+	 * @return the number of keys
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 * Returns true if the map is empty
+	 * @return true if the map is empty
+	 */
+	public boolean isEmpty() {
+		return this.size == 0;
+	}
+
+	/**
+	 * Returns a view of the values. The view can't be modified, and the map
+	 * must not be modified while iterating the view.
+	 * @return The values of the map
+	 */
+	public Collection<V> values() {
+		return new AbstractCollection<V>() {
+			@Override
+			public Iterator<V> iterator() {
+				return new ValueIterator();
+			}
+
+			@Override
+			public int size() {
+				return IntHashMap.this.size;
+			}
+		};
+	}
+
+	/**
+	 * Calls the action for every key in the map (in insertion order). The
+	 * map must not be modified by the action.
+	 * @param action The action to call
+	 */
+	public void forEachKey(IntConsumer action) {
+		for (int i = 0; i < this.end; i++) {
+			if (this.keys[i] != FREE) {
+				action.accept(this.keys[i]);
+			}
+		}
+	}
+
+	/**
+	 * Returns the slot of a key or FREE if the key isn't in the map
+	 */
+	private int find(int key) {
+		int mask = this.slots.length - 1;
+		int slot = hash(key) & mask;
+		while (this.slots[slot] != FREE) {
+			if (this.keys[this.slots[slot]] == key) {
+				return slot;
+			}
+			slot = (slot + 1) & mask;
+		}
+		return FREE;
+	}
+
+	/**
+	 * Compacts the entries (keeping their order) to arrays that have room
+	 * for at least as many new entries as there are entries, and rebuilds
+	 * the slots
+	 */
+	private void rehash() {
+		int capacity = INITIAL_CAPACITY;
+		while (capacity < this.size * 2) {
+			capacity *= 2;
+		}
+		int[] oldKeys = this.keys;
+		Object[] oldValues = this.values;
+		if (capacity != oldKeys.length) {
+			this.keys = new int[capacity];
+			this.values = new Object[capacity];
+			this.slots = new int[capacity * 2];
+		}
+		Arrays.fill(this.slots, FREE);
+
+		int mask = this.slots.length - 1;
+		int entry = 0;
+		for (int i = 0; i < this.end; i++) {
+			if (oldKeys[i] == FREE) {
+				continue;
+			}
+			int slot = hash(oldKeys[i]) & mask;
+			while (this.slots[slot] != FREE) {
+				slot = (slot + 1) & mask;
+			}
+			this.slots[slot] = entry;
+			this.keys[entry] = oldKeys[i];
+			this.values[entry] = oldValues[i];
+			entry++;
+		}
+		/* clear the moved entries when compacting in place */
+		Arrays.fill(this.keys, entry, this.end, FREE);
+		Arrays.fill(this.values, entry, this.end, null);
+		this.end = entry;
+	}
+
+	/**
+	 * Spreads consecutive keys over the table
+	 */
+	private static int hash(int key) {
+		int h = key * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+
+	private class ValueIterator implements Iterator<V> {
+		private int entry;
+		private int expectedModCount;
+
+		public ValueIterator() {
+			this.expectedModCount = modCount;
+			this.entry = nextUsed(0);
+		}
+
+		private int nextUsed(int from) {
+			while (from < end && keys[from] == FREE) {
+				from++;
+			}
+			return from;
+		}
+
+		public boolean hasNext() {
+			return this.entry < end;
+		}
+
+		@SuppressWarnings("unchecked")
+		public V next() {
+			if (modCount != this.expectedModCount) {
+				throw new ConcurrentModificationException();
+			}
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			V value = (V)values[this.entry];
+			this.entry = nextUsed(this.entry + 1);
+			return value;
+		}
+	}
+}